@@ -0,0 +1,93 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jp.oist.unit.ios.solarsystemlib.atomsphere.Atmosphere;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+
+/**
+ * SPA in radians ({@link SpaKernel}) against the degree helpers of
+ * {@link SolarPositionSpaModel}, for the time terms and the topocentric steps apart.
+ * Run by {@code gradle jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SpaKernelBenchmark {
+
+    /* one day of minutes, from 2018-07-26 */
+    private static final long START = 1532563200L;
+    private static final int SAMPLES = 1440;
+
+    private static final double LATITUDE = 26.462;
+    private static final double LONGITUDE = 127.831;
+
+    private SolarPositionSpaModel spa;
+    private SpaTimeTerms[] terms;
+    private SpaTimeTerms scratch;
+    private double[] ret;
+    private double x;
+    private double y;
+    private double refractionScale;
+    private int index;
+
+    @Setup
+    public void setup() {
+        spa = new SolarPositionSpaModel(new DefaultModelCollection());
+        terms = new SpaTimeTerms[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++)
+            terms[i] = spa.timeTerms(START + 60L * i, 67.0);
+        scratch = new SpaTimeTerms();
+        ret = new double[SolarPositionSpaModel.TOPOCENTRIC_LENGTH];
+        double u = spa.uterm(LATITUDE);
+        x = spa.xterm(u, LATITUDE, 0.0);
+        y = spa.yterm(u, LATITUDE, 0.0);
+        refractionScale = Atmosphere.refractionScale(101325.0, 12.0);
+    }
+
+    private int next() {
+        index = (index + 1 == SAMPLES) ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public double timeTermsKernel() {
+        return spa.timeTerms((double)(START + 60L * next()), 67.0, scratch).declination;
+    }
+
+    @Benchmark
+    public double timeTermsReference() {
+        return spa.referenceTimeTerms((double)(START + 60L * next()), 67.0, scratch).declination;
+    }
+
+    @Benchmark
+    public void topocentricKernel(Blackhole bh) {
+        spa.topocentric(terms[next()], LATITUDE, LONGITUDE, x, y, refractionScale, 0.5667, ret);
+        bh.consume(ret[SolarPositionSpaModel.APPARENT_ZENITH]);
+        bh.consume(ret[SolarPositionSpaModel.AZIMUTH]);
+    }
+
+    @Benchmark
+    public void topocentricReference(Blackhole bh) {
+        spa.referenceTopocentric(terms[next()], LATITUDE, LONGITUDE, x, y, refractionScale,
+                                 0.5667, ret);
+        bh.consume(ret[SolarPositionSpaModel.APPARENT_ZENITH]);
+        bh.consume(ret[SolarPositionSpaModel.AZIMUTH]);
+    }
+}
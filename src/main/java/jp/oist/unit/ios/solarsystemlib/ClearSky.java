@@ -1,6 +1,8 @@
 /* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
 package jp.oist.unit.ios.solarsystemlib;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
 
 public class ClearSky {
@@ -28,93 +30,342 @@ public class ClearSky {
     public static Irradiance.Variable simplified_solis(double apparent_elevation, double aod700,
                                                        double precipitable_water, double pressure,
                                                        double dni_extra) {
-        double p = pressure;
-        double w = (precipitable_water <0.2) ? 0.2 : precipitable_water ;
+        // the atmosphere is usually the same for many calls, see SolisCoefficients.of
+        return SolisCoefficients.of(aod700, precipitable_water, pressure)
+                                .estimate(apparent_elevation, dni_extra);
+    }
 
-        //# algorithm fails for pw < 0.2
-        //        # this algorithm is reasonably fast already, but it could be made
-        //        # faster by precalculating the powers of aod700, the log(p/p0), and
-        //        # the log(w) instead of repeating the calculations as needed in each
-        //        # function
-        double i0p = _calc_i0p(dni_extra, w, aod700, p);//
+    /**
+     * simplified solis of many apparent elevations sharing the atmosphere, the coefficients
+     * are computed once and nothing is allocated
+     * @param apparent_elevation apparent elevations in degree
+     * @param aod700
+     * @param precipitable_water
+     * @param pressure air-pressure in pascal (Pa)
+     * @param dni_extra
+     * @param from first element
+     * @param to end of the elements, exclusive
+     * @param ghi output column, or null
+     * @param dni output column, or null
+     * @param dhi output column, or null
+     */
+    public static void simplified_solis(double[] apparent_elevation, double aod700,
+                                        double precipitable_water, double pressure,
+                                        double dni_extra, int from, int to,
+                                        double[] ghi, double[] dni, double[] dhi) {
+        SolisCoefficients.of(aod700, precipitable_water, pressure)
+                         .estimate(apparent_elevation, dni_extra, from, to, ghi, dni, dhi);
+    }
 
-        double taub = _calc_taub(w, aod700, p);
-        double b = _calc_b(w, aod700);
+    /**
+     * Coefficients of simplified solis for one atmospheric state.
+     *
+     * <p>The coefficients depend on the aerosol optical depth, the precipitable water and the
+     * pressure only; the extraterrestrial irradiance scales the result. They are computed once
+     * with the logarithms of the water and of the pressure and the powers of the optical depth
+     * shared by all terms, instead of once per function of pvlib.</p>
+     *
+     * <p>{@link #of} shares instances through a cache of {@link #CACHE_SIZE} states, mapped by
+     * the state quantized to {@link #AOD700_STEP}, {@link #WATER_STEP} and
+     * {@link #PRESSURE_STEP}; the coefficients are those of the quantized state. A lookup is a
+     * read of an array slot; a miss builds the instance and replaces the slot.</p>
+     */
+    public static final class SolisCoefficients {
 
-        double taug = _calc_taug(w, aod700, p);
-        double g = _calc_g(w, aod700);
+        /* resolution of the cached states, finer than the inputs are known */
+        public static final double AOD700_STEP = 1e-7;
+        public static final double WATER_STEP = 1e-6;
+        public static final double PRESSURE_STEP = 1e-3;
 
-        double taud = _calc_taud(w, aod700, p);
-        double d = _calc_d(aod700, p);//
+        /* states held by the cache, a power of 2 */
+        public static final int CACHE_SIZE = 256;
 
-        //# this prevents the creation of nans at night instead of 0s
-        //# it's also friendly to scalar and series inputs
+        private static final AtomicReferenceArray<SolisCoefficients> CACHE
+                = new AtomicReferenceArray<>(CACHE_SIZE);
 
-        double sin_elev = Math.sin(Math.toRadians(apparent_elevation));
-        sin_elev = ( sin_elev < 1.e-30 ) ? 1.e-30 : sin_elev ;
+        private static final double P0 = 101325.;
 
-        double dni = i0p * Math.exp(-taub/ Math.pow( sin_elev , b));
-        double ghi = i0p * Math.exp(-taug/ Math.pow( sin_elev , g)) * sin_elev;
-        double dhi = i0p * Math.exp(-taud/ Math.pow( sin_elev , d));
+        /* state, the precipitable water at least 0.2 cm where the algorithm holds */
+        public final double aod700;
+        public final double precipitableWater;
+        public final double pressure;
 
-        return new Irradiance.Variable(ghi, dni, dni_extra, dhi, null);
-    }
+        /* enhanced extraterrestrial irradiance per unit of dni_extra */
+        public final double i0p;
+        public final double taub, b;
+        public final double taug, g;
+        public final double taud, d;
 
-    private static double _calc_i0p(double i0, double w, double aod700, double p) {
-        //"""Calculate the "enhanced extraterrestrial irradiance"."""
-        double p0 = 101325.;
-        double io0 = 1.08 * Math.pow( w , 0.0051);
-        double i01 = 0.97 * Math.pow(w , 0.032);
-        double i02 = 0.12 * Math.pow( w , 0.56);
-        double i0p = i0 * ( i02* Math.pow( aod700 , 2 ) + i01*aod700 + io0 + 0.071* Math.log(p/p0));
+        /* quantized state of a cached instance */
+        private final long aodKey, waterKey, pressureKey;
 
-        return i0p;
-    }
+        /**
+         * @param aod700 aerosol optical depth at 700 nm
+         * @param precipitable_water precipitable water in cm
+         * @param pressure air-pressure in pascal (Pa)
+         */
+        public SolisCoefficients(double aod700, double precipitable_water, double pressure) {
+            this(aod700, precipitable_water, pressure, 0L, 0L, 0L);
+        }
 
-    private static double _calc_taub(double w,double aod700,double p) {
-        //"""Calculate the taub coefficient"""
-        double p0 = 101325.;
-        double tb1 = 1.82 + 0.056 * Math.log(w) + 0.0071 * Math.pow( Math.log(w) , 2);
-        double tb0 = 0.33 + 0.045 * Math.log(w) + 0.0096 * Math.pow( Math.log(w) , 2);
-        double tbp = 0.0089 * w + 0.13;
+        private SolisCoefficients(double aod700, double precipitable_water, double pressure,
+                                  long aodKey, long waterKey, long pressureKey) {
+            //# algorithm fails for pw < 0.2
+            double w = (precipitable_water <0.2) ? 0.2 : precipitable_water ;
+            this.aod700 = aod700;
+            this.precipitableWater = w;
+            this.pressure = pressure;
+            this.aodKey = aodKey;
+            this.waterKey = waterKey;
+            this.pressureKey = pressureKey;
 
-        double taub = tb1 * aod700 + tb0 + tbp * Math.log(p/p0);
+            double lnW = Math.log(w);
+            double lnW2 = lnW * lnW;
+            double lnP = Math.log(pressure / P0);
+            double aod2 = aod700 * aod700;
 
-        return taub;
+            // enhanced extraterrestrial irradiance
+            double io0 = 1.08 * Math.pow(w, 0.0051);
+            double i01 = 0.97 * Math.pow(w, 0.032);
+            double i02 = 0.12 * Math.pow(w, 0.56);
+            this.i0p = i02 * aod2 + i01 * aod700 + io0 + 0.071 * lnP;
 
-    }
+            double tb1 = 1.82 + 0.056 * lnW + 0.0071 * lnW2;
+            double tb0 = 0.33 + 0.045 * lnW + 0.0096 * lnW2;
+            double tbp = 0.0089 * w + 0.13;
+            this.taub = tb1 * aod700 + tb0 + tbp * lnP;
+            double b1 = 0.00925 * aod2 + 0.0148 * aod700 - 0.0172;
+            double b0 = -0.7565 * aod2 + 0.5057 * aod700 + 0.4557;
+            this.b = b1 * lnW + b0;
 
-    private static double _calc_b(double w, double aod700) {
-        // Calculate the b coefficient.
-        double b1 = 0.00925 * Math.pow( aod700 ,2) + 0.0148*aod700 - 0.0172;
-        double b0 = -0.7565 * Math.pow( aod700 , 2) + 0.5057*aod700 + 0.4557;
+            double tg1 = 1.24 + 0.047 * lnW + 0.0061 * lnW2;
+            double tg0 = 0.27 + 0.043 * lnW + 0.0090 * lnW2;
+            double tgp = 0.0079 * w + 0.1;
+            this.taug = tg1 * aod700 + tg0 + tgp * lnP;
+            this.g = -0.0147 * lnW - 0.3079 * aod2 + 0.2846 * aod700 + 0.3798;
 
-        double b = b1 * Math.log(w) + b0;
+            double td4, td3, td2, td1, td0, tdp;
+            if (aod700 < 0.05) {
+                td4 = 86*w - 13800;
+                td3 = -3.11*w + 79.4;
+                td2 = -0.23*w + 74.8;
+                td1 = 0.092*w - 8.86;
+                td0 = 0.0042*w + 3.12;
+                tdp = -0.83 * Math.pow(1 + aod700, -17.2);
+            } else {
+                td4 = -0.21*w + 11.6;
+                td3 =  0.27*w - 20.7;
+                td2 = -0.134*w + 15.5;
+                td1 =  0.0554*w - 5.71;
+                td0 =  0.0057*w + 2.94;
+                tdp = -0.71 * Math.pow(1 + aod700, -15.0);
+            }
+            this.taud = td0 + td1 * aod700 + td2 * aod2 + td3 * aod2 * aod700
+                        + td4 * aod2 * aod2 + tdp * lnP;
+            double dp = 1 / (18 + 152 * aod700);
+            this.d = -0.337 * aod2 + 0.63 * aod700 + 0.116 + dp * lnP;
+        }
 
-        return b;
-    }
+        /**
+         * Shared coefficients of the state quantized to the steps of the cache.
+         * @param aod700 aerosol optical depth at 700 nm
+         * @param precipitable_water precipitable water in cm
+         * @param pressure air-pressure in pascal (Pa)
+         * @return coefficients
+         */
+        public static SolisCoefficients of(double aod700, double precipitable_water,
+                                           double pressure) {
+            double w = (precipitable_water <0.2) ? 0.2 : precipitable_water ;
+            if (!(Double.isFinite(aod700) && Double.isFinite(w) && Double.isFinite(pressure)))
+                return new SolisCoefficients(aod700, w, pressure);
 
-    private static double _calc_taug(double w, double aod700,double p) {
-        // Calculate the taug coefficient.
-        double p0 = 101325.;
-        double tg1 = 1.24 + 0.047*Math.log(w) + 0.0061* Math.pow( Math.log(w) ,2 );
-        double tg0 = 0.27 + 0.043*Math.log(w) + 0.0090* Math.pow( Math.log(w) ,2);
-        double tgp = 0.0079*w + 0.1;
-        double taug = tg1*aod700 + tg0 + tgp* Math.log(p/p0);
+            long aodKey = Math.round(aod700 / AOD700_STEP);
+            long waterKey = Math.round(w / WATER_STEP);
+            long pressureKey = Math.round(pressure / PRESSURE_STEP);
+            long hash = (aodKey * 31 + waterKey) * 31 + pressureKey;
+            int slot = (int)((hash ^ (hash >>> 17) ^ (hash >>> 31)) & (CACHE_SIZE - 1));
+            SolisCoefficients coefficients = CACHE.get(slot);
+            if (coefficients == null || coefficients.aodKey != aodKey
+                    || coefficients.waterKey != waterKey
+                    || coefficients.pressureKey != pressureKey) {
+                coefficients = new SolisCoefficients(aodKey * AOD700_STEP,
+                                                     waterKey * WATER_STEP,
+                                                     pressureKey * PRESSURE_STEP,
+                                                     aodKey, waterKey, pressureKey);
+                CACHE.set(slot, coefficients);
+            }
+            return coefficients;
+        }
 
-        return taug;
+        /**
+         * @param apparent_elevation apparent elevation in degree
+         * @param dni_extra extraterrestrial irradiance
+         * @return clear sky irradiance
+         */
+        public Irradiance.Variable estimate(double apparent_elevation, double dni_extra) {
+            //# this prevents the creation of nans at night instead of 0s
+            double sin_elev = Math.sin(Math.toRadians(apparent_elevation));
+            sin_elev = ( sin_elev < 1.e-30 ) ? 1.e-30 : sin_elev ;
+
+            double i0 = dni_extra * i0p;
+            double dni = i0 * Math.exp(-taub/ Math.pow( sin_elev , b));
+            double ghi = i0 * Math.exp(-taug/ Math.pow( sin_elev , g)) * sin_elev;
+            double dhi = i0 * Math.exp(-taud/ Math.pow( sin_elev , d));
+
+            return new Irradiance.Variable(ghi, dni, dni_extra, dhi, null);
+        }
+
+        /**
+         * clear sky irradiance of many apparent elevations, nothing is allocated
+         * @param apparent_elevation apparent elevations in degree
+         * @param dni_extra extraterrestrial irradiance
+         * @param from first element
+         * @param to end of the elements, exclusive
+         * @param ghi output column, or null
+         * @param dni output column, or null
+         * @param dhi output column, or null
+         */
+        public void estimate(double[] apparent_elevation, double dni_extra, int from, int to,
+                             double[] ghi, double[] dni, double[] dhi) {
+            double i0 = dni_extra * i0p;
+            for (int i = from; i < to; i++) {
+                double sin_elev = Math.sin(Math.toRadians(apparent_elevation[i]));
+                sin_elev = ( sin_elev < 1.e-30 ) ? 1.e-30 : sin_elev ;
+
+                if (dni != null)
+                    dni[i] = i0 * Math.exp(-taub/ Math.pow( sin_elev , b));
+                if (ghi != null)
+                    ghi[i] = i0 * Math.exp(-taug/ Math.pow( sin_elev , g)) * sin_elev;
+                if (dhi != null)
+                    dhi[i] = i0 * Math.exp(-taud/ Math.pow( sin_elev , d));
+            }
+        }
     }
 
-    private static double _calc_g(double w, double aod700) {
-        // Calculate the g coefficient.
-        return -0.0147*Math.log(w) - 0.3079* Math.pow( aod700 , 2 ) + 0.2846*aod700 + 0.3798;
+    /**
+     * Ineichen and Perez clear sky model, as pvlib.clearsky.ineichen without the perez
+     * enhancement.
+     * @param apparent_zenith apparent zenith in degree
+     * @param airmass_absolute absolute (pressure corrected) airmass
+     * @param linke_turbidity Linke turbidity
+     * @param altitude altitude in meter
+     * @param dni_extra extraterrestrial irradiance
+     * @return clear sky irradiance, 0s at night
+     */
+    public static Irradiance.Variable ineichen(double apparent_zenith, double airmass_absolute,
+                                               double linke_turbidity, double altitude,
+                                               double dni_extra) {
+        return new IneichenCoefficients(linke_turbidity, altitude, false)
+                .estimate(apparent_zenith, airmass_absolute, dni_extra);
     }
 
-    private static double _calc_d(double aod700, double p) {
-        // Calculate the d coefficient.
-        double p0 = 101325.;
-        double dp = 1/(18 + 152*aod700);
-        return -0.337* Math.pow(aod700 ,2 ) + 0.63*aod700 + 0.116 + dp* Math.log(p/p0);
+    /**
+     * Coefficients of the Ineichen and Perez model for one Linke turbidity and altitude, so
+     * that a timestamp costs only the exponentials of the airmass.
+     *
+     * @see <a href="https://doi.org/10.1016/S0038-092X(02)00045-2">P. Ineichen and R. Perez,
+     *      A new airmass independent formulation for the Linke turbidity coefficient,
+     *      Solar Energy 73 (2002)</a>
+     */
+    public static final class IneichenCoefficients {
+
+        public final double linkeTurbidity;
+        public final double altitude;
+        public final boolean perezEnhancement;
+
+        /* ghi = cg1 dni_extra cos(z) exp(-ghiAirmass am) */
+        private final double cg1;
+        private final double ghiAirmass;
+        /* dni = dni_extra min(b exp(-dniAirmass am), ghi dniRatio / cos(z)) */
+        private final double b;
+        private final double dniAirmass;
+        private final double dniRatio;
+
+        /**
+         * @param linke_turbidity Linke turbidity
+         * @param altitude altitude in meter
+         * @param perez_enhancement true for the enhancement of ghi at high airmass of Perez,
+         *                          see pvlib issue 435
+         */
+        public IneichenCoefficients(double linke_turbidity, double altitude,
+                                    boolean perez_enhancement) {
+            this.linkeTurbidity = linke_turbidity;
+            this.altitude = altitude;
+            this.perezEnhancement = perez_enhancement;
+
+            double tl = linke_turbidity;
+            double fh1 = Math.exp(-altitude / 8000.);
+            double fh2 = Math.exp(-altitude / 1250.);
+            this.cg1 = 5.09e-05 * altitude + 0.868;
+            double cg2 = 3.92e-05 * altitude + 0.0387;
+            this.ghiAirmass = cg2 * (fh1 + fh2 * (tl - 1));
+
+            this.b = 0.664 + 0.163 / fh1;
+            this.dniAirmass = 0.09 * (tl - 1);
+            this.dniRatio = Math.max(1 - (0.1 - 0.2 * Math.exp(-tl)) / (0.1 + 0.882 / fh1), 0);
+        }
+
+        /**
+         * @param apparent_zenith apparent zenith in degree
+         * @param airmass_absolute absolute (pressure corrected) airmass
+         * @param dni_extra extraterrestrial irradiance
+         * @return clear sky irradiance, 0s at night
+         */
+        public Irradiance.Variable estimate(double apparent_zenith, double airmass_absolute,
+                                            double dni_extra) {
+            double cos_zenith = Math.cos(Math.toRadians(apparent_zenith));
+            if (!(cos_zenith > 0 && airmass_absolute > 0))
+                return new Irradiance.Variable(0.0, 0.0, dni_extra, 0.0, null);
+
+            double ghi = ghi(cos_zenith, airmass_absolute, dni_extra);
+            double dni = dni(cos_zenith, airmass_absolute, dni_extra, ghi);
+            return new Irradiance.Variable(ghi, dni, dni_extra, ghi - dni * cos_zenith, null);
+        }
+
+        /**
+         * clear sky irradiance of many samples, nothing is allocated
+         * @param apparent_zenith apparent zenith in degree
+         * @param airmass_absolute absolute (pressure corrected) airmass
+         * @param dni_extra extraterrestrial irradiance
+         * @param from first element
+         * @param to end of the elements, exclusive
+         * @param ghi output column, or null
+         * @param dni output column, or null
+         * @param dhi output column, or null
+         */
+        public void estimate(double[] apparent_zenith, double[] airmass_absolute,
+                             double dni_extra, int from, int to,
+                             double[] ghi, double[] dni, double[] dhi) {
+            for (int i = from; i < to; i++) {
+                double cos_zenith = Math.cos(Math.toRadians(apparent_zenith[i]));
+                double am = airmass_absolute[i];
+                double g = 0.0;
+                double d = 0.0;
+                if (cos_zenith > 0 && am > 0) {
+                    g = ghi(cos_zenith, am, dni_extra);
+                    d = dni(cos_zenith, am, dni_extra, g);
+                }
+                if (ghi != null)
+                    ghi[i] = g;
+                if (dni != null)
+                    dni[i] = d;
+                if (dhi != null)
+                    dhi[i] = g - d * cos_zenith;
+            }
+        }
+
+        private double ghi(double cos_zenith, double am, double dni_extra) {
+            double ghi = Math.exp(-ghiAirmass * am);
+            if (perezEnhancement)
+                ghi *= Math.exp(0.01 * Math.pow(am, 1.8));
+            return Math.max(cg1 * dni_extra * cos_zenith * ghi, 0);
+        }
+
+        private double dni(double cos_zenith, double am, double dni_extra, double ghi) {
+            double bnci = dni_extra * Math.max(b * Math.exp(-dniAirmass * am), 0);
+            double bnci_2 = ghi * Math.min(dniRatio / cos_zenith, 1e20);
+            return Math.min(bnci, bnci_2);
+        }
     }
 
     public static double _calc_taud(double w, double aod700, double p) {
@@ -0,0 +1,219 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib;
+
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.Consts;
+import jp.oist.unit.ios.solarsystemlib.solarposition.DayContext;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionSpaModel;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SpaTimeTerms;
+
+/**
+ * Clear sky (simplified solis) columns of many sites over a regular time range, streamed to a
+ * {@link Sink} in chunks of a fixed number of timestamps.
+ *
+ * <p>The range is cut into chunks; the SPA time terms and the extraterrestrial irradiance of
+ * the timestamps of a chunk are computed once and shared by all sites, the latter once per UTC
+ * date. Each site then only runs the topocentric steps of SPA and the clear sky model with the
+ * coefficients of its pressure. Memory is bounded by the chunk size whatever the range and the
+ * number of sites, and nothing is allocated per timestamp.</p>
+ *
+ * <p>The sink receives the chunks in time order, and within a chunk the sites in order. A
+ * generator can be shared by threads, each call has its own buffers; to spread many sites
+ * over threads, give each thread its own range of sites.</p>
+ */
+public class ClearSkyGenerator {
+
+    /* timestamps per chunk when none is given, a day of minutes */
+    public static final int DEFAULT_CHUNK_SIZE = 1440;
+
+    /**
+     * Receiver of the clear sky columns of one site and one chunk. The columns are the buffers
+     * of the generator, valid during the call only.
+     */
+    public interface Sink {
+        /**
+         * @param site index of the site
+         * @param startEpochSecond first timestamp of the chunk in unix epoch seconds
+         * @param offset index of the first timestamp of the chunk in the range
+         * @param length number of timestamps of the chunk, the first elements of the columns
+         * @param ghi clear sky global horizontal irradiance
+         * @param dni clear sky direct normal irradiance
+         * @param dhi clear sky diffuse horizontal irradiance
+         */
+        void accept(int site, long startEpochSecond, int offset, int length,
+                    double[] ghi, double[] dni, double[] dhi);
+    }
+
+    private final ModelCollection factory;
+    private final SolarPositionSpaModel spa;
+    private final PreparedLocation[] sites;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private double aod700 = 0.1;
+    private double precipitableWater = 1.0;
+    private double atmosRefract = Consts.DEFAULT_ATMOS_REFRACT;
+
+    /**
+     * @param factory model collection, for the extraterrestrial irradiance
+     * @param sites locations of the sites
+     */
+    public ClearSkyGenerator(ModelCollection factory, Location... sites) {
+        if (sites.length == 0)
+            throw new IllegalArgumentException("\"sites\" must have at least one element");
+        this.factory = factory;
+        this.spa = new SolarPositionSpaModel(factory);
+        this.sites = new PreparedLocation[sites.length];
+        for (int i = 0; i < sites.length; i++)
+            this.sites[i] = sites[i].prepare();
+    }
+
+    public int getSites() {
+        return sites.length;
+    }
+
+    public PreparedLocation getSite(int site) {
+        return sites[site];
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize timestamps per chunk, default {@link #DEFAULT_CHUNK_SIZE}
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("\"chunkSize\" must be 1 or more");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Atmosphere of the clear sky columns (simplified solis).
+     * @param aod700 aerosol optical depth at 700 nm, default 0.1
+     * @param precipitableWater precipitable water in cm, default 1.0
+     */
+    public void setAtmosphere(double aod700, double precipitableWater) {
+        this.aod700 = aod700;
+        this.precipitableWater = precipitableWater;
+    }
+
+    /**
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree, default 0.5667
+     */
+    public void setAtmosRefract(double atmosRefract) {
+        this.atmosRefract = atmosRefract;
+    }
+
+    /**
+     * Streams the clear sky columns of all sites.
+     * @param startEpochSecond first timestamp in unix epoch seconds
+     * @param stepSeconds seconds between timestamps
+     * @param steps number of timestamps
+     * @param sink receiver of the chunks
+     */
+    public void generate(long startEpochSecond, long stepSeconds, int steps, Sink sink) {
+        generate(startEpochSecond, stepSeconds, steps, 0, sites.length, sink);
+    }
+
+    /**
+     * Streams the clear sky columns of a range of sites.
+     * @param startEpochSecond first timestamp in unix epoch seconds
+     * @param stepSeconds seconds between timestamps
+     * @param steps number of timestamps
+     * @param fromSite first site
+     * @param toSite end of the sites, exclusive
+     * @param sink receiver of the chunks
+     */
+    public void generate(long startEpochSecond, long stepSeconds, int steps,
+                         int fromSite, int toSite, Sink sink) {
+        if (stepSeconds < 1 || steps < 0)
+            throw new IllegalArgumentException("\"stepSeconds\" must be 1 or more and \"steps\""
+                                               + " 0 or more");
+        if (fromSite < 0 || toSite > sites.length || fromSite > toSite)
+            throw new IllegalArgumentException("sites must be a range of 0 to " + sites.length);
+
+        int size = Math.min(chunkSize, Math.max(steps, 1));
+        SpaTimeTerms[] terms = new SpaTimeTerms[size];
+        for (int k = 0; k < size; k++)
+            terms[k] = new SpaTimeTerms();
+        double[] dniExtra = new double[size];
+        double[] elevation = new double[size];
+        double[] ghi = new double[size];
+        double[] dni = new double[size];
+        double[] dhi = new double[size];
+
+        // the coefficients depend on the pressure of the site only
+        ClearSky.SolisCoefficients[] coefficients = new ClearSky.SolisCoefficients[toSite];
+        for (int s = fromSite; s < toSite; s++)
+            coefficients[s] = ClearSky.SolisCoefficients.of(aod700, precipitableWater,
+                                                            sites[s].pressure);
+
+        DayContext day = null;
+        double extra = 0.0;
+        for (int offset = 0; offset < steps; offset += size) {
+            int length = Math.min(size, steps - offset);
+            long start = startEpochSecond + offset * stepSeconds;
+
+            // terms shared by the sites
+            for (int k = 0; k < length; k++) {
+                long epochSecond = start + k * stepSeconds;
+                DayContext context = DayContext.ofEpochSecond(epochSecond);
+                if (context != day) {
+                    day = context;
+                    extra = factory.irradiance().extraRadiation(day.getDayOfYear());
+                }
+                spa.timeTerms(epochSecond, day.getDeltaT(), terms[k]);
+                dniExtra[k] = extra;
+            }
+
+            for (int s = fromSite; s < toSite; s++) {
+                PreparedLocation site = sites[s];
+                spa.estimate(terms, length, site, site.refractionScale, atmosRefract,
+                             null, null, elevation);
+                // runs of the same extraterrestrial irradiance, one per date
+                for (int from = 0, to; from < length; from = to) {
+                    to = from + 1;
+                    while (to < length && dniExtra[to] == dniExtra[from])
+                        to++;
+                    coefficients[s].estimate(elevation, dniExtra[from], from, to,
+                                             ghi, dni, dhi);
+                }
+                sink.accept(s, start, offset, length, ghi, dni, dhi);
+            }
+        }
+    }
+
+    /**
+     * Computes the clear sky columns of one site into buffers of the whole range. Buffers may
+     * be null when not needed, the others need {@code steps} elements.
+     * @param site index of the site
+     * @param startEpochSecond first timestamp in unix epoch seconds
+     * @param stepSeconds seconds between timestamps
+     * @param steps number of timestamps
+     * @param ghi output of clear sky global horizontal irradiance
+     * @param dni output of clear sky direct normal irradiance
+     * @param dhi output of clear sky diffuse horizontal irradiance
+     */
+    public void generate(int site, long startEpochSecond, long stepSeconds, int steps,
+                         double[] ghi, double[] dni, double[] dhi) {
+        checkBuffer(ghi, steps, "ghi");
+        checkBuffer(dni, steps, "dni");
+        checkBuffer(dhi, steps, "dhi");
+        generate(startEpochSecond, stepSeconds, steps, site, site + 1,
+                 (s, start, offset, length, chunkGhi, chunkDni, chunkDhi) -> {
+                     if (ghi != null)
+                         System.arraycopy(chunkGhi, 0, ghi, offset, length);
+                     if (dni != null)
+                         System.arraycopy(chunkDni, 0, dni, offset, length);
+                     if (dhi != null)
+                         System.arraycopy(chunkDhi, 0, dhi, offset, length);
+                 });
+    }
+
+    private static void checkBuffer(double[] buffer, int length, String name) {
+        if (buffer != null && buffer.length < length)
+            throw new IllegalArgumentException("\"" + name + "\" must have at least " + length
+                                               + " elements");
+    }
+}
@@ -0,0 +1,211 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib;
+
+import jp.oist.unit.ios.solarsystemlib.atomsphere.Atmosphere;
+import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.RelativeAirmassModel;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.irradiance.aoi.AoiLossModel;
+import jp.oist.unit.ios.solarsystemlib.irradiance.dni.DniModel;
+import jp.oist.unit.ios.solarsystemlib.irradiance.extraradiation.ExtraRadiationModel;
+import jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse.SkyDiffuseModel;
+import jp.oist.unit.ios.solarsystemlib.irradiance.spectrum.SpectralLossModel;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.cell.temperature.CellTemperatureModel;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionModel;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionReferenceYearModel;
+
+/**
+ * Runs a {@link ModelChain} over the lifetime of a system, decades of timestamps, with the
+ * solar position replayed from one reference year by {@link SolarPositionReferenceYearModel}
+ * and the DC output derated by the age of the system.
+ *
+ * <p>The chain keeps the models of the given one except the solar position model. The age of
+ * the system is counted in whole years of 365.2425 days from the commissioning; the derating
+ * is either a linear rate per year or an explicit factor for each year of age.</p>
+ */
+public class LifetimeSimulation {
+
+    /* mean calendar year in seconds */
+    private static final double YEAR = 365.2425 * 86400;
+
+    private final ModelChain chain;
+    private final SolarPositionReferenceYearModel geometry;
+    private final long commissioning;
+
+    private double degradationRate = 0.0;
+    private double[] degradation = null;
+
+    /**
+     * @param chain chain of the system, its options and models are shared
+     * @param referenceYear year whose solar geometry is replayed, best in the middle of the run
+     * @param commissioning start of the operation in unix epoch seconds
+     * @throws IllegalArgumentException if the chain is in interval mode, which does not run on
+     *                                  the replayed geometry
+     */
+    public LifetimeSimulation(ModelChain chain, int referenceYear, long commissioning) {
+        if (chain.isIntervalMode())
+            throw new IllegalArgumentException("\"interval\" can not be used with the geometry"
+                                               + " of a reference year");
+        ModelCollection models = new ReferenceYearModels(chain.getModelCollection(),
+                                                         referenceYear);
+        this.geometry = (SolarPositionReferenceYearModel)models.getSolarPositionModel();
+        this.chain = new ModelChain(chain.system, chain.location, chain.options);
+        this.chain.setModelCollection(models);
+        this.commissioning = commissioning;
+    }
+
+    public ModelChain getModelChain() {
+        return chain;
+    }
+
+    public SolarPositionReferenceYearModel getGeometry() {
+        return geometry;
+    }
+
+    public long getCommissioning() {
+        return commissioning;
+    }
+
+    /**
+     * Derates the DC output linearly, by {@code 1 - rate * age}.
+     * @param rate fraction of the DC output lost per year, from 0 to 1
+     */
+    public void setDegradationRate(double rate) {
+        if (!(rate >= 0 && rate <= 1))
+            throw new IllegalArgumentException("\"rate\" must be from 0 to 1");
+        this.degradationRate = rate;
+        this.degradation = null;
+    }
+
+    /**
+     * Derates the DC output by a factor for each year of age. The last factor holds for the
+     * later years.
+     * @param factors fraction of the DC output left in each year of age, the first one is the
+     *                year of the commissioning
+     */
+    public void setDegradation(double[] factors) {
+        if (factors == null || factors.length == 0)
+            throw new IllegalArgumentException("\"factors\" must have at least one element");
+        this.degradation = factors.clone();
+    }
+
+    /**
+     * @param epochSecond timestamp in unix epoch seconds
+     * @return fraction of the DC output left at the timestamp
+     */
+    public double degradation(long epochSecond) {
+        int age = (int)Math.max(0, Math.floor((epochSecond - commissioning) / YEAR));
+        if (degradation != null)
+            return degradation[Math.min(age, degradation.length - 1)];
+        return Math.max(0.0, 1.0 - degradationRate * age);
+    }
+
+    /**
+     * Runs the chain on the timestamps of the lifetime.
+     * @param epochSeconds timestamps in unix epoch seconds
+     * @param irrad irradiance of each timestamp
+     * @param pressure air-pressure on Pascal of each timestamp, or null for the default
+     * @param tempAir air-temperature on degC of each timestamp, or null for the default
+     * @param windSpeed wind speed in m/s of each timestamp, or null for 0
+     * @return result of each timestamp
+     */
+    public ModelChain.Result[] run(long[] epochSeconds, Irradiance.Variable[] irrad,
+                                   double[] pressure, double[] tempAir, double[] windSpeed) {
+        int n = epochSeconds.length;
+        checkColumn(irrad == null ? -1 : irrad.length, n, "irrad");
+        if (pressure != null)
+            checkColumn(pressure.length, n, "pressure");
+        if (tempAir != null)
+            checkColumn(tempAir.length, n, "tempAir");
+        if (windSpeed != null)
+            checkColumn(windSpeed.length, n, "windSpeed");
+
+        // night is cheap with the replayed geometry, no need for the sunrise and sunset index
+        ModelChain.Result[] ret = new ModelChain.Result[n];
+        for (int i = 0; i < n; i++) {
+            ret[i] = chain.pvWatts(epochSeconds[i], irrad[i],
+                                   (pressure == null) ? null : pressure[i],
+                                   (tempAir == null) ? null : tempAir[i],
+                                   (windSpeed == null) ? null : windSpeed[i],
+                                   degradation(epochSeconds[i]));
+        }
+        return ret;
+    }
+
+    private static void checkColumn(int length, int expected, String name) {
+        if (length != expected)
+            throw new IllegalArgumentException("\"" + name + "\" must have " + expected
+                                               + " elements");
+    }
+
+    /**
+     * Models of another collection with the solar position replayed from a reference year.
+     */
+    private static final class ReferenceYearModels implements ModelCollection {
+        private final ModelCollection models;
+        private final SolarPositionReferenceYearModel solarPositionModel;
+        private final SolarPosition solarposition;
+
+        ReferenceYearModels(ModelCollection models, int referenceYear) {
+            this.models = models;
+            this.solarPositionModel = new SolarPositionReferenceYearModel(this, referenceYear);
+            this.solarposition = new SolarPosition(this);
+        }
+
+        @Override
+        public Irradiance irradiance() {
+            return models.irradiance();
+        }
+
+        @Override
+        public Atmosphere atmosphere() {
+            return models.atmosphere();
+        }
+
+        @Override
+        public SolarPosition solarposition() {
+            return solarposition;
+        }
+
+        @Override
+        public CellTemperatureModel getCellTemperatureModel() {
+            return models.getCellTemperatureModel();
+        }
+
+        @Override
+        public SpectralLossModel getSpectralLossModel() {
+            return models.getSpectralLossModel();
+        }
+
+        @Override
+        public AoiLossModel getAoiLossModel() {
+            return models.getAoiLossModel();
+        }
+
+        @Override
+        public SkyDiffuseModel getSkyDiffuseModel() {
+            return models.getSkyDiffuseModel();
+        }
+
+        @Override
+        public SolarPositionModel getSolarPositionModel() {
+            return solarPositionModel;
+        }
+
+        @Override
+        public ExtraRadiationModel getExtraRadiationModel() {
+            return models.getExtraRadiationModel();
+        }
+
+        @Override
+        public DniModel getDniModel() {
+            return models.getDniModel();
+        }
+
+        @Override
+        public RelativeAirmassModel getRelativeAirmassModel() {
+            return models.getRelativeAirmassModel();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import jp.oist.unit.ios.solarsystemlib.atomsphere.Atmosphere;
 import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
 import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.irradiance.HorizonProfile;
 import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
 
 public class Location {
@@ -15,6 +16,8 @@ public class Location {
     public final Double altitude;
 
     private ModelCollection factory = new DefaultModelCollection();
+    private volatile PreparedLocation prepared = null;
+    private volatile HorizonProfile horizon = null;
 
     public Location(double latitude , double longitude) {
         this(latitude, longitude, null);
@@ -26,10 +29,38 @@ public class Location {
         this.altitude = altitude;
     }
 
+    /**
+     * site constants of this location, computed once on first use.
+     * @return prepared location
+     */
+    public PreparedLocation prepare() {
+        PreparedLocation ret = prepared;
+        if (ret == null) {
+            ret = new PreparedLocation(this);
+            prepared = ret;
+        }
+        return ret;
+    }
+
     public void setModelFactory(ModelCollection factory) {
         this.factory = factory;
     }
 
+    /**
+     * far horizon of this location, shading the beam and the sky diffuse irradiance.
+     * @return horizon profile, or null for an open horizon
+     */
+    public HorizonProfile getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * @param horizon horizon profile, or null for an open horizon
+     */
+    public void setHorizon(HorizonProfile horizon) {
+        this.horizon = horizon;
+    }
+
     /**
      *  calculate the solar zenith, azimuth, etc. at this location.
      * @param time
@@ -38,7 +69,7 @@ public class Location {
     public SolarPosition.Variable getSolarPosition(ZonedDateTime time){
         Double press = null;
         if (altitude != null)
-            press = Atmosphere.alt2pres(altitude);
+            press = prepare().pressure;
 
         return getSolarPosition(time, press, null);
     }
@@ -66,6 +97,6 @@ public class Location {
 
     public Airmass getAirmass(SolarPosition.Variable sp) {
         Atmosphere atmosphere = factory.atmosphere();
-        return atmosphere.getAirmass(sp, altitude);
+        return atmosphere.getAirmass(sp, prepare());
     }
 }
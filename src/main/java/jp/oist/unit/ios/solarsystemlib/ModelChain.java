@@ -8,12 +8,18 @@ import jp.oist.unit.ios.solarsystemlib.common.Consts;
 import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
 import jp.oist.unit.ios.solarsystemlib.irradiance.aoi.AoiLossModel;
 import jp.oist.unit.ios.solarsystemlib.irradiance.spectrum.SpectralLossModel;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
 import jp.oist.unit.ios.solarsystemlib.pvsystem.PvSystem;
 import jp.oist.unit.ios.solarsystemlib.pvsystem.ac.PvWattsAc;
 import jp.oist.unit.ios.solarsystemlib.pvsystem.cell.temperature.CellTemperature;
 import jp.oist.unit.ios.solarsystemlib.pvsystem.cell.temperature.CellTemperatureModel;
 import jp.oist.unit.ios.solarsystemlib.pvsystem.dc.PvWattsDc;
+import jp.oist.unit.ios.solarsystemlib.common.TimeUtils;
+import jp.oist.unit.ios.solarsystemlib.solarposition.IntervalSolarPosition;
 import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionModel;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionSpaModel;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SunriseSunsetCalculator;
 
 import java.time.ZonedDateTime;
 import java.util.Map;
@@ -21,6 +27,9 @@ import java.util.Map;
 public class ModelChain {
 
     public static class Result {
+        /* result of night and of the sun below "minSolarElevation" */
+        public static final Result ZERO = new Result(0.0, 0.0);
+
         public final double dcPower, acPower;
         public Result(double dcPower, double acPower) {
             this.dcPower = dcPower;
@@ -36,6 +45,10 @@ public class ModelChain {
         public double aoi;
         public double aoiCoefficient, spectralCoefficient;
         public double effectiveIrradiance;
+        /* the sun is below "minSolarElevation", only the solar position is set */
+        public boolean night;
+        /* effective solar position of the interval in interval mode, or null */
+        public IntervalSolarPosition.Variable interval;
     }
 
     public final PvSystem system;
@@ -43,6 +56,8 @@ public class ModelChain {
     public final Map<String, Object> options;
 
     private ModelCollection models = new DefaultModelCollection();
+    /* estimator of interval mode, built on first use for the models of the chain */
+    private IntervalSolarPosition intervalSolarPosition = null;
 
     public ModelChain(PvSystem system, Location location, Map<String, Object> options) {
         this.system = system;
@@ -52,23 +67,145 @@ public class ModelChain {
 
     public PrepareInputs prepareInputs(ZonedDateTime ts, Irradiance.Variable irrad,
                                        Double pressure, Double tempAir, Double windSpeed) {
+        if (interval() > 0)
+            return prepareInputs(ts.toEpochSecond(), irrad, pressure, tempAir, windSpeed);
+        PrepareInputs ret = newInputs(pressure, tempAir, windSpeed);
+        SolarPosition solarposition = models.solarposition();
+        ret.solarPosition = solarposition.estimate(ts, location, ret.pressure, ret.tempAir);
+        return prepareInputs(ret, irrad);
+    }
+
+    public PrepareInputs prepareInputs(long epochSecond, Irradiance.Variable irrad,
+                                       Double pressure, Double tempAir, Double windSpeed) {
+        PrepareInputs ret = newInputs(pressure, tempAir, windSpeed);
+        long interval = interval();
+        if (interval > 0) {
+            IntervalSolarPosition solarposition = intervalSolarPosition();
+            long start = intervalStart(epochSecond, interval);
+            ret.interval = solarposition.estimate(start, start + interval, location,
+                                                  ret.pressure, ret.tempAir);
+            ret.solarPosition = ret.interval.getSolarPosition();
+        } else {
+            SolarPosition solarposition = models.solarposition();
+            ret.solarPosition = solarposition.estimate(epochSecond, location, ret.pressure,
+                                                       ret.tempAir);
+        }
+        return prepareInputs(ret, irrad);
+    }
+
+    /**
+     * Length of the intervals of averaged weather data, "interval" option in seconds, up to
+     * {@link IntervalSolarPosition#MAX_INTERVAL}. When set, the chain runs on the effective
+     * solar position of the interval by SPA, see {@link IntervalSolarPosition}, instead of the
+     * one of the timestamp. default 0, the instant of the timestamp
+     *
+     * <p>Interval mode runs on the SPA time terms, so it needs SPA as the solar position model
+     * of the collection; with any other one, such as a cached, ephemeris or reference-year
+     * model, the chain throws IllegalArgumentException rather than bypassing it.</p>
+     *
+     * @throws IllegalArgumentException unless a whole number of seconds from 0 to
+     *                                  {@link IntervalSolarPosition#MAX_INTERVAL}
+     */
+    private long interval() {
+        Object value = options.getOrDefault("interval", null);
+        if (value == null)
+            return 0;
+        double seconds = (value instanceof Number) ? ((Number)value).doubleValue() : Double.NaN;
+        if (!(seconds >= 0 && seconds <= IntervalSolarPosition.MAX_INTERVAL)
+                || seconds != Math.rint(seconds))
+            throw new IllegalArgumentException("\"interval\" must be a whole number in seconds,"
+                                               + " from 0 to "
+                                               + IntervalSolarPosition.MAX_INTERVAL);
+        return (long)seconds;
+    }
+
+    /**
+     * @return true if the chain runs on the effective solar position of the intervals, with an
+     *         "interval" option above 0
+     * @throws IllegalArgumentException if the "interval" option is invalid
+     */
+    public boolean isIntervalMode() {
+        return interval() > 0;
+    }
+
+    private IntervalSolarPosition intervalSolarPosition() {
+        double horizon = minSolarElevation();
+        IntervalSolarPosition ret = intervalSolarPosition;
+        if (ret == null || ret.getHorizon() != horizon) {
+            SolarPositionModel model = models.getSolarPositionModel();
+            if (!(model instanceof SolarPositionSpaModel))
+                throw new IllegalArgumentException("\"interval\" needs SPA as the solar position"
+                                                   + " model, not "
+                                                   + model.getClass().getSimpleName());
+            ret = new IntervalSolarPosition((SolarPositionSpaModel)model,
+                                            IntervalSolarPosition.DEFAULT_NODES, horizon);
+            intervalSolarPosition = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Start of the interval of a timestamp, after the "intervalLabel" option telling where the
+     * timestamps are in their interval: "start", "center" or "end". default "end"
+     */
+    private long intervalStart(long epochSecond, long interval) {
+        Object label = options.getOrDefault("intervalLabel", "end");
+        if ("start".equals(label))
+            return epochSecond;
+        if ("center".equals(label))
+            return epochSecond - interval / 2;
+        if ("end".equals(label))
+            return epochSecond - interval;
+        throw new IllegalArgumentException("\"intervalLabel\" must be \"start\", \"center\" or"
+                                           + " \"end\"");
+    }
+
+    /**
+     * Minimum apparent solar elevation for the chain to run, "minSolarElevation" option in
+     * degree, 0 or more. Below it, and always when the sun is below the horizon, the result is
+     * {@link Result#ZERO}. default 0.0
+     */
+    private double minSolarElevation() {
+        Object value = options.getOrDefault("minSolarElevation", null);
+        if (value == null)
+            return 0.0;
+        if (!(value instanceof Number) || !(((Number)value).doubleValue() >= 0))
+            throw new IllegalArgumentException("\"minSolarElevation\" must be a number in degree,"
+                                               + " 0 or more");
+        return ((Number)value).doubleValue();
+    }
+
+    private PrepareInputs newInputs(Double pressure, Double tempAir, Double windSpeed) {
         PrepareInputs ret = new PrepareInputs();
         ret.pressure = (pressure == null) ? Consts.DEFAULT_PRESSURE : pressure;
         ret.tempAir = (tempAir == null) ? Consts.DEFAULT_TEMPERATURE : tempAir;
         ret.windSpeed = (windSpeed == null) ? 0.0 : windSpeed;
+        return ret;
+    }
+
+    private PrepareInputs prepareInputs(PrepareInputs ret, Irradiance.Variable irrad) {
+        // no transposition nor losses at night, there is no airmass either
+        boolean night = (ret.interval != null) ? ret.interval.isDark()
+                : ret.solarPosition.getApparentElevation() <= minSolarElevation();
+        if (night) {
+            ret.night = true;
+            return ret;
+        }
 
         // Prepare Inputs
-        SolarPosition solarposition = models.solarposition();
         Irradiance irradiance = models.irradiance();
 
-        ret.solarPosition = solarposition.estimate(ts, location, ret.pressure, ret.tempAir);
         ret.airmass = location.getAirmass(ret.solarPosition);
-        ret.aoi = Irradiance.aoi(system.surfaceTilt, system.surfaceAzimuth,
-                                 ret.solarPosition.getApparentZenith(),
-                                 ret.solarPosition.getAzimuth());
-        ret.poaIrradiance = irradiance.getPoaIrradiance(system.surfaceTilt, system.surfaceAzimuth,
-                                                        ret.solarPosition, irrad, ret.airmass,
-                                                        system.surfaceType);
+        // one projection of the sun for the beam, the sky diffuse and the angle of incidence;
+        // in interval mode the mean projection over the interval, not the one of the mean
+        // direction
+        PreparedSurface surface = system.prepare();
+        double projection = (ret.interval == null) ? surface.projection(ret.solarPosition)
+                : ret.interval.projection(system.surfaceTilt, system.surfaceAzimuth);
+        ret.poaIrradiance = irradiance.getPoaIrradiance(surface, location.getHorizon(),
+                                                        projection, ret.solarPosition, irrad,
+                                                        ret.airmass);
+        ret.aoi = PreparedSurface.aoi(projection);
 
         Object[] aoiLossVars = (Object[]) options.getOrDefault("aoiLossModel", null);
         AoiLossModel aoiLossModel = models.getAoiLossModel();
@@ -86,12 +223,159 @@ public class ModelChain {
 
     public ModelChain.Result pvWatts(ZonedDateTime ts, Irradiance.Variable irrad,
                                      Double pressure, Double tempAir, Double windSpeed) {
+        Object[] pvWattsDcOpts = pvWattsDcOptions();
+        return pvWatts(pvWattsDcOpts, prepareInputs(ts, irrad, pressure, tempAir, windSpeed));
+    }
+
+    public ModelChain.Result pvWatts(long epochSecond, Irradiance.Variable irrad,
+                                     Double pressure, Double tempAir, Double windSpeed) {
+        Object[] pvWattsDcOpts = pvWattsDcOptions();
+        return pvWatts(pvWattsDcOpts, prepareInputs(epochSecond, irrad, pressure, tempAir, windSpeed));
+    }
+
+    /**
+     * Runs the chain with a derated DC output, such as an aged system.
+     * @param epochSecond timestamp in unix epoch seconds
+     * @param irrad irradiance
+     * @param pressure air-pressure on Pascal, or null for the default
+     * @param tempAir air-temperature on degC, or null for the default
+     * @param windSpeed wind speed in m/s, or null for 0
+     * @param dcFactor fraction of the DC power left, applied before the inverter
+     * @return result of the timestamp
+     */
+    public ModelChain.Result pvWatts(long epochSecond, Irradiance.Variable irrad,
+                                     Double pressure, Double tempAir, Double windSpeed,
+                                     double dcFactor) {
+        Object[] pvWattsDcOpts = pvWattsDcOptions();
+        PrepareInputs vars = prepareInputs(epochSecond, irrad, pressure, tempAir, windSpeed);
+        return pvWatts(pvWattsDcOpts, vars, dcFactor);
+    }
+
+    private Object[] pvWattsDcOptions() {
         Object[] pvWattsDcOpts = (Object[])options.getOrDefault("pvWattsDc", null);
         if (pvWattsDcOpts == null || pvWattsDcOpts.length < 1)
             throw new IllegalArgumentException("\"pvWattsDc\" key must be set as. Object[] {"
                                             + "0: [Double:pdc0 (required)], "
                                             + "1: [Double:gammaPdc (default: -0.03)], "
                                             + "2: [Double:reftemp (default: 25.0) ]}");
+        return pvWattsDcOpts;
+    }
+
+    /**
+     * Runs the chain on a series of timestamps. Whole spans of night are found from sunrise
+     * and sunset of each day and give {@link Result#ZERO} without estimating the solar
+     * position, in interval mode when the whole interval is in the night; the other timestamps
+     * run as {@link #pvWatts(long, Irradiance.Variable, Double,
+     * Double, Double)}.
+     * @param epochSeconds timestamps in unix epoch seconds
+     * @param irrad irradiance of each timestamp
+     * @param pressure air-pressure on Pascal of each timestamp, or null for the default
+     * @param tempAir air-temperature on degC of each timestamp, or null for the default
+     * @param windSpeed wind speed in m/s of each timestamp, or null for 0
+     * @return result of each timestamp
+     */
+    public ModelChain.Result[] pvWatts(long[] epochSeconds, Irradiance.Variable[] irrad,
+                                       double[] pressure, double[] tempAir, double[] windSpeed) {
+        int n = epochSeconds.length;
+        checkColumn(irrad == null ? -1 : irrad.length, n, "irrad");
+        if (pressure != null)
+            checkColumn(pressure.length, n, "pressure");
+        if (tempAir != null)
+            checkColumn(tempAir.length, n, "tempAir");
+        if (windSpeed != null)
+            checkColumn(windSpeed.length, n, "windSpeed");
+
+        ModelChain.Result[] ret = new ModelChain.Result[n];
+        if (n == 0)
+            return ret;
+        Object[] pvWattsDcOpts = pvWattsDcOptions();
+        long interval = interval();
+        NightIndex nights = new NightIndex(epochSeconds, interval);
+
+        for (int i = 0; i < n; i++) {
+            long from = (interval > 0) ? intervalStart(epochSeconds[i], interval) : epochSeconds[i];
+            if (nights.isNight(from, from + interval)) {
+                ret[i] = ModelChain.Result.ZERO;
+                continue;
+            }
+            PrepareInputs vars = prepareInputs(epochSeconds[i], irrad[i],
+                                               (pressure == null) ? null : pressure[i],
+                                               (tempAir == null) ? null : tempAir[i],
+                                               (windSpeed == null) ? null : windSpeed[i]);
+            ret[i] = pvWatts(pvWattsDcOpts, vars);
+        }
+        return ret;
+    }
+
+    private static void checkColumn(int length, int expected, String name) {
+        if (length != expected)
+            throw new IllegalArgumentException("\"" + name + "\" must have " + expected
+                                               + " elements");
+    }
+
+    /**
+     * Daylight windows of the days covering a series of timestamps. The windows are found
+     * with a horizon 1 degree below "minSolarElevation", which is more than the atmospheric
+     * refraction, so a timestamp outside of them is below the threshold for sure.
+     */
+    private class NightIndex {
+        /* days start at the local mean midnight, so that transits fall near the middle */
+        private final int offsetSeconds;
+        private final long firstEpochDay;
+        private final long[] sunrise;
+        private final long[] transit;
+        private final long[] sunset;
+
+        NightIndex(long[] epochSeconds, long interval) {
+            this.offsetSeconds = (int)Math.round(location.longitude / 15) * 3600;
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (long t : epochSeconds) {
+                first = Math.min(first, t);
+                last = Math.max(last, t);
+            }
+            // with a day of margin on both sides, more than any interval
+            this.firstEpochDay = TimeUtils.epochDay(first - interval, offsetSeconds) - 1;
+            int days = (int)(TimeUtils.epochDay(last + interval, offsetSeconds)
+                             - firstEpochDay) + 2;
+            this.sunrise = new long[days];
+            this.transit = new long[days];
+            this.sunset = new long[days];
+
+            double horizon = minSolarElevation() - 1.0;
+            PreparedLocation site = location.prepare();
+            SunriseSunsetCalculator calculator = new SunriseSunsetCalculator(models);
+            calculator.calculate(site.latitude, site.longitude, site.elevation,
+                                 firstEpochDay, days, offsetSeconds, -0.26667 - horizon,
+                                 sunrise, transit, sunset);
+        }
+
+        /* true when no daylight window meets the span from "from" to "to" */
+        boolean isNight(long from, long to) {
+            int day = (int)(TimeUtils.epochDay(from, offsetSeconds) - firstEpochDay);
+            int lastDay = (int)(TimeUtils.epochDay(to, offsetSeconds) - firstEpochDay);
+            for (int d = day - 1; d <= lastDay + 1; d++) {
+                if (sunrise[d] == SunriseSunsetCalculator.SUN_ALWAYS_DOWN)
+                    continue;
+                long rise = (sunrise[d] == SunriseSunsetCalculator.SUN_ALWAYS_UP)
+                        ? transit[d] - TimeUtils.SECONDS_PER_DAY / 2 : sunrise[d];
+                long set = (sunset[d] == SunriseSunsetCalculator.SUN_ALWAYS_UP)
+                        ? transit[d] + TimeUtils.SECONDS_PER_DAY / 2 : sunset[d];
+                if (to >= rise && from <= set)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private ModelChain.Result pvWatts(Object[] pvWattsDcOpts, PrepareInputs vars) {
+        return pvWatts(pvWattsDcOpts, vars, 1.0);
+    }
+
+    private ModelChain.Result pvWatts(Object[] pvWattsDcOpts, PrepareInputs vars,
+                                      double dcFactor) {
+        if (vars.night)
+            return ModelChain.Result.ZERO;
 
         // Nameplate DC rating
         double pdc0 = (Double)pvWattsDcOpts[0];
@@ -100,13 +384,12 @@ public class ModelChain {
         // Cell reference temperature in degC . default 25.0
         double refTemp = (pvWattsDcOpts.length > 2)? (Double)pvWattsDcOpts[2] : 25.0;
 
-        PrepareInputs vars = prepareInputs(ts, irrad, pressure, tempAir, windSpeed);
-
         CellTemperatureModel cellTempModel = models.getCellTemperatureModel();
         CellTemperature.Variable cellTemp = cellTempModel.estimate(vars.poaIrradiance, vars.tempAir, vars.windSpeed,
                                                                    system.rackingModel);
         PvWattsDc pvWattsDc = new PvWattsDc(models);
-        double pdc = pvWattsDc.estimate(vars.effectiveIrradiance, cellTemp, pdc0, gammaPdc, refTemp);
+        double pdc = pvWattsDc.estimate(vars.effectiveIrradiance, cellTemp, pdc0, gammaPdc, refTemp)
+                   * dcFactor;
 
         Object[] pvWattsAcOpts = (Object[])options.getOrDefault("pvWattsAc", null);
         Double nominalEfficiency = null;
@@ -138,6 +421,7 @@ public class ModelChain {
 
     public void setModelCollection(ModelCollection models) {
         this.models = models;
+        this.intervalSolarPosition = null;
     }
 
     public ModelCollection getModelCollection() {
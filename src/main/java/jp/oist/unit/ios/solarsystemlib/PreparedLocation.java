@@ -0,0 +1,46 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib;
+
+import jp.oist.unit.ios.solarsystemlib.atomsphere.Atmosphere;
+import jp.oist.unit.ios.solarsystemlib.common.Consts;
+
+/**
+ * Site constants of a {@link Location} which never change between timestamps.
+ * Obtain an instance by {@link Location#prepare()}.
+ */
+public class PreparedLocation {
+    public final Location location;
+    public final double latitude;
+    public final double longitude;
+    /* altitude in meter, 0 when the location has no altitude */
+    public final double elevation;
+    /* air-pressure in pascal derived from altitude, or the default pressure */
+    public final double pressure;
+
+    public final double sinLatitude;
+    public final double cosLatitude;
+    /* geocentric terms of SPA (uterm, xterm, yterm) */
+    public final double uterm;
+    public final double xterm;
+    public final double yterm;
+    /* refraction scaling factor at the site pressure and the default temperature */
+    public final double refractionScale;
+
+    PreparedLocation(Location location) {
+        this.location = location;
+        this.latitude = location.latitude;
+        this.longitude = location.longitude;
+        this.elevation = (location.altitude == null) ? 0.0 : location.altitude;
+        this.pressure = (location.altitude == null) ? Consts.DEFAULT_PRESSURE
+                                                    : Atmosphere.alt2pres(location.altitude);
+
+        double latRad = Math.toRadians(latitude);
+        this.sinLatitude = Math.sin(latRad);
+        this.cosLatitude = Math.cos(latRad);
+
+        this.uterm = Math.atan(0.99664719 * Math.tan(latRad));
+        this.xterm = Math.cos(uterm) + elevation / 6378140 * cosLatitude;
+        this.yterm = 0.99664719 * Math.sin(uterm) + elevation / 6378140 * sinLatitude;
+        this.refractionScale = Atmosphere.refractionScale(pressure, Consts.DEFAULT_TEMPERATURE);
+    }
+}
@@ -0,0 +1,320 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib;
+
+import jp.oist.unit.ios.solarsystemlib.atomsphere.Atmosphere;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.Consts;
+import jp.oist.unit.ios.solarsystemlib.solarposition.DayContext;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionSpaModel;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SpaTimeTerms;
+
+/**
+ * Solar geometry and clear sky fields of a regular latitude/longitude grid.
+ *
+ * <p>SPA is separable on a grid: the time terms are computed once per timestamp, the hour
+ * angle once per column and the latitude terms once per row. Only the parallax, the elevation,
+ * the refraction and the azimuth are left per pixel, and the sines and cosines of the parallax
+ * angles are taken from their atan2 arguments. The results equal the ones of
+ * {@link SolarPositionSpaModel} to rounding.</p>
+ *
+ * <p>Fields are row-major buffers of doubles, pixel (row, column) at
+ * {@code row * columns + column}; a time range is a sequence of fields, step k starting at
+ * {@code k * rows * columns}. A buffer can be written as is, for example through
+ * {@code ByteBuffer.asDoubleBuffer().put(field)}.</p>
+ */
+public class SolarRaster {
+
+    private static final double EARTH_RADIUS = 6378140;
+
+    private final ModelCollection factory;
+    private final SolarPositionSpaModel spa;
+
+    private final double firstLatitude;
+    private final double latitudeStep;
+    private final int rows;
+    private final double firstLongitude;
+    private final double longitudeStep;
+    private final int columns;
+    /* altitude of each pixel in meter, or null for sea level */
+    private final double[] altitude;
+
+    /* latitude terms of each row */
+    private final double[] sinLatitude;
+    private final double[] cosLatitude;
+    private final double[] cosU;
+    private final double[] sinU;
+
+    private double aod700 = 0.1;
+    private double precipitableWater = 1.0;
+    private double atmosRefract = Consts.DEFAULT_ATMOS_REFRACT;
+
+    /**
+     * @param factory model collection
+     * @param firstLatitude latitude of the centers of the first row
+     * @param latitudeStep latitude from a row to the next one, negative for north up
+     * @param rows number of rows
+     * @param firstLongitude longitude of the centers of the first column
+     * @param longitudeStep longitude from a column to the next one
+     * @param columns number of columns
+     * @param altitude row-major altitude of the pixels in meter, or null for sea level
+     */
+    public SolarRaster(ModelCollection factory, double firstLatitude, double latitudeStep,
+                       int rows, double firstLongitude, double longitudeStep, int columns,
+                       double[] altitude) {
+        if (rows < 1 || columns < 1)
+            throw new IllegalArgumentException("\"rows\" and \"columns\" must be 1 or more");
+        if ((long)rows * columns > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("too many pixels: " + rows + " x " + columns);
+        if (altitude != null && altitude.length != rows * columns)
+            throw new IllegalArgumentException("\"altitude\" must have " + (rows * columns)
+                                               + " elements");
+        this.factory = factory;
+        this.spa = new SolarPositionSpaModel(factory);
+        this.firstLatitude = firstLatitude;
+        this.latitudeStep = latitudeStep;
+        this.rows = rows;
+        this.firstLongitude = firstLongitude;
+        this.longitudeStep = longitudeStep;
+        this.columns = columns;
+        this.altitude = altitude;
+
+        this.sinLatitude = new double[rows];
+        this.cosLatitude = new double[rows];
+        this.cosU = new double[rows];
+        this.sinU = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            double phi = Math.toRadians(getLatitude(r));
+            double u = Math.atan(0.99664719 * Math.tan(phi));
+            sinLatitude[r] = Math.sin(phi);
+            cosLatitude[r] = Math.cos(phi);
+            cosU[r] = Math.cos(u);
+            sinU[r] = Math.sin(u);
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getPixels() {
+        return rows * columns;
+    }
+
+    public double getLatitude(int row) {
+        return firstLatitude + row * latitudeStep;
+    }
+
+    public double getLongitude(int column) {
+        return firstLongitude + column * longitudeStep;
+    }
+
+    /**
+     * Atmosphere of the clear sky fields (simplified solis).
+     * @param aod700 aerosol optical depth at 700 nm, default 0.1
+     * @param precipitableWater precipitable water in cm, default 1.0
+     */
+    public void setAtmosphere(double aod700, double precipitableWater) {
+        this.aod700 = aod700;
+        this.precipitableWater = precipitableWater;
+    }
+
+    /**
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree, default 0.5667
+     */
+    public void setAtmosRefract(double atmosRefract) {
+        this.atmosRefract = atmosRefract;
+    }
+
+    /**
+     * Extraterrestrial irradiance, the same over the grid.
+     * @param epochSecond target time in unix epoch seconds
+     * @return extraterrestrial irradiance of the UTC date
+     */
+    public double extraRadiation(long epochSecond) {
+        int doy = DayContext.ofEpochSecond(epochSecond).getDayOfYear();
+        return factory.irradiance().extraRadiation(doy);
+    }
+
+    /**
+     * Computes the fields of a time range. Buffers may be null when not needed, the others
+     * need {@code steps * getPixels()} elements.
+     * @param startEpochSecond first timestamp in unix epoch seconds
+     * @param stepSeconds seconds between timestamps
+     * @param steps number of timestamps
+     * @param tempAir air-temperature on degC, or null for the default
+     * @param apparentZenith output of apparent zenith in degree
+     * @param azimuth output of azimuth in degree
+     * @param ghi output of clear sky global horizontal irradiance
+     * @param dni output of clear sky direct normal irradiance
+     * @param dhi output of clear sky diffuse horizontal irradiance
+     */
+    public void compute(long startEpochSecond, long stepSeconds, int steps, Double tempAir,
+                        double[] apparentZenith, double[] azimuth,
+                        double[] ghi, double[] dni, double[] dhi) {
+        int pixels = getPixels();
+        long length = (long)steps * pixels;
+        checkBuffer(apparentZenith, length, "apparentZenith");
+        checkBuffer(azimuth, length, "azimuth");
+        checkBuffer(ghi, length, "ghi");
+        checkBuffer(dni, length, "dni");
+        checkBuffer(dhi, length, "dhi");
+
+        Scratch scratch = new Scratch(pixels, columns);
+        for (int k = 0; k < steps; k++) {
+            compute(startEpochSecond + k * stepSeconds, tempAir, k * pixels, scratch,
+                    apparentZenith, azimuth, ghi, dni, dhi);
+        }
+    }
+
+    /**
+     * Computes the fields of one timestamp from an offset of the buffers. Buffers may be null
+     * when not needed, the others need {@code offset + getPixels()} elements.
+     * @param epochSecond target time in unix epoch seconds
+     * @param tempAir air-temperature on degC, or null for the default
+     * @param offset first element of the field in the buffers
+     * @param apparentZenith output of apparent zenith in degree
+     * @param azimuth output of azimuth in degree
+     * @param ghi output of clear sky global horizontal irradiance
+     * @param dni output of clear sky direct normal irradiance
+     * @param dhi output of clear sky diffuse horizontal irradiance
+     */
+    public void compute(long epochSecond, Double tempAir, int offset,
+                        double[] apparentZenith, double[] azimuth,
+                        double[] ghi, double[] dni, double[] dhi) {
+        long length = (long)offset + getPixels();
+        checkBuffer(apparentZenith, length, "apparentZenith");
+        checkBuffer(azimuth, length, "azimuth");
+        checkBuffer(ghi, length, "ghi");
+        checkBuffer(dni, length, "dni");
+        checkBuffer(dhi, length, "dhi");
+        compute(epochSecond, tempAir, offset, new Scratch(getPixels(), columns),
+                apparentZenith, azimuth, ghi, dni, dhi);
+    }
+
+    /* per call buffers, so that one raster can be shared by threads */
+    private static class Scratch {
+        final SpaTimeTerms terms = new SpaTimeTerms();
+        final double[] sinH;
+        final double[] cosH;
+        final double[] elevation;
+
+        final double[][] fields = new double[3][];
+
+        Scratch(int pixels, int columns) {
+            this.sinH = new double[columns];
+            this.cosH = new double[columns];
+            this.elevation = new double[pixels];
+        }
+
+        double[] field(int index) {
+            if (fields[index] == null)
+                fields[index] = new double[elevation.length];
+            return fields[index];
+        }
+    }
+
+    private void compute(long epochSecond, Double tempAir, int offset, Scratch scratch,
+                         double[] apparentZenith, double[] azimuth,
+                         double[] ghi, double[] dni, double[] dhi) {
+        double temperature = (tempAir == null) ? Consts.DEFAULT_TEMPERATURE : tempAir;
+        boolean clearSky = ghi != null || dni != null || dhi != null;
+
+        // once per timestamp
+        SpaTimeTerms terms = spa.timeTerms(epochSecond, spa.deltaT(epochSecond), scratch.terms);
+        double sinXi = Math.sin(Math.toRadians(terms.getEquatorialHorizontalParallax()));
+        double sinDelta = Math.sin(Math.toRadians(terms.getDeclination()));
+        double cosDelta = Math.cos(Math.toRadians(terms.getDeclination()));
+        double horizon = -1.0 * (0.26667 + atmosRefract);
+        double seaLevelScale = Atmosphere.refractionScale(Consts.DEFAULT_PRESSURE, temperature);
+
+        // once per column
+        for (int c = 0; c < columns; c++) {
+            double h = Math.toRadians(terms.getApparentSiderealTime() + getLongitude(c)
+                                      - terms.getRightAscension());
+            scratch.sinH[c] = Math.sin(h);
+            scratch.cosH[c] = Math.cos(h);
+        }
+
+        for (int r = 0; r < rows; r++) {
+            double sinPhi = sinLatitude[r];
+            double cosPhi = cosLatitude[r];
+            for (int c = 0; c < columns; c++) {
+                int pixel = r * columns + c;
+                double height = (altitude == null) ? 0.0 : altitude[pixel] / EARTH_RADIUS;
+                double x = cosU[r] + height * cosPhi;
+                double y = 0.99664719 * sinU[r] + height * sinPhi;
+                double sinH = scratch.sinH[c];
+                double cosH = scratch.cosH[c];
+
+                // parallax in right ascension, delta_alpha = atan2(n, d)
+                double n = -x * sinXi * sinH;
+                double d = cosDelta - x * sinXi * cosH;
+                double norm = Math.sqrt(n * n + d * d);
+                double sinAlpha = n / norm;
+                double cosAlpha = d / norm;
+                // topocentric declination, delta' = atan2(nd, d)
+                double nd = (sinDelta - y * sinXi) * cosAlpha;
+                double normd = Math.sqrt(nd * nd + d * d);
+                double sinDeltaPrime = nd / normd;
+                double cosDeltaPrime = d / normd;
+                // topocentric hour angle H' = H - delta_alpha
+                double sinHPrime = sinH * cosAlpha - cosH * sinAlpha;
+                double cosHPrime = cosH * cosAlpha + sinH * sinAlpha;
+
+                double e0 = Math.toDegrees(Math.asin(sinPhi * sinDeltaPrime
+                                                     + cosPhi * cosDeltaPrime * cosHPrime));
+                double scale = (altitude == null) ? seaLevelScale
+                        : Atmosphere.refractionScale(Atmosphere.alt2pres(altitude[pixel]),
+                                                     temperature);
+                double e = (e0 >= horizon)
+                        ? e0 + scale / Math.tan(Math.toRadians(e0 + 10.3 / (e0 + 5.11))) : e0;
+
+                if (apparentZenith != null)
+                    apparentZenith[offset + pixel] = 90 - e;
+                if (azimuth != null) {
+                    double gamma = Math.toDegrees(Math.atan2(sinHPrime,
+                            cosHPrime * sinPhi - sinDeltaPrime / cosDeltaPrime * cosPhi));
+                    azimuth[offset + pixel] = (gamma + 180) % 360;
+                }
+                scratch.elevation[pixel] = e;
+            }
+        }
+
+        if (!clearSky)
+            return;
+        // the clear sky columns are aligned with the elevation ones
+        double[] ghiField = (ghi == null || offset == 0) ? ghi : scratch.field(0);
+        double[] dniField = (dni == null || offset == 0) ? dni : scratch.field(1);
+        double[] dhiField = (dhi == null || offset == 0) ? dhi : scratch.field(2);
+        double dniExtra = extraRadiation(epochSecond);
+        if (altitude == null) {
+            ClearSky.simplified_solis(scratch.elevation, aod700, precipitableWater,
+                                      Consts.DEFAULT_PRESSURE, dniExtra, 0, getPixels(),
+                                      ghiField, dniField, dhiField);
+        } else {
+            for (int pixel = 0; pixel < getPixels(); pixel++) {
+                ClearSky.simplified_solis(scratch.elevation, aod700, precipitableWater,
+                                          Atmosphere.alt2pres(altitude[pixel]), dniExtra,
+                                          pixel, pixel + 1, ghiField, dniField, dhiField);
+            }
+        }
+        if (offset != 0) {
+            if (ghi != null)
+                System.arraycopy(ghiField, 0, ghi, offset, getPixels());
+            if (dni != null)
+                System.arraycopy(dniField, 0, dni, offset, getPixels());
+            if (dhi != null)
+                System.arraycopy(dhiField, 0, dhi, offset, getPixels());
+        }
+    }
+
+    private static void checkBuffer(double[] buffer, long length, String name) {
+        if (buffer != null && buffer.length < length)
+            throw new IllegalArgumentException("\"" + name + "\" must have at least "
+                                               + length + " elements");
+    }
+}
@@ -1,6 +1,7 @@
 /* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
 package jp.oist.unit.ios.solarsystemlib.atomsphere;
 
+import jp.oist.unit.ios.solarsystemlib.PreparedLocation;
 import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
 import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.RelativeAirmassModel;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
@@ -16,6 +17,16 @@ public class Atmosphere {
 		return 100 *  Math.pow( ((44331.514 - altitude) / 11880.516) , (1 / 0.1902632));
 	}
 
+	/**
+	 * scaling factor of the atmospheric refraction correction used by SPA
+	 * @param pressure air-pressure in pascal
+	 * @param tempAir air-temperature in degC
+	 * @return refraction correction at 1 / tan(elevation) = 1, in degree
+	 */
+	public static double refractionScale(double pressure, double tempAir) {
+		return (pressure * 0.01 / 1010.0) * (283.0 / (273 + tempAir)) * 1.02 / 60;
+	}
+
 	private ModelCollection models;
 
 	public Atmosphere(ModelCollection models) {
@@ -31,6 +42,14 @@ public class Atmosphere {
 		return new Airmass(relAm, absAm);
 	}
 
+	public Airmass getAirmass(SolarPosition.Variable sp, PreparedLocation site) {
+		Double relAm = getRelativeAirmass(sp);
+		if (relAm == null)
+			return null;
+		Double absAm = getAbsoluteAirmass(relAm, site.pressure);
+		return new Airmass(relAm, absAm);
+	}
+
 	public Double getRelativeAirmass(SolarPosition.Variable sp) {
 	    RelativeAirmassModel model = models.getRelativeAirmassModel();
 	    return model.estimate(sp);
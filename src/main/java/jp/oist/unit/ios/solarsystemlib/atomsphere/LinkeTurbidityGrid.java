@@ -0,0 +1,320 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.atomsphere;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import jp.oist.unit.ios.solarsystemlib.ClearSky;
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.common.TimeUtils;
+
+/**
+ * Monthly Linke turbidity climatology of a regular latitude/longitude grid, read from a
+ * memory-mapped file.
+ *
+ * <p>Only the pixels around a site are read, so looking up many sites does not load the grid
+ * onto the heap. The twelve months of a pixel are contiguous. Values are interpolated
+ * bilinearly between the centers of the four nearest pixels, the longitude wrapping around
+ * when the grid covers 360 degree, and linearly in time between the middles of the months as
+ * pvlib.clearsky.lookup_linke_turbidity. The file layout (big endian) is:</p>
+ * <pre>
+ * int    magic          'LINK'
+ * int    version        1
+ * int    rows
+ * int    columns
+ * double firstLatitude  latitude of the centers of the first row
+ * double latitudeStep   negative for north up
+ * double firstLongitude longitude of the centers of the first column
+ * double longitudeStep
+ * double scale          turbidity of one unit of a value
+ * int    reserved
+ * rows * columns * 12 unsigned bytes, [row][column][month]
+ * </pre>
+ *
+ * <p>The pvlib climatology (LinkeTurbidities.h5, 2160 x 4320 pixels from 90N and 180W, 1/12
+ * degree, values of 20 per unit) converts to this layout by {@link #write}.</p>
+ */
+public class LinkeTurbidityGrid {
+
+    static final int MAGIC = 0x4c494e4b;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int MONTHS = 12;
+
+    /* middles of the months of a common and a leap year in days from the new year, with
+       December before and January after, compared with the day of year as pvlib does */
+    private static final double[] COMMON_MIDDLES = monthMiddles(false);
+    private static final double[] LEAP_MIDDLES = monthMiddles(true);
+
+    private final ByteBuffer grid;
+    private final int rows;
+    private final int columns;
+    private final double firstLatitude;
+    private final double latitudeStep;
+    private final double firstLongitude;
+    private final double longitudeStep;
+    private final double scale;
+    /* the grid covers all longitudes, the last column is next to the first one */
+    private final boolean wrap;
+
+    /**
+     * Maps a climatology file.
+     * @param file climatology file, see {@link #write}
+     * @throws IOException if the file can not be mapped
+     */
+    public LinkeTurbidityGrid(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("turbidity file is too large: " + file);
+            this.grid = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (grid.capacity() < HEADER_BYTES || grid.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("not a turbidity file: " + file);
+        if (grid.getInt(4) != VERSION)
+            throw new IllegalArgumentException("unsupported turbidity version: " + grid.getInt(4));
+
+        this.rows = grid.getInt(8);
+        this.columns = grid.getInt(12);
+        this.firstLatitude = grid.getDouble(16);
+        this.latitudeStep = grid.getDouble(24);
+        this.firstLongitude = grid.getDouble(32);
+        this.longitudeStep = grid.getDouble(40);
+        this.scale = grid.getDouble(48);
+        if (rows < 1 || columns < 1)
+            throw new IllegalArgumentException("empty turbidity grid: " + file);
+        if (grid.capacity() != HEADER_BYTES + (long)rows * columns * MONTHS)
+            throw new IllegalArgumentException("truncated turbidity file: " + file);
+        this.wrap = Math.abs(Math.abs(columns * longitudeStep) - 360) < 1e-9;
+    }
+
+    /**
+     * Writes a climatology file.
+     * @param file output file
+     * @param firstLatitude latitude of the centers of the first row
+     * @param latitudeStep latitude from a row to the next one, negative for north up
+     * @param rows number of rows
+     * @param firstLongitude longitude of the centers of the first column
+     * @param longitudeStep longitude from a column to the next one
+     * @param columns number of columns
+     * @param scale turbidity of one unit of a value
+     * @param values unsigned values, [row][column][month]
+     */
+    public static void write(Path file, double firstLatitude, double latitudeStep, int rows,
+                             double firstLongitude, double longitudeStep, int columns,
+                             double scale, byte[] values) throws IOException {
+        if ((long)rows * columns * MONTHS != values.length)
+            throw new IllegalArgumentException("\"values\" must have " + rows + " x " + columns
+                                               + " x " + MONTHS + " elements");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            out.writeDouble(firstLatitude);
+            out.writeDouble(latitudeStep);
+            out.writeDouble(firstLongitude);
+            out.writeDouble(longitudeStep);
+            out.writeDouble(scale);
+            out.writeInt(0);
+            for (int i = 60; i < HEADER_BYTES; i++)
+                out.writeByte(0);
+            out.write(values);
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Monthly turbidity at a place, bilinear between the four nearest pixels.
+     * @param latitude latitude in degree
+     * @param longitude longitude in degree
+     * @return turbidity of January to December
+     */
+    public double[] monthly(double latitude, double longitude) {
+        // fractional row and column, clamped to the centers of the edge pixels
+        double y = Math.min(Math.max((latitude - firstLatitude) / latitudeStep, 0), rows - 1);
+        double x = (longitude - firstLongitude) / longitudeStep;
+        int r0 = (int)Math.floor(y);
+        int r1 = Math.min(r0 + 1, rows - 1);
+        double fy = y - r0;
+        int c0;
+        int c1;
+        double fx;
+        if (wrap) {
+            double floor = Math.floor(x);
+            fx = x - floor;
+            c0 = (int)Math.floorMod((long)floor, (long)columns);
+            c1 = (c0 + 1) % columns;
+        } else {
+            x = Math.min(Math.max(x, 0), columns - 1);
+            c0 = (int)Math.floor(x);
+            c1 = Math.min(c0 + 1, columns - 1);
+            fx = x - c0;
+        }
+
+        double w00 = (1 - fy) * (1 - fx);
+        double w01 = (1 - fy) * fx;
+        double w10 = fy * (1 - fx);
+        double w11 = fy * fx;
+        int p00 = offset(r0, c0);
+        int p01 = offset(r0, c1);
+        int p10 = offset(r1, c0);
+        int p11 = offset(r1, c1);
+        double[] ret = new double[MONTHS];
+        for (int m = 0; m < MONTHS; m++) {
+            ret[m] = scale * (w00 * value(p00 + m) + w01 * value(p01 + m)
+                              + w10 * value(p10 + m) + w11 * value(p11 + m));
+        }
+        return ret;
+    }
+
+    private int offset(int row, int column) {
+        return HEADER_BYTES + (row * columns + column) * MONTHS;
+    }
+
+    private int value(int index) {
+        return grid.get(index) & 0xff;
+    }
+
+    /**
+     * Turbidity at a place on a date.
+     * @param latitude latitude in degree
+     * @param longitude longitude in degree
+     * @param epochDay days from 1970-01-01
+     * @return Linke turbidity
+     */
+    public double turbidity(double latitude, double longitude, long epochDay) {
+        return interpolate(monthly(latitude, longitude), epochDay);
+    }
+
+    /**
+     * Turbidity of a date from monthly values, linear between the middles of the months and
+     * continuous over the new year.
+     * @param monthly turbidity of January to December
+     * @param epochDay days from 1970-01-01
+     * @return Linke turbidity
+     */
+    public static double interpolate(double[] monthly, long epochDay) {
+        int year = TimeUtils.year(epochDay);
+        int doy = (int)(epochDay - TimeUtils.daysFromCivil(year, 1, 1)) + 1;
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        double[] middles = leap ? LEAP_MIDDLES : COMMON_MIDDLES;
+
+        // middles[0] and middles[13] are December and January of the next years
+        int m = 1;
+        while (m < MONTHS + 1 && middles[m] <= doy)
+            m++;
+        double before = monthly[(m + MONTHS - 2) % MONTHS];
+        double after = monthly[(m - 1) % MONTHS];
+        double f = (doy - middles[m - 1]) / (middles[m] - middles[m - 1]);
+        return before + f * (after - before);
+    }
+
+    private static double[] monthMiddles(boolean leap) {
+        int[] days = {31, leap ? 29 : 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+        double[] ret = new double[MONTHS + 2];
+        ret[0] = -31 / 2.0;
+        double start = 0;
+        for (int m = 0; m < MONTHS; m++) {
+            ret[m + 1] = start + days[m] / 2.0;
+            start += days[m];
+        }
+        ret[MONTHS + 1] = start + 31 / 2.0;
+        return ret;
+    }
+
+    /**
+     * Prepares a site, whose turbidity and Ineichen coefficients are resolved once per day.
+     * @param location location of the site, sea level without altitude
+     * @return site
+     */
+    public Site site(Location location) {
+        double altitude = (location.altitude == null) ? 0.0 : location.altitude;
+        return new Site(monthly(location.latitude, location.longitude), altitude);
+    }
+
+    /**
+     * Monthly turbidity of a site, with the turbidity and the Ineichen coefficients of the
+     * last date asked for. A site can be shared by threads.
+     */
+    public static final class Site {
+        private final double[] monthly;
+        private final double altitude;
+        private volatile Day day;
+
+        /**
+         * @param monthly turbidity of January to December
+         * @param altitude altitude in meter
+         */
+        public Site(double[] monthly, double altitude) {
+            if (monthly.length != MONTHS)
+                throw new IllegalArgumentException("\"monthly\" must have " + MONTHS
+                                                   + " elements");
+            this.monthly = monthly.clone();
+            this.altitude = altitude;
+        }
+
+        public double getAltitude() {
+            return altitude;
+        }
+
+        /**
+         * @param month 1-12
+         * @return turbidity of the month
+         */
+        public double getMonthly(int month) {
+            return monthly[month - 1];
+        }
+
+        /**
+         * @param epochDay days from 1970-01-01
+         * @return Linke turbidity of the date
+         */
+        public double turbidity(long epochDay) {
+            return day(epochDay).turbidity;
+        }
+
+        /**
+         * @param epochDay days from 1970-01-01
+         * @return Ineichen coefficients of the date, without the perez enhancement
+         */
+        public ClearSky.IneichenCoefficients ineichen(long epochDay) {
+            return day(epochDay).coefficients;
+        }
+
+        private Day day(long epochDay) {
+            Day current = day;
+            if (current == null || current.epochDay != epochDay) {
+                current = new Day(epochDay, interpolate(monthly, epochDay), altitude);
+                day = current;
+            }
+            return current;
+        }
+    }
+
+    private static final class Day {
+        final long epochDay;
+        final double turbidity;
+        final ClearSky.IneichenCoefficients coefficients;
+
+        Day(long epochDay, double turbidity, double altitude) {
+            this.epochDay = epochDay;
+            this.turbidity = turbidity;
+            this.coefficients = new ClearSky.IneichenCoefficients(turbidity, altitude, false);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.common;
+
+/**
+ * Inner loops of SPA and of the transposition to the plane of array.
+ *
+ * <p>The library targets Java 8, where the loops are plain scalar code. The jar is a
+ * multi-release jar: on Java 17 or later, with the {@code jdk.incubator.vector} module added
+ * ({@code --add-modules jdk.incubator.vector}), the loops run on the Vector API at the SIMD
+ * width of the machine. Otherwise, or with the system property
+ * {@code solarsystemlib.kernels=scalar}, the scalar loops are used.</p>
+ *
+ * <p>The series sums of SPA ({@link #cosineSum}, {@link #nutationSum}) add their terms in the
+ * same order on every implementation; the terms, like the loops over places and samples, agree
+ * with the scalar ones to rounding.</p>
+ */
+public abstract class Kernels {
+
+    /* system property selecting the kernels, "scalar" disables the Vector API */
+    public static final String PROPERTY = "solarsystemlib.kernels";
+
+    private static final String VECTOR_KERNELS = Kernels.class.getPackage().getName()
+                                                 + ".VectorKernels";
+
+    private static final Kernels INSTANCE = load();
+
+    /**
+     * @return kernels for this runtime
+     */
+    public static Kernels get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return scalar kernels, available on every runtime
+     */
+    public static Kernels scalar() {
+        return ScalarKernels.INSTANCE;
+    }
+
+    private static Kernels load() {
+        if ("scalar".equals(System.getProperty(PROPERTY)))
+            return ScalarKernels.INSTANCE;
+        try {
+            // only in META-INF/versions/17 of the jar, and needs jdk.incubator.vector
+            return (Kernels)Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return ScalarKernels.INSTANCE;
+        }
+    }
+
+    /**
+     * @return name of the implementation
+     */
+    public abstract String getName();
+
+    /**
+     * Sum of the periodic terms of the VSOP87 series used by SPA.
+     * @param amplitude A of the terms
+     * @param phase B of the terms
+     * @param frequency C of the terms
+     * @param from first term
+     * @param to end of the terms, exclusive
+     * @param x julian ephemeris millennium
+     * @return sum of A cos(B + C x)
+     */
+    public abstract double cosineSum(double[] amplitude, double[] phase, double[] frequency,
+                                     int from, int to, double x);
+
+    /**
+     * Sum of the nutation terms of SPA.
+     * @param y y0 to y4 of the terms
+     * @param a constant coefficient of the terms
+     * @param b coefficient per julian ephemeris century of the terms
+     * @param n number of terms
+     * @param sine true for the longitude (sine) series, false for the obliquity (cosine) one
+     * @param jce julian ephemeris century
+     * @param x0 mean elongation of the moon in degree
+     * @param x1 mean anomaly of the sun in degree
+     * @param x2 mean anomaly of the moon in degree
+     * @param x3 argument of latitude of the moon in degree
+     * @param x4 longitude of the ascending node of the moon in degree
+     * @return sum of (a + b jce) sin(sum y_i x_i), or cos
+     */
+    public abstract double nutationSum(double[][] y, double[] a, double[] b, int n, boolean sine,
+                                       double jce, double x0, double x1, double x2, double x3,
+                                       double x4);
+
+    /**
+     * Location dependent steps of SPA for many places at one timestamp.
+     * @param siderealTime apparent sidereal time in degree
+     * @param rightAscension geocentric sun right ascension in degree
+     * @param declination geocentric sun declination in degree
+     * @param parallax equatorial horizontal parallax of the sun in degree
+     * @param lat latitudes of places
+     * @param lng longitudes of places
+     * @param elev altitudes of places in meter
+     * @param refractionScale refraction scale of the air, see Atmosphere.refractionScale
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @param n number of places
+     * @param apparentZenith output column for apparent zenith
+     * @param azimuth output column for azimuth
+     * @param apparentElevation output column for apparent elevation
+     */
+    public abstract void topocentric(double siderealTime, double rightAscension,
+                                     double declination, double parallax,
+                                     double[] lat, double[] lng, double[] elev,
+                                     double refractionScale, double atmosRefract, int n,
+                                     double[] apparentZenith, double[] azimuth,
+                                     double[] apparentElevation);
+
+    /**
+     * Cosine of the angle of incidence on a surface for many sun positions.
+     * @param surfaceTilt surface tilt in degree
+     * @param surfaceAzimuth surface azimuth in degree
+     * @param zenith solar zenith in degree
+     * @param azimuth solar azimuth in degree
+     * @param n number of sun positions
+     * @param projection output column
+     */
+    public abstract void projection(double surfaceTilt, double surfaceAzimuth,
+                                    double[] zenith, double[] azimuth, int n,
+                                    double[] projection);
+
+    /**
+     * Sky diffuse irradiance of the Hay-Davies model for many samples.
+     * @param surfaceTilt surface tilt in degree
+     * @param surfaceAzimuth surface azimuth in degree
+     * @param zenith apparent solar zenith in degree
+     * @param azimuth solar azimuth in degree
+     * @param dni direct normal irradiance
+     * @param dniExtra extraterrestrial irradiance
+     * @param dhi diffuse horizontal irradiance
+     * @param n number of samples
+     * @param skyDiffuse output column
+     */
+    public abstract void haydavies(double surfaceTilt, double surfaceAzimuth,
+                                   double[] zenith, double[] azimuth,
+                                   double[] dni, double[] dniExtra, double[] dhi, int n,
+                                   double[] skyDiffuse);
+}
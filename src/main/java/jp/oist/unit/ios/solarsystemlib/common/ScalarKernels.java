@@ -0,0 +1,138 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.common;
+
+/**
+ * Scalar kernels, the formulas are the ones of SPA and of the Hay-Davies model. The range
+ * variants also run the remainder of the loops of {@code VectorKernels}.
+ */
+final class ScalarKernels extends Kernels {
+
+    static final ScalarKernels INSTANCE = new ScalarKernels();
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public double cosineSum(double[] amplitude, double[] phase, double[] frequency,
+                            int from, int to, double x) {
+        double sum = 0;
+        for (int i = from; i < to; i++)
+            sum += amplitude[i] * Math.cos(phase[i] + frequency[i] * x);
+        return sum;
+    }
+
+    @Override
+    public double nutationSum(double[][] y, double[] a, double[] b, int n, boolean sine,
+                              double jce, double x0, double x1, double x2, double x3,
+                              double x4) {
+        return nutationSum(y, a, b, 0, n, sine, jce, x0, x1, x2, x3, x4);
+    }
+
+    double nutationSum(double[][] y, double[] a, double[] b, int from, int to, boolean sine,
+                       double jce, double x0, double x1, double x2, double x3, double x4) {
+        double[] y0 = y[0], y1 = y[1], y2 = y[2], y3 = y[3], y4 = y[4];
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            double arg = Math.toRadians(y0[i] * x0 + y1[i] * x1 + y2[i] * x2
+                                        + y3[i] * x3 + y4[i] * x4);
+            sum += (a[i] + b[i] * jce) * (sine ? Math.sin(arg) : Math.cos(arg));
+        }
+        return sum;
+    }
+
+    @Override
+    public void topocentric(double siderealTime, double rightAscension,
+                            double declination, double parallax,
+                            double[] lat, double[] lng, double[] elev,
+                            double refractionScale, double atmosRefract, int n,
+                            double[] apparentZenith, double[] azimuth,
+                            double[] apparentElevation) {
+        topocentric(siderealTime, rightAscension, declination, parallax, lat, lng, elev,
+                    refractionScale, atmosRefract, 0, n,
+                    apparentZenith, azimuth, apparentElevation);
+    }
+
+    void topocentric(double siderealTime, double rightAscension,
+                     double declination, double parallax,
+                     double[] lat, double[] lng, double[] elev,
+                     double refractionScale, double atmosRefract, int from, int to,
+                     double[] apparentZenith, double[] azimuth, double[] apparentElevation) {
+        double sinXi = Math.sin(Math.toRadians(parallax));
+        double sinDelta = Math.sin(Math.toRadians(declination));
+        double cosDelta = Math.cos(Math.toRadians(declination));
+        double horizon = -1.0 * (0.26667 + atmosRefract);
+
+        for (int i = from; i < to; i++) {
+            double phi = Math.toRadians(lat[i]);
+            double u = Math.atan(0.99664719 * Math.tan(phi));
+            double x = Math.cos(u) + elev[i] / 6378140 * Math.cos(phi);
+            double y = 0.99664719 * Math.sin(u) + elev[i] / 6378140 * Math.sin(phi);
+
+            double h = Math.toRadians((siderealTime + lng[i] - rightAscension) % 360.0);
+            double denom = cosDelta - x * sinXi * Math.cos(h);
+            double deltaAlpha = Math.atan2(-x * sinXi * Math.sin(h), denom);
+            double deltaPrime = Math.atan2((sinDelta - y * sinXi) * Math.cos(deltaAlpha), denom);
+            double hPrime = h - deltaAlpha;
+
+            double e0 = Math.toDegrees(Math.asin(Math.sin(phi) * Math.sin(deltaPrime)
+                                                 + Math.cos(phi) * Math.cos(deltaPrime)
+                                                 * Math.cos(hPrime)));
+            double deltaE = (e0 >= horizon)
+                    ? refractionScale / Math.tan(Math.toRadians(e0 + 10.3 / (e0 + 5.11))) : 0;
+            double e = e0 + deltaE;
+            double gamma = Math.toDegrees(Math.atan2(Math.sin(hPrime),
+                                                     Math.cos(hPrime) * Math.sin(phi)
+                                                     - Math.tan(deltaPrime) * Math.cos(phi)));
+
+            apparentElevation[i] = e;
+            apparentZenith[i] = 90 - e;
+            azimuth[i] = (gamma + 180) % 360;
+        }
+    }
+
+    @Override
+    public void projection(double surfaceTilt, double surfaceAzimuth,
+                           double[] zenith, double[] azimuth, int n, double[] projection) {
+        projection(surfaceTilt, surfaceAzimuth, zenith, azimuth, 0, n, projection);
+    }
+
+    void projection(double surfaceTilt, double surfaceAzimuth,
+                    double[] zenith, double[] azimuth, int from, int to, double[] projection) {
+        double cosTilt = Math.cos(Math.toRadians(surfaceTilt));
+        double sinTilt = Math.sin(Math.toRadians(surfaceTilt));
+        for (int i = from; i < to; i++) {
+            projection[i] = cosTilt * Math.cos(Math.toRadians(zenith[i]))
+                    + sinTilt * Math.sin(Math.toRadians(zenith[i]))
+                    * Math.cos(Math.toRadians(azimuth[i] - surfaceAzimuth));
+        }
+    }
+
+    @Override
+    public void haydavies(double surfaceTilt, double surfaceAzimuth,
+                          double[] zenith, double[] azimuth,
+                          double[] dni, double[] dniExtra, double[] dhi, int n,
+                          double[] skyDiffuse) {
+        haydavies(surfaceTilt, surfaceAzimuth, zenith, azimuth, dni, dniExtra, dhi, 0, n,
+                  skyDiffuse);
+    }
+
+    void haydavies(double surfaceTilt, double surfaceAzimuth,
+                   double[] zenith, double[] azimuth,
+                   double[] dni, double[] dniExtra, double[] dhi, int from, int to,
+                   double[] skyDiffuse) {
+        double cosTilt = Math.cos(Math.toRadians(surfaceTilt));
+        double sinTilt = Math.sin(Math.toRadians(surfaceTilt));
+        double term2 = 0.5 * (1 + cosTilt);
+        for (int i = from; i < to; i++) {
+            double cosZenith = Math.cos(Math.toRadians(zenith[i]));
+            double cosTt = cosTilt * cosZenith
+                    + sinTilt * Math.sin(Math.toRadians(zenith[i]))
+                    * Math.cos(Math.toRadians(azimuth[i] - surfaceAzimuth));
+            double rb = cosTt / cosZenith;
+            double ai = dni[i] / dniExtra[i];
+            skyDiffuse[i] = Math.max(dhi[i] * (ai * rb + (1 - ai) * term2), 0.0);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.common;
+
+/**
+ * Calendar fields of unix epoch seconds without creating java.time objects.
+ * Days are counted in the proleptic Gregorian calendar, as java.time does.
+ */
+public final class TimeUtils {
+
+    public static final int SECONDS_PER_DAY = 86400;
+
+    private TimeUtils() {
+    }
+
+    /**
+     * @param epochSecond unix epoch seconds
+     * @param offsetSeconds offset of the local time from UTC in seconds
+     * @return days from 1970-01-01 of the local date
+     */
+    public static long epochDay(long epochSecond, int offsetSeconds) {
+        return Math.floorDiv(epochSecond + offsetSeconds, (long)SECONDS_PER_DAY);
+    }
+
+    /**
+     * @param epochDay days from 1970-01-01
+     * @return year
+     */
+    public static int year(long epochDay) {
+        long yoe = yearOfEra(epochDay);
+        long year = yoe + era(epochDay) * 400;
+        return (int)((monthOfEra(epochDay, yoe) < 10) ? year : year + 1);
+    }
+
+    /**
+     * @param epochDay days from 1970-01-01
+     * @return month 1-12
+     */
+    public static int month(long epochDay) {
+        long mp = monthOfEra(epochDay, yearOfEra(epochDay));
+        return (int)((mp < 10) ? mp + 3 : mp - 9);
+    }
+
+    /**
+     * @param epochDay days from 1970-01-01
+     * @return day of year 1-366
+     */
+    public static int dayOfYear(long epochDay) {
+        int year = year(epochDay);
+        return (int)(epochDay - daysFromCivil(year, 1, 1)) + 1;
+    }
+
+    /**
+     * @param year year
+     * @param month month 1-12
+     * @param day day of month 1-31
+     * @return days from 1970-01-01
+     */
+    public static long daysFromCivil(int year, int month, int day) {
+        long y = (month <= 2) ? year - 1 : year;
+        long era = Math.floorDiv(y, 400L);
+        long yoe = y - era * 400;
+        long doy = (153 * ((month > 2) ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /* civil from days by H. Hinnant, with the year starting on March 1 */
+    private static long era(long epochDay) {
+        return Math.floorDiv(epochDay + 719468, 146097L);
+    }
+
+    private static long yearOfEra(long epochDay) {
+        long doe = epochDay + 719468 - era(epochDay) * 146097;
+        return (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+    }
+
+    private static long monthOfEra(long epochDay, long yoe) {
+        long doe = epochDay + 719468 - era(epochDay) * 146097;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        return (5 * doy + 2) / 153;
+    }
+}
@@ -0,0 +1,276 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.common;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent size-bounded cache with a W-TinyLFU like eviction policy.
+ *
+ * <p>The cache is split into segments by the hash of the key, each guarded by its own lock.
+ * A segment keeps a small LRU window of new entries and a main space of probation and
+ * protected LRU lists. An entry leaving the window is admitted into the main space only when
+ * it is used more often than the LRU entry of probation, as estimated by a count-min sketch
+ * of 4 bit counters which are halved periodically, so a burst of one-time keys does not flush
+ * the entries used again and again.</p>
+ *
+ * @param <K> key, with equals and hashCode
+ * @param <V> value
+ */
+public final class TinyLfuCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 64;
+    /* entries per segment below which more segments are not worth it */
+    private static final int MIN_SEGMENT_SIZE = 32;
+
+    private final int maximumSize;
+    private final Segment<K, V>[] segments;
+    private final int segmentShift;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maximumSize maximum number of entries
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TinyLfuCache(int maximumSize) {
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("\"maximumSize\" must be 1 or more");
+        this.maximumSize = maximumSize;
+
+        int count = 1;
+        while (count < MAX_SEGMENTS && (long)maximumSize / (count * 2) >= MIN_SEGMENT_SIZE)
+            count *= 2;
+        this.segments = new Segment[count];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            // spread the remainder over the first segments
+            int size = maximumSize / count + ((i < maximumSize % count) ? 1 : 0);
+            segments[i] = new Segment<>(size, evictions);
+        }
+    }
+
+    /**
+     * @param key key
+     * @return cached value, or null
+     */
+    public V get(K key) {
+        int hash = spread(key.hashCode());
+        V value = segmentFor(hash).get(key, hash);
+        if (value == null)
+            misses.increment();
+        else
+            hits.increment();
+        return value;
+    }
+
+    /**
+     * Adds a value, which may be evicted right away if the key is used rarely.
+     * @param key key
+     * @param value value, not null
+     */
+    public void put(K key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("\"value\" must not be null");
+        int hash = spread(key.hashCode());
+        segmentFor(hash).put(key, value, hash);
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return number of entries, not a snapshot when other threads update the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    private Segment<K, V> segmentFor(int hash) {
+        return (segments.length == 1) ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    /* murmur3 finalizer, the low bits of hashCode are often poor */
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Segment<K, V> {
+        private final int windowSize;
+        private final int protectedSize;
+        private final int mainSize;
+        private final LongAdder evictions;
+        private final FrequencySketch sketch;
+
+        /* access ordered, the first entry is the least recently used */
+        private final LinkedHashMap<K, V> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, V> protect = new LinkedHashMap<>(16, 0.75f, true);
+
+        Segment(int size, LongAdder evictions) {
+            this.windowSize = Math.max(1, size / 100);
+            this.mainSize = Math.max(0, size - windowSize);
+            this.protectedSize = mainSize * 4 / 5;
+            this.evictions = evictions;
+            this.sketch = new FrequencySketch(Math.max(size, 1));
+        }
+
+        synchronized V get(K key, int hash) {
+            sketch.increment(hash);
+            V value = window.get(key);
+            if (value != null)
+                return value;
+            value = protect.get(key);
+            if (value != null)
+                return value;
+            value = probation.remove(key);
+            if (value != null) {
+                // second use in the main space
+                protect.put(key, value);
+                if (protect.size() > protectedSize) {
+                    Map.Entry<K, V> demoted = first(protect);
+                    protect.remove(demoted.getKey());
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+            }
+            return value;
+        }
+
+        synchronized void put(K key, V value, int hash) {
+            if (window.containsKey(key)) {
+                window.put(key, value);
+                return;
+            }
+            if (protect.containsKey(key)) {
+                protect.put(key, value);
+                return;
+            }
+            if (probation.containsKey(key)) {
+                probation.put(key, value);
+                return;
+            }
+
+            window.put(key, value);
+            if (window.size() <= windowSize)
+                return;
+
+            Map.Entry<K, V> candidate = first(window);
+            window.remove(candidate.getKey());
+            if (probation.size() + protect.size() < mainSize) {
+                probation.put(candidate.getKey(), candidate.getValue());
+                return;
+            }
+
+            LinkedHashMap<K, V> victims = probation.isEmpty() ? protect : probation;
+            Map.Entry<K, V> victim = first(victims);
+            if (victim != null && admit(candidate.getKey(), victim.getKey())) {
+                victims.remove(victim.getKey());
+                probation.put(candidate.getKey(), candidate.getValue());
+            }
+            evictions.increment();
+        }
+
+        private boolean admit(K candidate, K victim) {
+            int candidateFrequency = sketch.frequency(spread(candidate.hashCode()));
+            int victimFrequency = sketch.frequency(spread(victim.hashCode()));
+            return candidateFrequency > victimFrequency;
+        }
+
+        synchronized int size() {
+            return window.size() + probation.size() + protect.size();
+        }
+
+        private static <K, V> Map.Entry<K, V> first(LinkedHashMap<K, V> map) {
+            Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+            return it.hasNext() ? it.next() : null;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 bit counters, 16 counters in a long, with 4 rows. All counters are
+     * halved after 10 times the capacity of increments, so old popularity fades away.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int length = Integer.highestOneBit(Math.max(capacity, 4) - 1) << 1;
+            this.table = new long[length];
+            this.tableMask = length - 1;
+            this.sampleSize = 10 * capacity;
+        }
+
+        int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                long h = index(hash, i);
+                int shift = counterShift(h);
+                frequency = Math.min(frequency, (int)((table[(int)h & tableMask] >>> shift) & 0xf));
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                long h = index(hash, i);
+                int slot = (int)h & tableMask;
+                int shift = counterShift(h);
+                if (((table[slot] >>> shift) & 0xf) < 15) {
+                    table[slot] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize)
+                reset();
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++)
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            additions /= 2;
+        }
+
+        private static long index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return h ^ (h >>> 32);
+        }
+
+        /* which of the 16 counters of the long, from the high bits of the index */
+        private static int counterShift(long h) {
+            return (int)((h >>> 40) & 0xf) << 2;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.irradiance;
+
+import java.util.Arrays;
+
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+
+/**
+ * Far horizon of a site, the elevation of the obstruction by azimuth, for the shading of the
+ * beam and of the sky diffuse irradiance.
+ *
+ * <p>The given profile is resampled once into a table of bins of equal azimuth, so that a
+ * lookup is an array read and a linear interpolation between two bins. The beam is faded out
+ * while the sun disc sets behind the horizon, over {@link #SUN_DIAMETER}. The sky view factor
+ * is the fraction of the diffuse irradiance of an isotropic sky on a horizontal plane which the
+ * horizon leaves, {@code 1 - mean(sin^2(horizon))}; it scales the sky diffuse irradiance of any
+ * surface.</p>
+ */
+public final class HorizonProfile {
+
+    /* bins of the table when none is given, one per degree */
+    public static final int DEFAULT_BINS = 360;
+    /* apparent diameter of the sun in degree */
+    public static final double SUN_DIAMETER = 0.533;
+
+    private final int bins;
+    private final double binsPerDegree;
+    /* horizon elevation at the start of each bin, and the first one again at 360 degree */
+    private final double[] table;
+    private final double skyViewFactor;
+
+    /**
+     * @param azimuth azimuth of the points of the profile in degree, in any order
+     * @param elevation elevation of the horizon at the points in degree
+     */
+    public HorizonProfile(double[] azimuth, double[] elevation) {
+        this(azimuth, elevation, DEFAULT_BINS);
+    }
+
+    /**
+     * @param azimuth azimuth of the points of the profile in degree, in any order
+     * @param elevation elevation of the horizon at the points in degree
+     * @param bins bins of the table over 360 degree
+     */
+    public HorizonProfile(double[] azimuth, double[] elevation, int bins) {
+        int m = azimuth.length;
+        if (m == 0 || elevation.length != m)
+            throw new IllegalArgumentException("\"azimuth\" and \"elevation\" must have the same"
+                                               + " number of elements, at least one");
+        if (bins < 1)
+            throw new IllegalArgumentException("\"bins\" must be 1 or more");
+        for (int i = 0; i < m; i++) {
+            if (!Double.isFinite(azimuth[i]) || !(elevation[i] >= -90 && elevation[i] <= 90))
+                throw new IllegalArgumentException("invalid point of the profile: "
+                                                   + azimuth[i] + ", " + elevation[i]);
+        }
+
+        // points sorted by azimuth in [0, 360), then the last and the first one around them
+        double[] points = new double[m];
+        for (int i = 0; i < m; i++)
+            points[i] = normalize(azimuth[i]);
+        Integer[] index = new Integer[m];
+        for (int i = 0; i < m; i++)
+            index[i] = i;
+        Arrays.sort(index, (a, b) -> Double.compare(points[a], points[b]));
+        double[] az = new double[m + 2];
+        double[] el = new double[m + 2];
+        for (int i = 0; i < m; i++) {
+            az[i + 1] = points[index[i]];
+            el[i + 1] = elevation[index[i]];
+        }
+        az[0] = az[m] - 360;
+        el[0] = el[m];
+        az[m + 1] = az[1] + 360;
+        el[m + 1] = el[1];
+
+        this.bins = bins;
+        this.binsPerDegree = bins / 360.0;
+        this.table = new double[bins + 1];
+        double blocked = 0;
+        int j = 0;
+        for (int k = 0; k < bins; k++) {
+            double t = k / binsPerDegree;
+            while (az[j + 1] <= t)
+                j++;
+            double span = az[j + 1] - az[j];
+            double f = (span > 0) ? (t - az[j]) / span : 1.0;
+            table[k] = el[j] + f * (el[j + 1] - el[j]);
+            double sin = Math.sin(Math.toRadians(Math.max(table[k], 0.0)));
+            blocked += sin * sin;
+        }
+        table[bins] = table[0];
+        this.skyViewFactor = 1 - blocked / bins;
+    }
+
+    private static double normalize(double azimuth) {
+        double a = azimuth % 360.0;
+        return (a < 0) ? a + 360.0 : a;
+    }
+
+    public int getBins() {
+        return bins;
+    }
+
+    /**
+     * @return fraction of the isotropic sky diffuse irradiance left by the horizon, 0 to 1
+     */
+    public double getSkyViewFactor() {
+        return skyViewFactor;
+    }
+
+    /**
+     * @param azimuth azimuth in degree
+     * @return elevation of the horizon in degree
+     */
+    public double elevation(double azimuth) {
+        double x = normalize(azimuth) * binsPerDegree;
+        int k = Math.min((int)x, bins - 1);
+        return table[k] + (x - k) * (table[k + 1] - table[k]);
+    }
+
+    /**
+     * @param apparentZenith apparent solar zenith in degree
+     * @param azimuth solar azimuth in degree
+     * @return fraction of the beam left by the horizon, 0 behind it and 1 above it
+     */
+    public double beamFactor(double apparentZenith, double azimuth) {
+        double above = 90 - apparentZenith - elevation(azimuth);
+        return Math.min(Math.max(above / SUN_DIAMETER + 0.5, 0.0), 1.0);
+    }
+
+    /**
+     * @param sp solar position
+     * @return fraction of the beam left by the horizon, 0 behind it and 1 above it
+     */
+    public double beamFactor(SolarPosition.Variable sp) {
+        return beamFactor(sp.getApparentZenith(), sp.getAzimuth());
+    }
+
+    /**
+     * Fraction of the beam left by the horizon for many sun positions.
+     * @param apparentZenith apparent solar zenith in degree
+     * @param azimuth solar azimuth in degree
+     * @param n number of sun positions
+     * @param beamFactor output column
+     */
+    public void beamFactor(double[] apparentZenith, double[] azimuth, int n,
+                           double[] beamFactor) {
+        if (apparentZenith.length < n || azimuth.length < n || beamFactor.length < n)
+            throw new IllegalArgumentException("every column must have at least " + n
+                                               + " elements");
+        for (int t = 0; t < n; t++)
+            beamFactor[t] = beamFactor(apparentZenith[t], azimuth[t]);
+    }
+}
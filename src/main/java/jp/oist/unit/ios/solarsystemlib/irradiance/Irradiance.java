@@ -4,10 +4,12 @@ package jp.oist.unit.ios.solarsystemlib.irradiance;
 import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
 import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
 import jp.oist.unit.ios.solarsystemlib.common.Consts;
+import jp.oist.unit.ios.solarsystemlib.common.Kernels;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 import jp.oist.unit.ios.solarsystemlib.irradiance.dni.DniModel;
 import jp.oist.unit.ios.solarsystemlib.irradiance.extraradiation.ExtraRadiationModel;
 import jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse.SkyDiffuseModel;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
 
 import java.time.ZonedDateTime;
 
@@ -109,6 +111,25 @@ public class Irradiance {
                 * Math.cos(Math.toRadians(solarAzimuth-surfaceAzimuth));
     }
 
+    /**
+     * Projection of many sun positions on one surface.
+     * @param surfaceTilt surface tilt in degree
+     * @param surfaceAzimuth surface azimuth in degree
+     * @param solarZenith solar zenith in degree
+     * @param solarAzimuth solar azimuth in degree
+     * @param projection output column, cosine of the angle of incidence
+     */
+    public static void projection(double surfaceTilt, double surfaceAzimuth,
+                                  double[] solarZenith, double[] solarAzimuth,
+                                  double[] projection) {
+        int n = solarZenith.length;
+        if (solarAzimuth.length < n || projection.length < n)
+            throw new IllegalArgumentException("\"solarAzimuth\" and \"projection\" must have "
+                                               + "at least " + n + " elements");
+        Kernels.get().projection(surfaceTilt, surfaceAzimuth, solarZenith, solarAzimuth, n,
+                                 projection);
+    }
+
     public static double aoi(double surfaceTilt, double surfaceAzimuth,
                              double solarZenith, double solarAzimuth) {
         double projection = projection(surfaceTilt, surfaceAzimuth, solarZenith, solarAzimuth);
@@ -128,7 +149,7 @@ public class Irradiance {
 
     public Variable getIrradiance(SolarPosition.Variable sp, double ghi, Object... vars) {
         DniModel model = factory.getDniModel();
-        return model.estimate(sp.getDateTime(), ghi, sp.getApparentZenith(), vars);
+        return model.estimate(sp.getDayOfYear(), ghi, sp.getApparentZenith(), vars);
     }
 
     public PoaVariable getPoaIrradiance(double surfaceTilt, double surfaceAzimuth,
@@ -153,4 +174,186 @@ public class Irradiance {
 
         return new PoaVariable(total, beam, diffuse, skyDiffuse, groundDiffuse);
     }
+
+    public PoaVariable getPoaIrradiance(PreparedSurface surface, SolarPosition.Variable sp,
+                                        Irradiance.Variable irrad, Airmass airmass,
+                                        Object... vars) {
+        return getPoaIrradiance(surface, surface.projection(sp), sp, irrad, airmass, vars);
+    }
+
+    /**
+     * Irradiance on a prepared surface, the beam and the sky diffuse model share the
+     * projection of the sun.
+     * @param surface prepared surface, with the albedo of its system
+     * @param projection cosine of the angle of incidence, see {@link PreparedSurface#projection}
+     * @param sp solar position
+     * @param irrad irradiance
+     * @param airmass airmass
+     * @param vars extra variable for the sky diffuse model
+     * @return irradiance on the surface
+     */
+    public PoaVariable getPoaIrradiance(PreparedSurface surface, double projection,
+                                        SolarPosition.Variable sp, Irradiance.Variable irrad,
+                                        Airmass airmass, Object... vars) {
+        return getPoaIrradiance(surface, null, projection, sp, irrad, airmass, vars);
+    }
+
+    /**
+     * Irradiance on a prepared surface behind the far horizon of the site. The beam is
+     * attenuated by {@link HorizonProfile#beamFactor} and the sky diffuse irradiance is scaled
+     * by the sky view factor of the horizon.
+     * @param surface prepared surface, with the albedo of its system
+     * @param horizon horizon of the site, or null for an open horizon
+     * @param projection cosine of the angle of incidence, see {@link PreparedSurface#projection}
+     * @param sp solar position
+     * @param irrad irradiance
+     * @param airmass airmass
+     * @param vars extra variable for the sky diffuse model
+     * @return irradiance on the surface
+     */
+    public PoaVariable getPoaIrradiance(PreparedSurface surface, HorizonProfile horizon,
+                                        double projection, SolarPosition.Variable sp,
+                                        Irradiance.Variable irrad, Airmass airmass,
+                                        Object... vars) {
+        double beam = Math.max(irrad.dni * projection, 0.0);
+
+        SkyDiffuseModel skyDiffuseModel = factory.getSkyDiffuseModel();
+        double skyDiffuse = skyDiffuseModel.estimate(surface, projection, sp, irrad, airmass,
+                                                     vars);
+        if (horizon != null) {
+            beam *= horizon.beamFactor(sp);
+            skyDiffuse *= horizon.getSkyViewFactor();
+        }
+        double groundDiffuse = irrad.ghi * surface.albedo * surface.groundView;
+
+        double diffuse = skyDiffuse + groundDiffuse;
+        return new PoaVariable(beam + diffuse, beam, diffuse, skyDiffuse, groundDiffuse);
+    }
+
+    /**
+     * Transposes a sky series to many surfaces, with the sky diffuse model of the collection.
+     * A matrix may be null when the caller does not need it.
+     * @param surfaceTilt surface tilt of each orientation in degree
+     * @param surfaceAzimuth surface azimuth of each orientation in degree
+     * @param sky sun positions and irradiance
+     * @param albedo ground albedo
+     * @param global output matrix of the POA global irradiance, orientation by sample
+     * @param direct output matrix of the POA direct irradiance, orientation by sample
+     * @param diffuse output matrix of the POA diffuse irradiance, orientation by sample
+     */
+    public void getPoaIrradiance(double[] surfaceTilt, double[] surfaceAzimuth, SkySeries sky,
+                                 double albedo, double[][] global, double[][] direct,
+                                 double[][] diffuse) {
+        getPoaIrradiance(surfaceTilt, surfaceAzimuth, sky, albedo, null, global, direct,
+                         diffuse);
+    }
+
+    /**
+     * Transposes a sky series to many surfaces behind the far horizon of the site, with the
+     * sky diffuse model of the collection.
+     * A matrix may be null when the caller does not need it.
+     * @param surfaceTilt surface tilt of each orientation in degree
+     * @param surfaceAzimuth surface azimuth of each orientation in degree
+     * @param sky sun positions and irradiance
+     * @param albedo ground albedo
+     * @param horizon horizon of the site, or null for an open horizon
+     * @param global output matrix of the POA global irradiance, orientation by sample
+     * @param direct output matrix of the POA direct irradiance, orientation by sample
+     * @param diffuse output matrix of the POA diffuse irradiance, orientation by sample
+     */
+    public void getPoaIrradiance(double[] surfaceTilt, double[] surfaceAzimuth, SkySeries sky,
+                                 double albedo, HorizonProfile horizon, double[][] global,
+                                 double[][] direct, double[][] diffuse) {
+        SkyDiffuseModel.Prepared prepared = factory.getSkyDiffuseModel().prepare(sky);
+        getPoaIrradiance(surfaceTilt, surfaceAzimuth, prepared, albedo, horizon, global, direct,
+                         diffuse);
+    }
+
+    /**
+     * Transposes a prepared sky series to many surfaces. The terms of the samples are computed
+     * once by the sky diffuse model; per orientation only the projection, the beam and the
+     * sky and ground view factors are computed.
+     * @param surfaceTilt surface tilt of each orientation in degree
+     * @param surfaceAzimuth surface azimuth of each orientation in degree
+     * @param prepared terms of the sky series given by {@link SkyDiffuseModel#prepare}
+     * @param albedo ground albedo
+     * @param global output matrix of the POA global irradiance, orientation by sample
+     * @param direct output matrix of the POA direct irradiance, orientation by sample
+     * @param diffuse output matrix of the POA diffuse irradiance, orientation by sample
+     */
+    public void getPoaIrradiance(double[] surfaceTilt, double[] surfaceAzimuth,
+                                 SkyDiffuseModel.Prepared prepared, double albedo,
+                                 double[][] global, double[][] direct, double[][] diffuse) {
+        getPoaIrradiance(surfaceTilt, surfaceAzimuth, prepared, albedo, null, global, direct,
+                         diffuse);
+    }
+
+    /**
+     * Transposes a prepared sky series to many surfaces behind the far horizon of the site.
+     * The beam factor of the horizon is looked up once per sample, and the sky diffuse
+     * irradiance is scaled by the sky view factor of the horizon.
+     * @param surfaceTilt surface tilt of each orientation in degree
+     * @param surfaceAzimuth surface azimuth of each orientation in degree
+     * @param prepared terms of the sky series given by {@link SkyDiffuseModel#prepare}
+     * @param albedo ground albedo
+     * @param horizon horizon of the site, or null for an open horizon
+     * @param global output matrix of the POA global irradiance, orientation by sample
+     * @param direct output matrix of the POA direct irradiance, orientation by sample
+     * @param diffuse output matrix of the POA diffuse irradiance, orientation by sample
+     */
+    public void getPoaIrradiance(double[] surfaceTilt, double[] surfaceAzimuth,
+                                 SkyDiffuseModel.Prepared prepared, double albedo,
+                                 HorizonProfile horizon, double[][] global, double[][] direct,
+                                 double[][] diffuse) {
+        SkySeries sky = prepared.getSky();
+        int m = surfaceTilt.length;
+        int n = sky.getLength();
+        if (surfaceAzimuth.length != m)
+            throw new IllegalArgumentException("\"surfaceAzimuth\" must have " + m
+                                               + " elements");
+        checkMatrix(global, m, n, "global");
+        checkMatrix(direct, m, n, "direct");
+        checkMatrix(diffuse, m, n, "diffuse");
+
+        double[] dni = sky.getDni();
+        double skyView = 1.0;
+        if (horizon != null) {
+            // the beam left by the horizon, the same for every orientation
+            double[] factor = new double[n];
+            horizon.beamFactor(sky.getApparentZenith(), sky.getAzimuth(), n, factor);
+            for (int t = 0; t < n; t++)
+                factor[t] *= dni[t];
+            dni = factor;
+            skyView = horizon.getSkyViewFactor();
+        }
+        double[] halfGhi = sky.getHalfGhi();
+        double[] projection = new double[n];
+        double[] skyDiffuse = new double[n];
+        for (int k = 0; k < m; k++) {
+            sky.projection(surfaceTilt[k], surfaceAzimuth[k], projection);
+            prepared.estimate(surfaceTilt[k], surfaceAzimuth[k], projection, skyDiffuse);
+            double ground = albedo * (1 - Math.cos(Math.toRadians(surfaceTilt[k])));
+            for (int t = 0; t < n; t++) {
+                double beam = Math.max(dni[t] * projection[t], 0.0);
+                double poaDiffuse = skyDiffuse[t] * skyView + halfGhi[t] * ground;
+                if (global != null)
+                    global[k][t] = beam + poaDiffuse;
+                if (direct != null)
+                    direct[k][t] = beam;
+                if (diffuse != null)
+                    diffuse[k][t] = poaDiffuse;
+            }
+        }
+    }
+
+    private static void checkMatrix(double[][] matrix, int rows, int columns, String name) {
+        if (matrix == null)
+            return;
+        boolean valid = matrix.length >= rows;
+        for (int k = 0; valid && k < rows; k++)
+            valid = matrix[k].length >= columns;
+        if (!valid)
+            throw new IllegalArgumentException("\"" + name + "\" must have at least " + rows
+                                               + " rows of " + columns + " elements");
+    }
 }
\ No newline at end of file
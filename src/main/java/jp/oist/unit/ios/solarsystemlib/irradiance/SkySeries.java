@@ -0,0 +1,113 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.irradiance;
+
+/**
+ * Time series of sun positions and irradiance to be transposed to many surfaces.
+ *
+ * <p>The terms which do not depend on the surface are computed once: the sun direction as a
+ * unit vector, so that the projection on a surface is a dot product without trigonometric
+ * calls, and half of the global horizontal irradiance reflected by the ground per unit of
+ * albedo. The sky diffuse model adds its own terms by
+ * {@link jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse.SkyDiffuseModel#prepare}.</p>
+ */
+public final class SkySeries {
+
+    private final int length;
+    private final double[] apparentZenith;
+    private final double[] azimuth;
+    private final double[] ghi;
+    private final double[] dni;
+    private final double[] dniExtra;
+    private final double[] dhi;
+    private final double[] relativeAirmass;
+    private final double[] absoluteAirmass;
+
+    /* components of the sun direction, east, north and up */
+    private final double[] sunEast;
+    private final double[] sunNorth;
+    private final double[] cosZenith;
+    /* half of the global horizontal irradiance, reflected by a ground of albedo 1 */
+    private final double[] halfGhi;
+
+    /**
+     * @param apparentZenith apparent solar zenith in degree
+     * @param azimuth solar azimuth in degree
+     * @param ghi global horizontal irradiance
+     * @param dni direct normal irradiance
+     * @param dniExtra extraterrestrial irradiance
+     * @param dhi diffuse horizontal irradiance
+     * @param relativeAirmass relative airmass, or null when the sky diffuse model needs none
+     * @param absoluteAirmass absolute airmass, or null when the sky diffuse model needs none
+     */
+    public SkySeries(double[] apparentZenith, double[] azimuth, double[] ghi, double[] dni,
+                     double[] dniExtra, double[] dhi, double[] relativeAirmass,
+                     double[] absoluteAirmass) {
+        int n = apparentZenith.length;
+        checkColumn(azimuth, n, "azimuth");
+        checkColumn(ghi, n, "ghi");
+        checkColumn(dni, n, "dni");
+        checkColumn(dniExtra, n, "dniExtra");
+        checkColumn(dhi, n, "dhi");
+        if (relativeAirmass != null)
+            checkColumn(relativeAirmass, n, "relativeAirmass");
+        if (absoluteAirmass != null)
+            checkColumn(absoluteAirmass, n, "absoluteAirmass");
+
+        this.length = n;
+        this.apparentZenith = apparentZenith;
+        this.azimuth = azimuth;
+        this.ghi = ghi;
+        this.dni = dni;
+        this.dniExtra = dniExtra;
+        this.dhi = dhi;
+        this.relativeAirmass = relativeAirmass;
+        this.absoluteAirmass = absoluteAirmass;
+
+        this.sunEast = new double[n];
+        this.sunNorth = new double[n];
+        this.cosZenith = new double[n];
+        this.halfGhi = new double[n];
+        for (int t = 0; t < n; t++) {
+            double zenith = Math.toRadians(apparentZenith[t]);
+            double az = Math.toRadians(azimuth[t]);
+            double sinZenith = Math.sin(zenith);
+            sunEast[t] = sinZenith * Math.sin(az);
+            sunNorth[t] = sinZenith * Math.cos(az);
+            cosZenith[t] = Math.cos(zenith);
+            halfGhi[t] = ghi[t] * 0.5;
+        }
+    }
+
+    private static void checkColumn(double[] column, int length, String name) {
+        if (column.length != length)
+            throw new IllegalArgumentException("\"" + name + "\" must have " + length
+                                               + " elements");
+    }
+
+    public int getLength() { return length; }
+    public double[] getApparentZenith() { return apparentZenith; }
+    public double[] getAzimuth() { return azimuth; }
+    public double[] getGhi() { return ghi; }
+    public double[] getDni() { return dni; }
+    public double[] getDniExtra() { return dniExtra; }
+    public double[] getDhi() { return dhi; }
+    public double[] getRelativeAirmass() { return relativeAirmass; }
+    public double[] getAbsoluteAirmass() { return absoluteAirmass; }
+    public double[] getCosZenith() { return cosZenith; }
+    public double[] getHalfGhi() { return halfGhi; }
+
+    /**
+     * Cosine of the angle of incidence on a surface, as {@link Irradiance#projection}.
+     * @param surfaceTilt surface tilt in degree
+     * @param surfaceAzimuth surface azimuth in degree
+     * @param projection output column
+     */
+    public void projection(double surfaceTilt, double surfaceAzimuth, double[] projection) {
+        double cosTilt = Math.cos(Math.toRadians(surfaceTilt));
+        double sinTilt = Math.sin(Math.toRadians(surfaceTilt));
+        double east = sinTilt * Math.sin(Math.toRadians(surfaceAzimuth));
+        double north = sinTilt * Math.cos(Math.toRadians(surfaceAzimuth));
+        for (int t = 0; t < length; t++)
+            projection[t] = cosTilt * cosZenith[t] + north * sunNorth[t] + east * sunEast[t];
+    }
+}
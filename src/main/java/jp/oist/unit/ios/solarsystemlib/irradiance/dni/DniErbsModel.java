@@ -20,8 +20,21 @@ public class DniErbsModel extends DniModel {
      */
     @Override
     public Irradiance.Variable estimate(ZonedDateTime ts, double ghi, double zenith, Object... vars) {
+        return estimate(ts.getDayOfYear(), ghi, zenith, vars);
+    }
+
+    /**
+     * Estimates DNI (Direct Normal Irradiance) value and some peripheral parameters.
+     * @param dayOfYear day of year of target time
+     * @param ghi Global horizontal irradiance (w/m^2)
+     * @param zenith Solar zenith angle
+     * @param vars thus aren't used.
+     * @see DniModel
+     */
+    @Override
+    public Irradiance.Variable estimate(int dayOfYear, double ghi, double zenith, Object... vars) {
         Irradiance irradiance = factory.irradiance();
-        double dniExtra = irradiance.extraRadiation(ts);
+        double dniExtra = irradiance.extraRadiation(dayOfYear);
         double i0H = dniExtra * Math.cos(Math.toRadians(zenith));
         double kt = Math.max(ghi/i0H, 0.0);
 
@@ -4,6 +4,8 @@ package jp.oist.unit.ios.solarsystemlib.irradiance.dni;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 
 public abstract class DniModel {
@@ -23,4 +25,20 @@ public abstract class DniModel {
      * @see DniErbsModel
      */
     public abstract Irradiance.Variable estimate(ZonedDateTime dt, double ghi, double zenith, Object... vars);
+
+    /**
+     * Estimates from the day of year only, for the models which do not need the time of day.
+     * Calls {@link #estimate(ZonedDateTime, double, double, Object...)} at noon UTC of that day
+     * of a leap year; override it when the model can do without the date-time.
+     * @param dayOfYear day of year on Place, 1-366
+     * @param ghi GHI (Global Horizontal Irradiance) in Watt/m^2
+     * @param zenith Solar zenith angle
+     * @param vars extra variable for model calculation
+     * @see DniErbsModel
+     */
+    public Irradiance.Variable estimate(int dayOfYear, double ghi, double zenith, Object... vars) {
+        ZonedDateTime dt = LocalDate.ofYearDay(2000, dayOfYear).atTime(12, 0)
+                                    .atZone(ZoneOffset.UTC);
+        return estimate(dt, ghi, zenith, vars);
+    }
 }
\ No newline at end of file
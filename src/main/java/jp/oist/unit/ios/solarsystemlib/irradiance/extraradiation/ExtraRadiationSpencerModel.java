@@ -6,16 +6,28 @@ import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 
 public class ExtraRadiationSpencerModel extends  ExtraRadiationModel {
 
+    /* (R0/R)^2 of each day of year 1-366, index 0 is unused */
+    private static final double[] DISTANCE_FACTOR = new double[367];
+
+    static {
+        for (int doy = 1; doy < DISTANCE_FACTOR.length; doy++)
+            DISTANCE_FACTOR[doy] = distanceFactor(doy);
+    }
+
     public ExtraRadiationSpencerModel(ModelCollection factory) {
         super(factory);
     }
 
     @Override
     public Double estimate(int doy, Double solarConstant, Double deltaT) {
+        double roverR0Sqrd = (doy >= 1 && doy < DISTANCE_FACTOR.length) ? DISTANCE_FACTOR[doy]
+                                                                        : distanceFactor(doy);
+        return solarConstant * roverR0Sqrd;
+    }
+
+    private static double distanceFactor(int doy) {
         double b = SolarPosition.dayAngle(doy);
-        double roverR0Sqrd = (1.00011 + 0.034221 * Math.cos(b) + 0.00128 * Math.sin(b) +
+        return (1.00011 + 0.034221 * Math.cos(b) + 0.00128 * Math.sin(b) +
                 0.000719 * Math.cos(2 * b) + 7.7e-05 * Math.sin(2 * b));
-
-        return solarConstant * roverR0Sqrd;
     }
 }
@@ -4,7 +4,10 @@ package jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse;
 import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
 import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.Kernels;
 import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.irradiance.SkySeries;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
 
 public class SkyDiffuseHaydaviesModel extends SkyDiffuseModel {
 
@@ -32,4 +35,64 @@ public class SkyDiffuseHaydaviesModel extends SkyDiffuseModel {
         double skyDiffuse = irrad.dhi * (ai * rb  + term1 * term2);
         return Math.max(skyDiffuse, 0.0);
     }
+
+    @Override
+    public Double estimate(PreparedSurface surface, double projection, SolarPosition.Variable sp,
+                           Irradiance.Variable irrad, Airmass am, Object... vars) {
+        Double rb = (vars.length > 0)? (Double)vars[0] : null;
+        if (rb == null)
+            rb = projection / Math.cos(Math.toRadians(sp.getApparentZenith()));
+        double ai = irrad.dni / irrad.dniExtra;
+        double skyDiffuse = irrad.dhi * (ai * rb + (1 - ai) * surface.skyView);
+        return Math.max(skyDiffuse, 0.0);
+    }
+
+    /**
+     * Splits the diffuse irradiance of each sample by the anisotropy index into the
+     * circumsolar part, per unit of projection, and the isotropic part.
+     */
+    @Override
+    public Prepared prepare(SkySeries sky) {
+        double[] circumsolar = new double[sky.getLength()];
+        double[] isotropic = new double[sky.getLength()];
+        for (int t = 0; t < circumsolar.length; t++) {
+            double ai = sky.getDni()[t] / sky.getDniExtra()[t];
+            circumsolar[t] = sky.getDhi()[t] * ai / sky.getCosZenith()[t];
+            isotropic[t] = sky.getDhi()[t] * (1 - ai);
+        }
+
+        return new Prepared(sky) {
+            @Override
+            public void estimate(double surfaceTilt, double surfaceAzimuth, double[] projection,
+                                 double[] skyDiffuse) {
+                double term2 = 0.5 * (1 + Math.cos(Math.toRadians(surfaceTilt)));
+                for (int t = 0; t < circumsolar.length; t++)
+                    skyDiffuse[t] = Math.max(circumsolar[t] * projection[t]
+                                             + isotropic[t] * term2, 0.0);
+            }
+        };
+    }
+
+    /**
+     * Estimates sky diffuse irradiance of many samples on one surface.
+     * @param surfaceTilt surface tilt in degree
+     * @param surfaceAzimuth surface azimuth in degree
+     * @param apparentZenith apparent solar zenith in degree
+     * @param azimuth solar azimuth in degree
+     * @param dni direct normal irradiance
+     * @param dniExtra extraterrestrial irradiance
+     * @param dhi diffuse horizontal irradiance
+     * @param skyDiffuse output column
+     */
+    public void estimate(double surfaceTilt, double surfaceAzimuth,
+                         double[] apparentZenith, double[] azimuth,
+                         double[] dni, double[] dniExtra, double[] dhi, double[] skyDiffuse) {
+        int n = apparentZenith.length;
+        if (azimuth.length < n || dni.length < n || dniExtra.length < n || dhi.length < n
+                || skyDiffuse.length < n)
+            throw new IllegalArgumentException("every column must have at least " + n
+                                               + " elements");
+        Kernels.get().haydavies(surfaceTilt, surfaceAzimuth, apparentZenith, azimuth,
+                                dni, dniExtra, dhi, n, skyDiffuse);
+    }
 }
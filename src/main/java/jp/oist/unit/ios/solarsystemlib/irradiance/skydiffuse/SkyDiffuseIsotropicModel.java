@@ -5,6 +5,8 @@ import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
 import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.irradiance.SkySeries;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
 
 public class SkyDiffuseIsotropicModel extends SkyDiffuseModel {
 
@@ -18,4 +20,24 @@ public class SkyDiffuseIsotropicModel extends SkyDiffuseModel {
                            Object... vars) {
         return irrad.dhi * (1 + Math.cos(Math.toRadians(surfaceTilt))) * 0.5;
     }
+
+    @Override
+    public Double estimate(PreparedSurface surface, double projection, SolarPosition.Variable sp,
+                           Irradiance.Variable irrad, Airmass am, Object... vars) {
+        return irrad.dhi * surface.skyView;
+    }
+
+    @Override
+    public Prepared prepare(SkySeries sky) {
+        return new Prepared(sky) {
+            @Override
+            public void estimate(double surfaceTilt, double surfaceAzimuth, double[] projection,
+                                 double[] skyDiffuse) {
+                double[] dhi = sky.getDhi();
+                double viewFactor = (1 + Math.cos(Math.toRadians(surfaceTilt))) * 0.5;
+                for (int t = 0; t < dhi.length; t++)
+                    skyDiffuse[t] = dhi[t] * viewFactor;
+            }
+        };
+    }
 }
@@ -5,6 +5,8 @@ import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
 import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.irradiance.SkySeries;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
 
 public class SkyDiffuseKingModel extends SkyDiffuseModel {
 
@@ -26,4 +28,32 @@ public class SkyDiffuseKingModel extends SkyDiffuseModel {
 
         return Math.max(skyDiffuse, 0.0);
     }
+
+    @Override
+    public Double estimate(PreparedSurface surface, double projection, SolarPosition.Variable sp,
+                           Irradiance.Variable irrad, Airmass am, Object... vars) {
+        double skyDiffuse = irrad.dhi * surface.skyView
+                + irrad.ghi * (0.012 * sp.getApparentZenith() - 0.04) * surface.groundView;
+        return Math.max(skyDiffuse, 0.0);
+    }
+
+    @Override
+    public Prepared prepare(SkySeries sky) {
+        // horizon brightening of each sample
+        double[] horizon = new double[sky.getLength()];
+        for (int t = 0; t < horizon.length; t++)
+            horizon[t] = sky.getGhi()[t] * (0.012 * sky.getApparentZenith()[t] - 0.04);
+
+        return new Prepared(sky) {
+            @Override
+            public void estimate(double surfaceTilt, double surfaceAzimuth, double[] projection,
+                                 double[] skyDiffuse) {
+                double[] dhi = sky.getDhi();
+                double skyView = (1.0 + cosd(surfaceTilt)) * 0.5;
+                double groundView = (1.0 - cosd(surfaceTilt)) * 0.5;
+                for (int t = 0; t < dhi.length; t++)
+                    skyDiffuse[t] = Math.max(dhi[t] * skyView + horizon[t] * groundView, 0.0);
+            }
+        };
+    }
 }
@@ -5,10 +5,12 @@ import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
 import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.irradiance.SkySeries;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
 
 public abstract class SkyDiffuseModel {
 
-    private ModelCollection factory;
+    protected ModelCollection factory;
 
     public SkyDiffuseModel(ModelCollection factory) {
         this.factory = factory;
@@ -17,4 +19,86 @@ public abstract class SkyDiffuseModel {
     public abstract Double estimate(double surfaceTilt, double surfaceAzimuth,
                                     SolarPosition.Variable sp, Irradiance.Variable irrad,
                                     Airmass am, Object... vars);
+
+    /**
+     * Estimates sky diffuse irradiance on a prepared surface, with the projection of the sun
+     * already computed for the beam. By default the orientation is given to
+     * {@link #estimate(double, double, SolarPosition.Variable, Irradiance.Variable, Airmass,
+     * Object...)}.
+     * @param surface prepared surface
+     * @param projection cosine of the angle of incidence
+     * @param sp solar position
+     * @param irrad irradiance
+     * @param am airmass
+     * @param vars extra variable for model calculation
+     * @return sky diffuse irradiance
+     */
+    public Double estimate(PreparedSurface surface, double projection, SolarPosition.Variable sp,
+                           Irradiance.Variable irrad, Airmass am, Object... vars) {
+        return estimate(surface.surfaceTilt, surface.surfaceAzimuth, sp, irrad, am, vars);
+    }
+
+    /**
+     * Computes the terms of a sky series which do not depend on the surface, so that many
+     * surfaces are estimated from them. Models override it with their own terms; by default
+     * the samples are estimated one by one.
+     * @param sky sun positions and irradiance
+     * @return terms of the series
+     */
+    public Prepared prepare(SkySeries sky) {
+        return new Prepared(sky) {
+            private final SolarPosition.Variable[] sp = new SolarPosition.Variable[sky.getLength()];
+            private final Irradiance.Variable[] irrad = new Irradiance.Variable[sky.getLength()];
+            private final Airmass[] am = new Airmass[sky.getLength()];
+
+            {
+                for (int t = 0; t < sp.length; t++) {
+                    double zenith = sky.getApparentZenith()[t];
+                    sp[t] = new SolarPosition.Variable(0L, 90 - zenith, zenith,
+                                                       sky.getAzimuth()[t], 90 - zenith, 0.0,
+                                                       zenith);
+                    irrad[t] = new Irradiance.Variable(sky.getGhi()[t], sky.getDni()[t],
+                                                       sky.getDniExtra()[t], sky.getDhi()[t],
+                                                       null);
+                    if (sky.getRelativeAirmass() != null && sky.getAbsoluteAirmass() != null)
+                        am[t] = new Airmass(sky.getRelativeAirmass()[t],
+                                            sky.getAbsoluteAirmass()[t]);
+                }
+            }
+
+            @Override
+            public void estimate(double surfaceTilt, double surfaceAzimuth, double[] projection,
+                                 double[] skyDiffuse) {
+                for (int t = 0; t < sp.length; t++)
+                    skyDiffuse[t] = SkyDiffuseModel.this.estimate(surfaceTilt, surfaceAzimuth,
+                                                                   sp[t], irrad[t], am[t]);
+            }
+        };
+    }
+
+    /**
+     * Terms of a sky series given by {@link SkyDiffuseModel#prepare(SkySeries)}.
+     */
+    public abstract static class Prepared {
+        protected final SkySeries sky;
+
+        protected Prepared(SkySeries sky) {
+            this.sky = sky;
+        }
+
+        public SkySeries getSky() {
+            return sky;
+        }
+
+        /**
+         * Estimates sky diffuse irradiance of every sample on one surface.
+         * @param surfaceTilt surface tilt in degree
+         * @param surfaceAzimuth surface azimuth in degree
+         * @param projection cosine of the angle of incidence of each sample, see
+         *                   {@link SkySeries#projection}
+         * @param skyDiffuse output column
+         */
+        public abstract void estimate(double surfaceTilt, double surfaceAzimuth,
+                                      double[] projection, double[] skyDiffuse);
+    }
 }
@@ -0,0 +1,192 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse;
+
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.Kernels;
+import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.irradiance.SkySeries;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
+
+/**
+ * Sky diffuse irradiance of the Perez 1990 model, with the "allsitescomposite1990"
+ * coefficients, as pvlib.irradiance.perez.
+ *
+ * <p>The sky clearness selects one of eight bins; the circumsolar (F1) and horizon (F2)
+ * brightening are linear in the sky brightness and the zenith with the coefficients of the
+ * bin. The coefficients are kept column by column and the bin is counted from the bin edges
+ * without branches. The relative airmass is the one of the given {@link Airmass}, or of the
+ * relative airmass model of the collection when none is given.</p>
+ *
+ * @see <a href="https://doi.org/10.1016/0038-092X(90)90055-H">R. Perez et al., Modeling
+ *      daylight availability and irradiance components from direct and global irradiance,
+ *      Solar Energy 44 (1990)</a>
+ */
+public class SkyDiffusePerezModel extends SkyDiffuseModel {
+
+    /* zenith term of the sky clearness, for the zenith in radian */
+    private static final double KAPPA = 1.041;
+    /* lower limit of the cosine of the zenith, cos(85 degree) */
+    private static final double MIN_COS_ZENITH = Math.cos(Math.toRadians(85));
+
+    /* lower edges of the sky clearness bins 2 to 8 */
+    private static final double[] EDGES = {1.065, 1.23, 1.5, 1.95, 2.8, 4.5, 6.2};
+
+    /* allsitescomposite1990 coefficients of each bin, F = c1 + c2 delta + c3 zenith */
+    private static final double[] F11 = {-0.008, 0.130, 0.330, 0.568, 0.873, 1.132, 1.060, 0.678};
+    private static final double[] F12 = {0.588, 0.683, 0.487, 0.187, -0.392, -1.237, -1.600,
+                                         -0.327};
+    private static final double[] F13 = {-0.062, -0.151, -0.221, -0.295, -0.362, -0.412, -0.359,
+                                         -0.250};
+    private static final double[] F21 = {-0.060, -0.019, 0.055, 0.109, 0.226, 0.288, 0.264,
+                                         0.156};
+    private static final double[] F22 = {0.072, 0.066, -0.064, -0.152, -0.462, -0.823, -1.127,
+                                         -1.377};
+    private static final double[] F23 = {-0.022, -0.029, -0.026, -0.014, 0.001, 0.056, 0.131,
+                                         0.251};
+
+    public SkyDiffusePerezModel(ModelCollection factory) {
+        super(factory);
+    }
+
+    @Override
+    public Double estimate(double surfaceTilt, double surfaceAzimuth,
+                           SolarPosition.Variable sp, Irradiance.Variable irrad, Airmass am,
+                           Object... vars) {
+        double projection = Irradiance.projection(surfaceTilt, surfaceAzimuth,
+                                                  sp.getApparentZenith(), sp.getAzimuth());
+        double cosTilt = Math.cos(Math.toRadians(surfaceTilt));
+        return skyDiffuse(sp.getApparentZenith(), irrad.dni, irrad.dniExtra, irrad.dhi,
+                          relativeAirmass(sp, am), projection, (1 + cosTilt) * 0.5,
+                          Math.sin(Math.toRadians(surfaceTilt)));
+    }
+
+    @Override
+    public Double estimate(PreparedSurface surface, double projection, SolarPosition.Variable sp,
+                           Irradiance.Variable irrad, Airmass am, Object... vars) {
+        return skyDiffuse(sp.getApparentZenith(), irrad.dni, irrad.dniExtra, irrad.dhi,
+                          relativeAirmass(sp, am), projection, surface.skyView,
+                          surface.sinTilt);
+    }
+
+    private double relativeAirmass(SolarPosition.Variable sp, Airmass am) {
+        if (am != null)
+            return am.getRelativeAirmass();
+        Double relative = factory.getRelativeAirmassModel().estimate(sp);
+        return (relative == null) ? Double.NaN : relative;
+    }
+
+    /**
+     * Estimates sky diffuse irradiance of many samples on one surface.
+     * @param surfaceTilt surface tilt in degree
+     * @param surfaceAzimuth surface azimuth in degree
+     * @param apparentZenith apparent solar zenith in degree
+     * @param azimuth solar azimuth in degree
+     * @param dni direct normal irradiance
+     * @param dniExtra extraterrestrial irradiance
+     * @param dhi diffuse horizontal irradiance
+     * @param airmass relative airmass
+     * @param skyDiffuse output column
+     */
+    public void estimate(double surfaceTilt, double surfaceAzimuth,
+                         double[] apparentZenith, double[] azimuth, double[] dni,
+                         double[] dniExtra, double[] dhi, double[] airmass,
+                         double[] skyDiffuse) {
+        int n = apparentZenith.length;
+        if (azimuth.length < n || dni.length < n || dniExtra.length < n || dhi.length < n
+                || airmass.length < n || skyDiffuse.length < n)
+            throw new IllegalArgumentException("every column must have at least " + n
+                                               + " elements");
+        double skyView = (1 + Math.cos(Math.toRadians(surfaceTilt))) * 0.5;
+        double sinTilt = Math.sin(Math.toRadians(surfaceTilt));
+        // the projection is written to the output column, then replaced sample by sample
+        Kernels.get().projection(surfaceTilt, surfaceAzimuth, apparentZenith, azimuth, n,
+                                 skyDiffuse);
+        for (int i = 0; i < n; i++)
+            skyDiffuse[i] = skyDiffuse(apparentZenith[i], dni[i], dniExtra[i], dhi[i],
+                                       airmass[i], skyDiffuse[i], skyView, sinTilt);
+    }
+
+    /**
+     * Splits the diffuse irradiance of each sample into the isotropic, circumsolar and horizon
+     * parts, so that a surface only weights them by its view factor, projection and tilt.
+     */
+    @Override
+    public Prepared prepare(SkySeries sky) {
+        int n = sky.getLength();
+        double[] isotropic = new double[n];
+        double[] circumsolar = new double[n];
+        double[] horizon = new double[n];
+        double[] relative = sky.getRelativeAirmass();
+        for (int t = 0; t < n; t++) {
+            double zenith = sky.getApparentZenith()[t];
+            double dhi = sky.getDhi()[t];
+            double am = (relative != null) ? relative[t] : relativeAirmass(
+                    new SolarPosition.Variable(0L, 90 - zenith, zenith, sky.getAzimuth()[t],
+                                               90 - zenith, 0.0, zenith), null);
+            if (!(dhi > 0))
+                continue;
+            double z = Math.toRadians(zenith);
+            int bin = bin(clearness(sky.getDni()[t], dhi, z));
+            double delta = dhi * am / sky.getDniExtra()[t];
+            double f1 = Math.max(F11[bin] + F12[bin] * delta + F13[bin] * z, 0.0);
+            double f2 = F21[bin] + F22[bin] * delta + F23[bin] * z;
+            isotropic[t] = dhi * (1 - f1);
+            circumsolar[t] = dhi * f1 / Math.max(Math.cos(z), MIN_COS_ZENITH);
+            horizon[t] = dhi * f2;
+        }
+
+        return new Prepared(sky) {
+            @Override
+            public void estimate(double surfaceTilt, double surfaceAzimuth, double[] projection,
+                                 double[] skyDiffuse) {
+                double skyView = (1 + Math.cos(Math.toRadians(surfaceTilt))) * 0.5;
+                double sinTilt = Math.sin(Math.toRadians(surfaceTilt));
+                for (int t = 0; t < isotropic.length; t++)
+                    skyDiffuse[t] = Math.max(isotropic[t] * skyView
+                                             + circumsolar[t] * Math.max(projection[t], 0.0)
+                                             + horizon[t] * sinTilt, 0.0);
+            }
+        };
+    }
+
+    /**
+     * Perez sky diffuse irradiance of one sample.
+     * @param zenith apparent solar zenith in degree
+     * @param projection cosine of the angle of incidence
+     * @param skyView sky view factor of the surface, (1 + cos tilt) / 2
+     * @param sinTilt sine of the surface tilt
+     */
+    private static double skyDiffuse(double zenith, double dni, double dniExtra, double dhi,
+                                     double airmass, double projection, double skyView,
+                                     double sinTilt) {
+        // no diffuse, or an undefined clearness
+        if (!(dhi > 0))
+            return 0.0;
+        double z = Math.toRadians(zenith);
+        int bin = bin(clearness(dni, dhi, z));
+        double delta = dhi * airmass / dniExtra;
+        double f1 = Math.max(F11[bin] + F12[bin] * delta + F13[bin] * z, 0.0);
+        double f2 = F21[bin] + F22[bin] * delta + F23[bin] * z;
+
+        double a = Math.max(projection, 0.0);
+        double b = Math.max(Math.cos(z), MIN_COS_ZENITH);
+        double sky = dhi * ((1 - f1) * skyView + f1 * a / b + f2 * sinTilt);
+        return Math.max(sky, 0.0);
+    }
+
+    /* sky clearness epsilon, z is the zenith in radian */
+    private static double clearness(double dni, double dhi, double z) {
+        double z3 = KAPPA * z * z * z;
+        return ((dhi + dni) / dhi + z3) / (1 + z3);
+    }
+
+    /* bin 0-7 of the sky clearness, the number of lower edges at or below it */
+    static int bin(double clearness) {
+        int bin = 0;
+        for (double edge : EDGES)
+            bin += (clearness >= edge) ? 1 : 0;
+        return bin;
+    }
+}
@@ -0,0 +1,63 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.pvsystem;
+
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+
+/**
+ * Orientation constants of a {@link PvSystem} which never change between timestamps.
+ * Obtain an instance by {@link PvSystem#prepare()}.
+ */
+public class PreparedSurface {
+    public final PvSystem system;
+    public final double surfaceTilt;
+    public final double surfaceAzimuth;
+    /* ground albedo of the system */
+    public final double albedo;
+
+    public final double cosTilt;
+    public final double sinTilt;
+    /* view factors of the sky and of the ground, (1 + cos tilt) / 2 and (1 - cos tilt) / 2 */
+    public final double skyView;
+    public final double groundView;
+
+    PreparedSurface(PvSystem system) {
+        this.system = system;
+        this.surfaceTilt = system.surfaceTilt;
+        this.surfaceAzimuth = system.surfaceAzimuth;
+        this.albedo = system.albedo;
+
+        this.cosTilt = Math.cos(Math.toRadians(surfaceTilt));
+        this.sinTilt = Math.sin(Math.toRadians(surfaceTilt));
+        this.skyView = (1 + cosTilt) * 0.5;
+        this.groundView = (1 - cosTilt) * 0.5;
+    }
+
+    /**
+     * Cosine of the angle of incidence, as
+     * {@link jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance#projection}.
+     * @param solarZenith solar zenith in degree
+     * @param solarAzimuth solar azimuth in degree
+     * @return projection of the sun on the surface
+     */
+    public double projection(double solarZenith, double solarAzimuth) {
+        return cosTilt * Math.cos(Math.toRadians(solarZenith))
+               + sinTilt * Math.sin(Math.toRadians(solarZenith))
+               * Math.cos(Math.toRadians(solarAzimuth - surfaceAzimuth));
+    }
+
+    /**
+     * @param sp solar position
+     * @return projection of the sun on the surface, by the apparent zenith
+     */
+    public double projection(SolarPosition.Variable sp) {
+        return projection(sp.getApparentZenith(), sp.getAzimuth());
+    }
+
+    /**
+     * @param projection projection of the sun on the surface
+     * @return angle of incidence in degree
+     */
+    public static double aoi(double projection) {
+        return Math.toDegrees(Math.acos(projection));
+    }
+}
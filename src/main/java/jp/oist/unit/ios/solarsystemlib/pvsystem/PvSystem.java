@@ -22,6 +22,8 @@ public class PvSystem {
     public final Double albedo;
     public final RackingModel rackingModel;
 
+    private volatile PreparedSurface prepared = null;
+
     public PvSystem(double surfaceTilt, double surfaceAzimuth, int modulesPerString) {
          this(surfaceTilt, surfaceAzimuth, modulesPerString,
              null, null, null);
@@ -54,7 +56,20 @@ public class PvSystem {
         this.rackingModel = (rackingModel == null)? RackingModel.OPEN_RACK_CELL_GLASSBACK : rackingModel;
     }
 
+    /**
+     * Computes the orientation constants once and reuses them for later calls.
+     * @return prepared surface
+     */
+    public PreparedSurface prepare() {
+        PreparedSurface ret = prepared;
+        if (ret == null) {
+            ret = new PreparedSurface(this);
+            prepared = ret;
+        }
+        return ret;
+    }
+
     public double getAoi(SolarPosition.Variable sp) {
-        return Irradiance.aoi(surfaceTilt, surfaceAzimuth, sp.getApparentZenith(), sp.getAzimuth());
+        return PreparedSurface.aoi(prepare().projection(sp));
     }
 }
\ No newline at end of file
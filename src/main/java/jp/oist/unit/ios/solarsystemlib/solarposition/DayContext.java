@@ -0,0 +1,99 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import jp.oist.unit.ios.solarsystemlib.common.TimeUtils;
+
+/**
+ * Terms of one date which the models would otherwise recompute for every sample: the calendar
+ * fields and the deltaT of SPA. The day angle is not held, it is a single multiplication of the
+ * day of year.
+ *
+ * <p>Instances are immutable and shared through a cache of {@link #CACHE_SIZE} dates, mapped
+ * by the date modulo the size, which holds about eleven consecutive years. A lookup is a read
+ * of an array slot; a miss builds the instance and replaces the slot, so threads may build the
+ * same date twice but always see a complete instance.</p>
+ */
+public final class DayContext {
+
+    /* dates held by the cache, a power of 2 */
+    public static final int CACHE_SIZE = 4096;
+
+    private static final AtomicReferenceArray<DayContext> CACHE
+            = new AtomicReferenceArray<>(CACHE_SIZE);
+
+    private final long epochDay;
+    private final int year;
+    private final int month;
+    private final int dayOfYear;
+    private final double deltaT;
+
+    private DayContext(long epochDay) {
+        this.epochDay = epochDay;
+        this.year = TimeUtils.year(epochDay);
+        this.month = TimeUtils.month(epochDay);
+        this.dayOfYear = (int)(epochDay - TimeUtils.daysFromCivil(year, 1, 1)) + 1;
+        this.deltaT = SolarPositionSpaModel.deltaT(year, month);
+    }
+
+    /**
+     * @param epochDay days from 1970-01-01
+     * @return terms of the date
+     */
+    public static DayContext of(long epochDay) {
+        int slot = (int)(epochDay & (CACHE_SIZE - 1));
+        DayContext context = CACHE.get(slot);
+        if (context == null || context.epochDay != epochDay) {
+            context = new DayContext(epochDay);
+            CACHE.set(slot, context);
+        }
+        return context;
+    }
+
+    /**
+     * @param epochSecond unix epoch seconds
+     * @return terms of the UTC date
+     */
+    public static DayContext ofEpochSecond(long epochSecond) {
+        return of(TimeUtils.epochDay(epochSecond, 0));
+    }
+
+    /**
+     * @param dt date-time
+     * @return terms of the local date of the date-time
+     */
+    public static DayContext of(ZonedDateTime dt) {
+        return of(dt.toLocalDate().toEpochDay());
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * @return month 1-12
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * @return day of year 1-366
+     */
+    public int getDayOfYear() {
+        return dayOfYear;
+    }
+
+    /**
+     * @return deltaT of SPA for the month of the date in second
+     */
+    public double getDeltaT() {
+        return deltaT;
+    }
+}
@@ -0,0 +1,215 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+
+/**
+ * Solar position of a fleet of sites sharing one estimate among the sites close to each other.
+ *
+ * <p>Sites are bucketed on a latitude/longitude grid whose cells are {@code tolerance} degree of
+ * arc on each side, and the solar position is estimated once per cell at its center. Moving
+ * the observer by an angle of arc tilts the local vertical by the same angle, so the zenith
+ * and elevation of a site differ from the ones of its cell by at most that angle, plus the
+ * change of refraction near the horizon (less than a fifth of it). The azimuth differs by at
+ * most that angle divided by sin(zenith). The largest angle between a site and its cell
+ * center is {@link #getMaxError()}, about 0.71 times the tolerance at most. A cell holding a
+ * single site uses the site itself.</p>
+ */
+public class FleetSolarPosition {
+
+    private final SolarPositionModel model;
+    private final double tolerance;
+    private final int locationCount;
+
+    /* cluster of each location */
+    private final int[] clusters;
+    /* representative location of each cluster */
+    private final Location[] representatives;
+    private final double maxError;
+
+    /**
+     * @param model model estimating the position of each cluster
+     * @param locations sites of the fleet
+     * @param tolerance side of the grid cells in degree of arc, from 1e-6 to 10
+     */
+    public FleetSolarPosition(SolarPositionModel model, Location[] locations, double tolerance) {
+        if (!(tolerance >= 1e-6 && tolerance <= 10))
+            throw new IllegalArgumentException("\"tolerance\" must be from 1e-6 to 10 degree");
+        this.model = model;
+        this.tolerance = tolerance;
+        this.locationCount = locations.length;
+        this.clusters = new int[locations.length];
+
+        Map<Long, Integer> cells = new HashMap<>();
+        List<long[]> cellKeys = new ArrayList<>();
+        List<List<Location>> members = new ArrayList<>();
+        for (int i = 0; i < locations.length; i++) {
+            long[] cell = cell(locations[i]);
+            long key = cell[0] * (1L << 32) + cell[1];
+            Integer cluster = cells.get(key);
+            if (cluster == null) {
+                cluster = members.size();
+                cells.put(key, cluster);
+                cellKeys.add(cell);
+                members.add(new ArrayList<Location>());
+            }
+            clusters[i] = cluster;
+            members.get(cluster).add(locations[i]);
+        }
+
+        this.representatives = new Location[members.size()];
+        for (int c = 0; c < representatives.length; c++)
+            representatives[c] = representative(cellKeys.get(c), members.get(c));
+
+        double error = 0;
+        for (int i = 0; i < locations.length; i++)
+            error = Math.max(error, angle(locations[i], representatives[clusters[i]]));
+        this.maxError = error;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    public int getClusterCount() {
+        return representatives.length;
+    }
+
+    /**
+     * @param index index of a location given to the constructor
+     * @return cluster of the location
+     */
+    public int getCluster(int index) {
+        return clusters[index];
+    }
+
+    /**
+     * @param cluster cluster
+     * @return location at which the position of the cluster is estimated
+     */
+    public Location getClusterLocation(int cluster) {
+        return representatives[cluster];
+    }
+
+    /**
+     * @return largest angle of arc in degree between a site and the place of its cluster
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * Estimates the solar position of every site, once per cluster.
+     * @param epochSecond target time in unix epoch seconds
+     * @param pressure air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param vars extra variable for model calculation
+     * @return solar position of each location, the sites of a cluster share one instance
+     */
+    public SolarPosition.Variable[] estimate(long epochSecond, Double pressure, Double tempAir,
+                                             Object... vars) {
+        SolarPosition.Variable[] positions = new SolarPosition.Variable[representatives.length];
+        for (int c = 0; c < representatives.length; c++)
+            positions[c] = model.estimate(epochSecond, representatives[c], pressure, tempAir, vars);
+
+        SolarPosition.Variable[] ret = new SolarPosition.Variable[locationCount];
+        for (int i = 0; i < locationCount; i++)
+            ret[i] = positions[clusters[i]];
+        return ret;
+    }
+
+    /**
+     * Estimates the solar position of every site into columns, once per cluster.
+     * A column may be null when the caller does not need it.
+     * @param epochSecond target time in unix epoch seconds
+     * @param pressure air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param apparentZenith output column for apparent zenith
+     * @param azimuth output column for azimuth
+     * @param apparentElevation output column for apparent elevation
+     * @param vars extra variable for model calculation
+     */
+    public void estimate(long epochSecond, Double pressure, Double tempAir,
+                         double[] apparentZenith, double[] azimuth, double[] apparentElevation,
+                         Object... vars) {
+        checkColumn(apparentZenith, "apparentZenith");
+        checkColumn(azimuth, "azimuth");
+        checkColumn(apparentElevation, "apparentElevation");
+
+        SolarPosition.Variable[] positions = new SolarPosition.Variable[representatives.length];
+        for (int c = 0; c < representatives.length; c++)
+            positions[c] = model.estimate(epochSecond, representatives[c], pressure, tempAir, vars);
+
+        for (int i = 0; i < locationCount; i++) {
+            SolarPosition.Variable sp = positions[clusters[i]];
+            if (apparentZenith != null)
+                apparentZenith[i] = sp.getApparentZenith();
+            if (azimuth != null)
+                azimuth[i] = sp.getAzimuth();
+            if (apparentElevation != null)
+                apparentElevation[i] = sp.getApparentElevation();
+        }
+    }
+
+    private void checkColumn(double[] column, String name) {
+        if (column != null && column.length < locationCount)
+            throw new IllegalArgumentException("\"" + name + "\" must have at least "
+                                               + locationCount + " elements");
+    }
+
+    /**
+     * Row of the latitude band and column in it. The longitude width of a band is taken at its
+     * edge nearest to the equator, so a cell is never wider than the tolerance in arc.
+     */
+    private long[] cell(Location location) {
+        int rows = (int)Math.ceil(180 / tolerance);
+        long row = Math.min(rows - 1, (long)Math.floor((location.latitude + 90) / tolerance));
+        double south = -90 + row * tolerance;
+        double north = Math.min(90, south + tolerance);
+        double equatorward = (south > 0) ? south : (north < 0) ? north : 0;
+        double width = tolerance / Math.cos(Math.toRadians(equatorward));
+        long columns = Math.max(1, (long)Math.ceil(360 / width));
+
+        double lng = location.longitude - 360 * Math.floor((location.longitude + 180) / 360);
+        long column = Math.min(columns - 1, (long)Math.floor((lng + 180) / 360 * columns));
+        return new long[] { row, column, columns };
+    }
+
+    private Location representative(long[] cell, List<Location> members) {
+        if (members.size() == 1)
+            return members.get(0);
+
+        double lat = Math.max(-90, Math.min(90, -90 + (cell[0] + 0.5) * tolerance));
+        double lng = -180 + (cell[1] + 0.5) * 360.0 / cell[2];
+        // altitude only moves the parallax and the pressure of the location, the mean is enough
+        double altitude = 0;
+        int count = 0;
+        for (Location location : members) {
+            if (location.altitude != null) {
+                altitude += location.altitude;
+                count++;
+            }
+        }
+        return new Location(lat, lng, (count == 0) ? null : altitude / count);
+    }
+
+    /* angle of arc between two sites in degree, by the haversine formula */
+    private static double angle(Location a, Location b) {
+        double phi1 = Math.toRadians(a.latitude);
+        double phi2 = Math.toRadians(b.latitude);
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(b.longitude - a.longitude);
+        double h = Math.pow(Math.sin(dPhi / 2), 2)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.pow(Math.sin(dLambda / 2), 2);
+        return Math.toDegrees(2 * Math.asin(Math.min(1, Math.sqrt(h))));
+    }
+}
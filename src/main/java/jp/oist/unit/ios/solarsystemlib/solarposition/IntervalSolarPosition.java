@@ -0,0 +1,376 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.PreparedLocation;
+import jp.oist.unit.ios.solarsystemlib.atomsphere.Atmosphere;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.Consts;
+
+/**
+ * Effective solar position over an interval, for weather data given as interval averages.
+ *
+ * <p>The SPA time terms are computed at both ends of the interval only and interpolated in
+ * between, which is below 0.0001 degree off for {@link #MAX_INTERVAL}. The sunlit part of the
+ * interval, when the apparent elevation is above the horizon, is found from a few samples and
+ * refined to the second, and the sun is evaluated at the Gauss-Legendre nodes of each sunlit
+ * part. A rise and a set between two samples, a fifth of the interval apart, is missed; it only
+ * happens for a sun grazing the horizon.</p>
+ *
+ * <p>The effective position is weighted by the beam irradiance, taken constant while the sun
+ * is up, that is the mean sun direction over the sunlit part. As the interval average of DNI
+ * already holds the dark part, the interval average of the beam on a surface is that DNI times
+ * {@link Variable#projection(double, double)}.</p>
+ */
+public class IntervalSolarPosition {
+
+    public static final int DEFAULT_NODES = 4;
+    /* longest interval in seconds */
+    public static final long MAX_INTERVAL = 6 * 3600;
+
+    /* abscissas and weights of Gauss-Legendre rules on [-1, 1], one to five nodes */
+    private static final double[][] ABSCISSAS = {
+        { 0.0 },
+        { -0.5773502691896257, 0.5773502691896257 },
+        { -0.7745966692414834, 0.0, 0.7745966692414834 },
+        { -0.8611363115940526, -0.3399810435848563, 0.3399810435848563, 0.8611363115940526 },
+        { -0.9061798459386640, -0.5384693101056831, 0.0, 0.5384693101056831,
+          0.9061798459386640 },
+    };
+    private static final double[][] WEIGHTS = {
+        { 2.0 },
+        { 1.0, 1.0 },
+        { 5.0 / 9, 8.0 / 9, 5.0 / 9 },
+        { 0.3478548451374538, 0.6521451548625461, 0.6521451548625461, 0.3478548451374538 },
+        { 0.2369268850561891, 0.4786286704993665, 0.5688888888888889, 0.4786286704993665,
+          0.2369268850561891 },
+    };
+
+    /* samples of the apparent elevation, both ends included */
+    private static final int SAMPLES = 6;
+    /* the sunrise and sunset inside an interval are refined to this many seconds */
+    private static final double CROSSING_TOLERANCE = 0.5;
+
+    private final SolarPositionSpaModel spa;
+    private final int nodes;
+    private final double horizon;
+
+    public IntervalSolarPosition(ModelCollection factory) {
+        this(new SolarPositionSpaModel(factory), DEFAULT_NODES, 0.0);
+    }
+
+    /**
+     * @param spa SPA model
+     * @param nodes Gauss-Legendre nodes per sunlit part, from 1 to 5
+     * @param horizon apparent elevation in degree above which the sun counts as up
+     */
+    public IntervalSolarPosition(SolarPositionSpaModel spa, int nodes, double horizon) {
+        if (nodes < 1 || nodes > ABSCISSAS.length)
+            throw new IllegalArgumentException("\"nodes\" must be from 1 to " + ABSCISSAS.length);
+        this.spa = spa;
+        this.nodes = nodes;
+        this.horizon = horizon;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public double getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Estimates the effective solar position over an interval.
+     * @param start start of the interval in unix epoch seconds
+     * @param end end of the interval in unix epoch seconds
+     * @param location location of target place
+     * @param pressure air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param vars extra variable for model calculation (Double atmosRefract, Double deltaT)
+     * @return effective solar position
+     */
+    public Variable estimate(long start, long end, Location location, Double pressure,
+                             Double tempAir, Object... vars) {
+        if (end <= start || end - start > MAX_INTERVAL)
+            throw new IllegalArgumentException("interval must be from 1 to " + MAX_INTERVAL
+                                               + " seconds long");
+        double atmosRefract = (vars.length > 0 && vars[0] != null) ? (Double)vars[0] : 0.5667;
+        double deltaT = (vars.length > 1 && vars[1] != null) ? (Double)vars[1]
+                                                              : spa.deltaT(start);
+
+        Interpolation path = new Interpolation(spa.timeTerms(start, deltaT),
+                                               spa.timeTerms(end, deltaT));
+        Site site = new Site(location, pressure, tempAir, atmosRefract);
+        double length = end - start;
+        long middle = start + (end - start) / 2;
+
+        // sunlit parts from the samples
+        double[] from = new double[SAMPLES];
+        double[] to = new double[SAMPLES];
+        int parts = 0;
+        double rise = Double.NaN;
+        boolean up = false;
+        for (int k = 0; k < SAMPLES; k++) {
+            double t = length * k / (SAMPLES - 1);
+            boolean above = site.elevation(path, t / length) > horizon;
+            if (k == 0) {
+                if (above)
+                    rise = 0;
+            } else if (above != up) {
+                double crossing = crossing(path, site, t - length / (SAMPLES - 1), t, length);
+                if (above) {
+                    rise = crossing;
+                } else {
+                    from[parts] = rise;
+                    to[parts++] = crossing;
+                }
+            }
+            up = above;
+        }
+        if (up) {
+            from[parts] = rise;
+            to[parts++] = length;
+        }
+
+        Variable ret = new Variable(start, end, parts * nodes);
+        double[] abscissas = ABSCISSAS[nodes - 1];
+        double[] weights = WEIGHTS[nodes - 1];
+        double[] sun = new double[SolarPositionSpaModel.TOPOCENTRIC_LENGTH];
+        for (int p = 0; p < parts; p++) {
+            double half = (to[p] - from[p]) / 2;
+            double center = (to[p] + from[p]) / 2;
+            for (int i = 0; i < nodes; i++) {
+                site.topocentric(path, (center + half * abscissas[i]) / length, sun);
+                ret.add(weights[i] * half, sun);
+            }
+            ret.sunlitSeconds += to[p] - from[p];
+        }
+
+        double eot = path.at((middle - start) / length).equationOfTime;
+        if (ret.count == 0) {
+            // dark interval, the position at its middle
+            site.topocentric(path, (middle - start) / length, sun);
+            ret.solarPosition = new SolarPosition.Variable(
+                    middle, sun[SolarPositionSpaModel.APPARENT_ELEVATION],
+                    sun[SolarPositionSpaModel.APPARENT_ZENITH], sun[SolarPositionSpaModel.AZIMUTH],
+                    sun[SolarPositionSpaModel.ELEVATION], eot, sun[SolarPositionSpaModel.ZENITH]);
+        } else {
+            ret.finish(middle, eot);
+        }
+        return ret;
+    }
+
+    /* sunrise or sunset between two offsets from the start of the interval */
+    private double crossing(Interpolation path, Site site, double below, double above,
+                            double length) {
+        boolean rising = site.elevation(path, below / length) <= horizon;
+        double lo = rising ? below : above;
+        double hi = rising ? above : below;
+        // lo is down, hi is up
+        while (Math.abs(hi - lo) > CROSSING_TOLERANCE) {
+            double mid = (lo + hi) / 2;
+            if (site.elevation(path, mid / length) > horizon)
+                hi = mid;
+            else
+                lo = mid;
+        }
+        return (lo + hi) / 2;
+    }
+
+    /**
+     * Time terms linear between the ends of the interval. The sidereal time only goes forward
+     * and the right ascension wraps around 360 degree.
+     */
+    private static final class Interpolation {
+        private final SpaTimeTerms first;
+        private final double siderealAdvance;
+        private final double rightAscensionAdvance;
+        private final double declinationAdvance;
+        private final double parallaxAdvance;
+        private final double equationOfTimeAdvance;
+        private final SpaTimeTerms terms = new SpaTimeTerms();
+
+        Interpolation(SpaTimeTerms first, SpaTimeTerms last) {
+            this.first = first;
+            double v = (last.apparentSiderealTime - first.apparentSiderealTime) % 360;
+            this.siderealAdvance = (v < 0) ? v + 360 : v;
+            double alpha = (last.rightAscension - first.rightAscension) % 360;
+            this.rightAscensionAdvance = (alpha > 180) ? alpha - 360
+                                       : (alpha < -180) ? alpha + 360 : alpha;
+            this.declinationAdvance = last.declination - first.declination;
+            this.parallaxAdvance = last.equatorialHorizontalParallax
+                                 - first.equatorialHorizontalParallax;
+            this.equationOfTimeAdvance = last.equationOfTime - first.equationOfTime;
+            terms.deltaT = first.deltaT;
+        }
+
+        /* terms at a fraction of the interval, the instance is reused */
+        SpaTimeTerms at(double fraction) {
+            terms.apparentSiderealTime = first.apparentSiderealTime + fraction * siderealAdvance;
+            terms.rightAscension = first.rightAscension + fraction * rightAscensionAdvance;
+            terms.declination = first.declination + fraction * declinationAdvance;
+            terms.equatorialHorizontalParallax = first.equatorialHorizontalParallax
+                                               + fraction * parallaxAdvance;
+            terms.equationOfTime = first.equationOfTime + fraction * equationOfTimeAdvance;
+            return terms;
+        }
+    }
+
+    /**
+     * Site constants, by the same rules as {@link SolarPositionSpaModel}: without an altitude
+     * the location takes the one of the given pressure.
+     */
+    private final class Site {
+        final double latitude;
+        final double longitude;
+        final double xterm;
+        final double yterm;
+        final double refractionScale;
+        final double atmosRefract;
+
+        Site(Location location, Double pressure, Double tempAir, double atmosRefract) {
+            this.latitude = location.latitude;
+            this.longitude = location.longitude;
+            this.atmosRefract = atmosRefract;
+            double temperature = (tempAir == null) ? Consts.DEFAULT_TEMPERATURE : tempAir;
+            if (location.altitude == null && pressure != null) {
+                double u = spa.uterm(latitude);
+                double elev = Atmosphere.pres2alt(pressure);
+                this.xterm = spa.xterm(u, latitude, elev);
+                this.yterm = spa.yterm(u, latitude, elev);
+                this.refractionScale = Atmosphere.refractionScale(pressure, temperature);
+            } else {
+                PreparedLocation site = location.prepare();
+                this.xterm = site.xterm;
+                this.yterm = site.yterm;
+                this.refractionScale = (pressure == null && tempAir == null)
+                        ? site.refractionScale
+                        : Atmosphere.refractionScale((pressure == null) ? site.pressure
+                                                                        : pressure,
+                                                     temperature);
+            }
+        }
+
+        void topocentric(Interpolation path, double fraction, double[] ret) {
+            spa.topocentric(path.at(fraction), latitude, longitude, xterm, yterm,
+                            refractionScale, atmosRefract, ret);
+        }
+
+        double elevation(Interpolation path, double fraction) {
+            double[] ret = new double[SolarPositionSpaModel.TOPOCENTRIC_LENGTH];
+            topocentric(path, fraction, ret);
+            return ret[SolarPositionSpaModel.APPARENT_ELEVATION];
+        }
+    }
+
+    /**
+     * Effective solar position over an interval, with the sun directions of the nodes to
+     * project on surfaces.
+     */
+    public static class Variable {
+        private final long start;
+        private final long end;
+        private double sunlitSeconds;
+        private SolarPosition.Variable solarPosition;
+
+        /* unit vectors of the apparent sun directions and their weights in seconds */
+        private final double[] east;
+        private final double[] north;
+        private final double[] up;
+        private final double[] weight;
+        /* mean of the true sun direction */
+        private double trueEast, trueNorth, trueUp;
+        private int count;
+
+        Variable(long start, long end, int capacity) {
+            this.start = start;
+            this.end = end;
+            this.east = new double[capacity];
+            this.north = new double[capacity];
+            this.up = new double[capacity];
+            this.weight = new double[capacity];
+        }
+
+        void add(double seconds, double[] sun) {
+            double zenith = Math.toRadians(sun[SolarPositionSpaModel.APPARENT_ZENITH]);
+            double azimuth = Math.toRadians(sun[SolarPositionSpaModel.AZIMUTH]);
+            east[count] = Math.sin(zenith) * Math.sin(azimuth);
+            north[count] = Math.sin(zenith) * Math.cos(azimuth);
+            up[count] = Math.cos(zenith);
+            weight[count++] = seconds;
+
+            double trueZenith = Math.toRadians(sun[SolarPositionSpaModel.ZENITH]);
+            trueEast += seconds * Math.sin(trueZenith) * Math.sin(azimuth);
+            trueNorth += seconds * Math.sin(trueZenith) * Math.cos(azimuth);
+            trueUp += seconds * Math.cos(trueZenith);
+        }
+
+        void finish(long middle, double equationOfTime) {
+            // weights become fractions of the sunlit part
+            double e = 0, n = 0, u = 0;
+            for (int i = 0; i < count; i++) {
+                weight[i] /= sunlitSeconds;
+                e += weight[i] * east[i];
+                n += weight[i] * north[i];
+                u += weight[i] * up[i];
+            }
+            double apparentZenith = Math.toDegrees(Math.atan2(Math.hypot(e, n), u));
+            double zenith = Math.toDegrees(Math.atan2(Math.hypot(trueEast, trueNorth), trueUp));
+            double azimuth = Math.toDegrees(Math.atan2(e, n));
+            if (azimuth < 0)
+                azimuth += 360;
+            this.solarPosition = new SolarPosition.Variable(middle, 90 - apparentZenith,
+                                                            apparentZenith, azimuth, 90 - zenith,
+                                                            equationOfTime, zenith);
+        }
+
+        public long getStart() { return start; }
+        public long getEnd() { return end; }
+        public double getSunlitSeconds() { return sunlitSeconds; }
+        public double getSunlitFraction() { return sunlitSeconds / (end - start); }
+
+        /**
+         * @return true when the sun stays below the horizon during the whole interval
+         */
+        public boolean isDark() {
+            return count == 0;
+        }
+
+        /**
+         * @return mean sun direction over the sunlit part, or the position at the middle of the
+         *         interval when it is dark
+         */
+        public SolarPosition.Variable getSolarPosition() {
+            return solarPosition;
+        }
+
+        /**
+         * Mean over the sunlit part of the cosine of the angle of incidence, 0 while the sun
+         * is behind the surface.
+         * @param surfaceTilt surface tilt in degree
+         * @param surfaceAzimuth surface azimuth in degree
+         * @return effective projection, 0 when the interval is dark
+         */
+        public double projection(double surfaceTilt, double surfaceAzimuth) {
+            double tilt = Math.toRadians(surfaceTilt);
+            double azimuth = Math.toRadians(surfaceAzimuth);
+            double ne = Math.sin(tilt) * Math.sin(azimuth);
+            double nn = Math.sin(tilt) * Math.cos(azimuth);
+            double nu = Math.cos(tilt);
+            double sum = 0;
+            for (int i = 0; i < count; i++)
+                sum += weight[i] * Math.max(ne * east[i] + nn * north[i] + nu * up[i], 0.0);
+            return sum;
+        }
+
+        /**
+         * @param surfaceTilt surface tilt in degree
+         * @param surfaceAzimuth surface azimuth in degree
+         * @return angle of incidence of the effective projection in degree
+         */
+        public double aoi(double surfaceTilt, double surfaceAzimuth) {
+            return Math.toDegrees(Math.acos(projection(surfaceTilt, surfaceAzimuth)));
+        }
+    }
+}
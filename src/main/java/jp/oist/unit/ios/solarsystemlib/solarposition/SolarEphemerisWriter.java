@@ -0,0 +1,172 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+
+/**
+ * Precomputes the location independent SPA quantities into a binary ephemeris file
+ * read by {@link SolarPositionEphemerisModel}.
+ *
+ * <p>The file holds one segment per UT day. Each segment has the deltaT used for the day
+ * and Chebyshev coefficients of right ascension, declination, apparent sidereal time,
+ * equation of time and earth radius vector over the day. Layout (big endian):</p>
+ * <pre>
+ * int    magic            'SPAE'
+ * int    version          1
+ * long   startEpochSecond first segment start, 0h UT
+ * int    segmentSeconds   86400
+ * int    segmentCount
+ * int    degree           degree of the Chebyshev series
+ * int    quantities       5
+ * segmentCount * { double deltaT, double[quantities][degree + 1] coefficients }
+ * </pre>
+ *
+ * usage: {@code SolarEphemerisWriter <file> [startYear=1900] [endYear=2100] [degree=5]}
+ */
+public class SolarEphemerisWriter {
+
+    static final int MAGIC = 0x53504145;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int SEGMENT_SECONDS = 86400;
+
+    /* quantities of a segment */
+    static final int RIGHT_ASCENSION = 0;
+    static final int DECLINATION = 1;
+    static final int SIDEREAL_TIME = 2;
+    static final int EQUATION_OF_TIME = 3;
+    static final int RADIUS_VECTOR = 4;
+    static final int QUANTITIES = 5;
+
+    public static final int DEFAULT_DEGREE = 5;
+
+    private final SolarPositionSpaModel spa;
+
+    public SolarEphemerisWriter(SolarPositionSpaModel spa) {
+        this.spa = spa;
+    }
+
+    /**
+     * Writes the ephemeris of whole years.
+     * @param file output file
+     * @param startYear first year
+     * @param endYear last year, inclusive
+     * @param degree degree of the Chebyshev series per day
+     */
+    public void write(Path file, int startYear, int endYear, int degree) throws IOException {
+        LocalDate start = LocalDate.of(startYear, 1, 1);
+        LocalDate end = LocalDate.of(endYear + 1, 1, 1);
+        long startEpochSecond = start.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        int segments = (int)(end.toEpochDay() - start.toEpochDay());
+        write(file, startEpochSecond, segments, degree);
+    }
+
+    /**
+     * Writes the ephemeris of consecutive days.
+     * @param file output file
+     * @param startEpochSecond start of the first day, must be 0h UT
+     * @param segments number of days
+     * @param degree degree of the Chebyshev series per day
+     */
+    public void write(Path file, long startEpochSecond, int segments, int degree)
+            throws IOException {
+        if (Math.floorMod(startEpochSecond, SEGMENT_SECONDS) != 0)
+            throw new IllegalArgumentException("startEpochSecond must be 0h UT");
+        if (degree < 3)
+            throw new IllegalArgumentException("degree must be 3 or more");
+
+        try (OutputStream os = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(startEpochSecond);
+            out.writeInt(SEGMENT_SECONDS);
+            out.writeInt(segments);
+            out.writeInt(degree);
+            out.writeInt(QUANTITIES);
+
+            int n = degree + 1;
+            double[][] values = new double[QUANTITIES][n];
+            double[] coefficients = new double[n];
+            SpaTimeTerms terms = new SpaTimeTerms();
+            for (int i = 0; i < segments; i++) {
+                long segmentStart = startEpochSecond + (long)i * SEGMENT_SECONDS;
+                ZonedDateTime day = ZonedDateTime.ofInstant(
+                        Instant.ofEpochSecond(segmentStart), ZoneOffset.UTC);
+                double deltaT = spa.calculateDeltaT(day.getYear(), day.getMonthValue());
+
+                // Chebyshev nodes in ascending time order
+                for (int k = 0; k < n; k++) {
+                    double x = -Math.cos(Math.PI * (k + 0.5) / n);
+                    double t = segmentStart + (x + 1) * 0.5 * SEGMENT_SECONDS;
+                    spa.timeTerms(t, deltaT, terms);
+                    values[RIGHT_ASCENSION][k] = terms.rightAscension;
+                    values[DECLINATION][k] = terms.declination;
+                    values[SIDEREAL_TIME][k] = terms.apparentSiderealTime;
+                    values[EQUATION_OF_TIME][k] = terms.equationOfTime;
+                    values[RADIUS_VECTOR][k] = terms.earthRadiusVector;
+                }
+                unwrap(values[RIGHT_ASCENSION]);
+                unwrap(values[SIDEREAL_TIME]);
+
+                out.writeDouble(deltaT);
+                for (int q = 0; q < QUANTITIES; q++) {
+                    fit(values[q], coefficients);
+                    for (int j = 0; j < n; j++)
+                        out.writeDouble(coefficients[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the 360 degree jumps between consecutive nodes.
+     */
+    private static void unwrap(double[] angles) {
+        for (int k = 1; k < angles.length; k++) {
+            double d = angles[k] - angles[k - 1];
+            angles[k] -= 360.0 * Math.round(d / 360.0);
+        }
+    }
+
+    /**
+     * Chebyshev coefficients from values on the nodes -cos(pi (k + 0.5) / n).
+     */
+    private static void fit(double[] values, double[] coefficients) {
+        int n = values.length;
+        for (int j = 0; j < n; j++) {
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                // T_j(-x) = (-1)^j T_j(x)
+                double tj = Math.cos(j * Math.PI * (k + 0.5) / n);
+                sum += values[k] * ((j % 2 == 0) ? tj : -tj);
+            }
+            coefficients[j] = sum * 2.0 / n;
+        }
+        coefficients[0] *= 0.5;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1)
+            throw new IllegalArgumentException("usage: SolarEphemerisWriter <file> [startYear]"
+                                               + " [endYear] [degree]");
+        int startYear = (args.length > 1) ? Integer.parseInt(args[1]) : 1900;
+        int endYear = (args.length > 2) ? Integer.parseInt(args[2]) : 2100;
+        int degree = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_DEGREE;
+
+        SolarPositionSpaModel spa = new SolarPositionSpaModel(new DefaultModelCollection());
+        new SolarEphemerisWriter(spa).write(Paths.get(args[0]), startYear, endYear, degree);
+    }
+}
@@ -1,5 +1,7 @@
 /* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
 package jp.oist.unit.ios.solarsystemlib.solarposition;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -13,6 +15,7 @@ import jp.oist.unit.ios.solarsystemlib.common.Consts;
 public class SolarPosition {
 
     public static class Variable {
+        private final long epochSecond;
         private ZonedDateTime dateTime;
         private double apparentElevation;
         private double apparentZenith;
@@ -31,6 +34,7 @@ public class SolarPosition {
         public Variable(ZonedDateTime dateTime, double apparentElevation, double apparentZenith,
                         double azimuth, double elevation, double equationOfTime, double zenith,
                         Location location) {
+            this.epochSecond = dateTime.toEpochSecond();
             this.dateTime = dateTime;
             this.apparentElevation = apparentElevation;
             this.apparentZenith = apparentZenith;
@@ -41,7 +45,37 @@ public class SolarPosition {
             this.location = location;
         }
 
-        public ZonedDateTime getDateTime() { return dateTime; }
+        /**
+         * Solar position of an instant given by unix epoch seconds. The date-time is created
+         * in UTC on first use.
+         */
+        public Variable(long epochSecond, double apparentElevation, double apparentZenith,
+                        double azimuth, double elevation, double equationOfTime, double zenith) {
+            this.epochSecond = epochSecond;
+            this.dateTime = null;
+            this.apparentElevation = apparentElevation;
+            this.apparentZenith = apparentZenith;
+            this.azimuth = azimuth;
+            this.elevation = elevation;
+            this.equationOfTime = equationOfTime;
+            this.zenith = zenith;
+        }
+
+        public long getEpochSecond() { return epochSecond; }
+        public ZonedDateTime getDateTime() {
+            if (dateTime == null)
+                dateTime = ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond),
+                                                   ZoneOffset.UTC);
+            return dateTime;
+        }
+        /**
+         * @return day of year of the date-time, or of the UTC date when created from epoch seconds
+         */
+        public int getDayOfYear() {
+            if (dateTime != null)
+                return dateTime.getDayOfYear();
+            return DayContext.ofEpochSecond(epochSecond).getDayOfYear();
+        }
         public double getApparentElevation() { return apparentElevation; }
         public double getApparentZenith() { return apparentZenith; }
         public double getAzimuth() { return azimuth; }
@@ -61,7 +95,7 @@ public class SolarPosition {
                 + "\tequation_of_time : %.6f,\n"
                 + "\tzenith : %.6f\n"
                 + "}",
-                dateTime.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
+                getDateTime().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME),
                 apparentElevation,
                 apparentZenith,
                 azimuth,
@@ -108,7 +142,7 @@ public class SolarPosition {
     public Irradiance.Variable getClearSky(SolarPosition.Variable var, double pressure) {
         Irradiance irradiance = factory.irradiance();
 
-        int doy = var.dateTime.getDayOfYear();
+        int doy = var.getDayOfYear();
         double dniExtra = irradiance.extraRadiation(doy);
 
         Irradiance.Variable irradVars = null;
@@ -144,4 +178,25 @@ public class SolarPosition {
         SolarPositionModel model = factory.getSolarPositionModel();
         return model.estimate(dt, loc, pressure, tempAir, atmosRefract, deltaT, loc);
     }
+
+    /**
+     * @param epochSecond unix epoch seconds
+     * @param loc location of place
+     * @return
+     */
+    public SolarPosition.Variable estimate(long epochSecond, Location loc) {
+        return estimate(epochSecond, loc, null, null, null, null);
+    }
+
+    public SolarPosition.Variable estimate(long epochSecond, Location loc,
+                                           Double pressure, Double tempAir) {
+        return estimate(epochSecond, loc, pressure, tempAir, null, 67.0);
+    }
+
+    public SolarPosition.Variable estimate(long epochSecond, Location loc,
+                                           Double pressure, Double tempAir,
+                                           Double atmosRefract, Double deltaT) {
+        SolarPositionModel model = factory.getSolarPositionModel();
+        return model.estimate(epochSecond, loc, pressure, tempAir, atmosRefract, deltaT, loc);
+    }
 }
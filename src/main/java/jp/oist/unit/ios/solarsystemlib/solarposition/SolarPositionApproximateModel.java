@@ -0,0 +1,121 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+
+/**
+ * Base of the low precision solar position algorithms.
+ * Subclasses only approximate the location independent terms (right ascension, declination,
+ * sidereal time, equation of time); parallax, refraction and azimuth are computed by the
+ * topocentric steps of {@link SolarPositionSpaModel}, so pressure and temperature are handled
+ * the same way for every model. That stage is shared, so a whole estimate is about ten times
+ * cheaper than SPA.
+ *
+ * <p>Select one by overriding {@code getSolarPositionModel()} of
+ * {@link jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection}.</p>
+ */
+public abstract class SolarPositionApproximateModel extends SolarPositionModel {
+
+    protected final SolarPositionSpaModel spa;
+
+    public SolarPositionApproximateModel(ModelCollection factory) {
+        super(factory);
+        this.spa = new SolarPositionSpaModel(factory);
+    }
+
+    /**
+     * Estimates solar postion
+     * @param dt target date-time
+     * @param location location of target place
+     * @param pressure  air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param vars extra variable for model calculation (Double atmosRefract, Double deltaT)
+     * @return variable instance for solar position
+     */
+    @Override
+    public SolarPosition.Variable estimate(ZonedDateTime dt, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        Double atmosRefract = 0.5667;
+        Double deltaT = null;
+
+        if (vars.length > 0 && vars[0] != null)
+            atmosRefract = (Double)vars[0];
+
+        if (vars.length > 1 && vars[1] != null)
+            deltaT = (Double)vars[1];
+
+        if (deltaT == null)
+            deltaT = DayContext.of(dt).getDeltaT();
+
+        SpaTimeTerms terms = timeTerms(dt.toEpochSecond(), deltaT, new SpaTimeTerms());
+        return spa.estimate(dt, terms, location, pressure, tempAir, atmosRefract);
+    }
+
+    @Override
+    public SolarPosition.Variable estimate(long epochSecond, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        Double atmosRefract = 0.5667;
+        Double deltaT = null;
+
+        if (vars.length > 0 && vars[0] != null)
+            atmosRefract = (Double)vars[0];
+
+        if (vars.length > 1 && vars[1] != null)
+            deltaT = (Double)vars[1];
+
+        if (deltaT == null)
+            deltaT = DayContext.ofEpochSecond(epochSecond).getDeltaT();
+
+        SpaTimeTerms terms = timeTerms(epochSecond, deltaT, new SpaTimeTerms());
+        return spa.estimate(null, terms, location, pressure, tempAir, atmosRefract);
+    }
+
+    /**
+     * Approximates the location independent terms. Terms the algorithm does not compute are
+     * left NaN.
+     * @param epochSecond target time in unix epoch seconds
+     * @param deltaT difference between terrestrial time and UT1 in second
+     * @param terms instance to be filled
+     * @return given instance
+     */
+    public abstract SpaTimeTerms timeTerms(long epochSecond, double deltaT, SpaTimeTerms terms);
+
+    /**
+     * Fills the time terms from angles in radian.
+     * @param meanLongitude mean longitude of the sun, for the equation of time
+     * @param radiusVector earth radius vector in AU
+     */
+    protected static SpaTimeTerms fill(SpaTimeTerms terms, long epochSecond, double deltaT,
+                                       double rightAscension, double declination,
+                                       double siderealTime, double meanLongitude,
+                                       double obliquity, double radiusVector) {
+        double jd = epochSecond / 86400.0 + 2440587.5;
+        double alpha = normalize(Math.toDegrees(rightAscension));
+
+        // same limits as the equation of time of SPA
+        double e = ((Math.toDegrees(meanLongitude) - 0.0057183 - alpha) % 360) * 4;
+        e = (e > 20) ? (e - 1440) : ((e < -20) ? (e + 1440) : e);
+
+        terms.epochSecond = epochSecond;
+        terms.deltaT = deltaT;
+        terms.julianDay = jd;
+        terms.julianEphemerisMillennium = (jd + deltaT / 86400 - 2451545) / 365250.0;
+        terms.earthRadiusVector = radiusVector;
+        terms.longitudeNutation = Double.NaN;
+        terms.trueEclipticObliquity = Math.toDegrees(obliquity);
+        terms.apparentSiderealTime = normalize(Math.toDegrees(siderealTime));
+        terms.rightAscension = alpha;
+        terms.declination = Math.toDegrees(declination);
+        terms.equationOfTime = e;
+        terms.equatorialHorizontalParallax = 8.794 / (3600 * radiusVector);
+        return terms;
+    }
+
+    private static double normalize(double degrees) {
+        double d = degrees % 360.0;
+        return (d < 0) ? d + 360.0 : d;
+    }
+}
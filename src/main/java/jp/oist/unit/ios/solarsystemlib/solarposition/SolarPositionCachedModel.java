@@ -0,0 +1,207 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.TinyLfuCache;
+
+/**
+ * Solar position model caching the results of another model, to be shared by the threads
+ * answering overlapping requests for the same places and times.
+ *
+ * <p>Results are keyed by the coordinates of the location, the epoch second, the air-pressure
+ * and air-temperature buckets and the first two extra variables, atmosRefract and deltaT of SPA
+ * like models; the location which {@link SolarPosition} passes after them is already keyed by
+ * its coordinates. The model is called with the center of the buckets, {@value #PRESSURE_STEP}
+ * Pa and {@value #TEMPERATURE_STEP} degC wide, so a result does not depend on which request
+ * filled the cache; the refraction differs from the exact one by less than 0.001 degree.
+ * Entries hold the angles only and the variable is rebuilt for each request. See
+ * {@link TinyLfuCache} for the eviction policy.</p>
+ *
+ * <p>Install it as the solar position model of a model collection to share it through
+ * {@link SolarPosition} and the rest of the model stack.</p>
+ */
+public class SolarPositionCachedModel extends SolarPositionModel {
+
+    public static final double PRESSURE_STEP = 100.0;
+    public static final double TEMPERATURE_STEP = 1.0;
+
+    private static final int NO_BUCKET = Integer.MIN_VALUE;
+
+    private final SolarPositionModel model;
+    private final TinyLfuCache<Key, Entry> cache;
+
+    /**
+     * @param factory model collection
+     * @param model model computing the results
+     * @param maximumSize maximum number of results kept
+     */
+    public SolarPositionCachedModel(ModelCollection factory, SolarPositionModel model,
+                                    int maximumSize) {
+        super(factory);
+        if (model == null)
+            throw new IllegalArgumentException("\"model\" must not be null");
+        this.model = model;
+        this.cache = new TinyLfuCache<>(maximumSize);
+    }
+
+    public SolarPositionModel getModel() {
+        return model;
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Estimates solar postion
+     * @param dt target date-time
+     * @param location location of target place
+     * @param pressure  air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param vars extra variable of the cached model
+     * @return variable instance for solar position
+     */
+    @Override
+    public SolarPosition.Variable estimate(ZonedDateTime dt, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        Key key = new Key(dt.toEpochSecond(), location, pressure, tempAir, vars);
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            SolarPosition.Variable sp = model.estimate(dt, location, key.pressure(),
+                                                       key.tempAir(), vars);
+            entry = new Entry(sp);
+            cache.put(key, entry);
+        }
+        return new SolarPosition.Variable(dt, entry.apparentElevation, entry.apparentZenith,
+                                          entry.azimuth, entry.elevation, entry.equationOfTime,
+                                          entry.zenith);
+    }
+
+    @Override
+    public SolarPosition.Variable estimate(long epochSecond, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        Key key = new Key(epochSecond, location, pressure, tempAir, vars);
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            SolarPosition.Variable sp = model.estimate(epochSecond, location, key.pressure(),
+                                                       key.tempAir(), vars);
+            entry = new Entry(sp);
+            cache.put(key, entry);
+        }
+        return new SolarPosition.Variable(epochSecond, entry.apparentElevation,
+                                          entry.apparentZenith, entry.azimuth, entry.elevation,
+                                          entry.equationOfTime, entry.zenith);
+    }
+
+    private static int bucket(Double value, double step) {
+        return (value == null) ? NO_BUCKET : (int)Math.round(value / step);
+    }
+
+    private static long bits(Object value) {
+        if (value == null)
+            return 0x7ff8dead0000L;
+        if (!(value instanceof Number))
+            throw new IllegalArgumentException("extra variables must be numbers: " + value);
+        return Double.doubleToLongBits(((Number)value).doubleValue());
+    }
+
+    private static final class Key {
+        final long epochSecond;
+        final long latitude;
+        final long longitude;
+        final long altitude;
+        final int pressureBucket;
+        final int temperatureBucket;
+        /* atmosRefract and deltaT of SPA like models */
+        final long var0;
+        final long var1;
+        final int length;
+        final int hash;
+
+        Key(long epochSecond, Location location, Double pressure, Double tempAir,
+            Object[] vars) {
+            for (int i = 2; i < vars.length; i++) {
+                if (vars[i] != null && !(vars[i] instanceof Location))
+                    throw new IllegalArgumentException("only 2 extra variables and the location"
+                                                       + " can be cached");
+            }
+            this.epochSecond = epochSecond;
+            this.latitude = Double.doubleToLongBits(location.latitude);
+            this.longitude = Double.doubleToLongBits(location.longitude);
+            this.altitude = bits(location.altitude);
+            this.pressureBucket = bucket(pressure, PRESSURE_STEP);
+            this.temperatureBucket = bucket(tempAir, TEMPERATURE_STEP);
+            this.var0 = (vars.length > 0) ? bits(vars[0]) : 0;
+            this.var1 = (vars.length > 1) ? bits(vars[1]) : 0;
+            this.length = Math.min(vars.length, 2);
+
+            long h = epochSecond;
+            h = h * 31 + latitude;
+            h = h * 31 + longitude;
+            h = h * 31 + altitude;
+            h = h * 31 + pressureBucket;
+            h = h * 31 + temperatureBucket;
+            h = h * 31 + var0;
+            h = h * 31 + var1;
+            this.hash = (int)(h ^ (h >>> 32));
+        }
+
+        Double pressure() {
+            return (pressureBucket == NO_BUCKET) ? null : pressureBucket * PRESSURE_STEP;
+        }
+
+        Double tempAir() {
+            return (temperatureBucket == NO_BUCKET) ? null : temperatureBucket * TEMPERATURE_STEP;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key)o;
+            return epochSecond == k.epochSecond && latitude == k.latitude
+                    && longitude == k.longitude && altitude == k.altitude
+                    && pressureBucket == k.pressureBucket
+                    && temperatureBucket == k.temperatureBucket
+                    && var0 == k.var0 && var1 == k.var1 && length == k.length;
+        }
+    }
+
+    private static final class Entry {
+        final double apparentElevation;
+        final double apparentZenith;
+        final double azimuth;
+        final double elevation;
+        final double equationOfTime;
+        final double zenith;
+
+        Entry(SolarPosition.Variable sp) {
+            this.apparentElevation = sp.getApparentElevation();
+            this.apparentZenith = sp.getApparentZenith();
+            this.azimuth = sp.getAzimuth();
+            this.elevation = sp.getElevation();
+            this.equationOfTime = sp.getEquationOfTime();
+            this.zenith = sp.getZenith();
+        }
+    }
+}
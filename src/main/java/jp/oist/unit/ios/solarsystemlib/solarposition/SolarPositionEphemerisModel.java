@@ -0,0 +1,215 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+
+/**
+ * Solar position model reading the location independent SPA quantities from a memory-mapped
+ * ephemeris file written by {@link SolarEphemerisWriter}.
+ *
+ * <p>Right ascension, declination, apparent sidereal time, equation of time and earth radius
+ * vector are evaluated from daily Chebyshev series, and the location dependent steps are the
+ * ones of {@link SolarPositionSpaModel}. The table is built with the deltaT of SPA for each day;
+ * a different deltaT is applied by shifting the ephemeris time. Timestamps outside the table
+ * are computed by SPA.</p>
+ *
+ * <p>With the default degree of the writer the apparent sidereal time stays within 3e-7 degree
+ * of SPA and the other quantities within 1e-9 degree, far below the uncertainty of SPA
+ * itself.</p>
+ */
+public class SolarPositionEphemerisModel extends SolarPositionModel {
+
+    private final SolarPositionSpaModel spa;
+    private final ByteBuffer table;
+
+    private final long startEpochSecond;
+    private final int segmentSeconds;
+    private final int segmentCount;
+    private final int coefficientCount;
+    private final int segmentBytes;
+
+    /**
+     * Maps an ephemeris file.
+     * @param factory model collection
+     * @param file ephemeris file written by {@link SolarEphemerisWriter}
+     * @throws IOException if the file can not be mapped
+     */
+    public SolarPositionEphemerisModel(ModelCollection factory, Path file) throws IOException {
+        super(factory);
+        this.spa = new SolarPositionSpaModel(factory);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("ephemeris file is too large: " + file);
+            this.table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (table.capacity() < SolarEphemerisWriter.HEADER_BYTES
+                || table.getInt(0) != SolarEphemerisWriter.MAGIC)
+            throw new IllegalArgumentException("not an ephemeris file: " + file);
+        if (table.getInt(4) != SolarEphemerisWriter.VERSION)
+            throw new IllegalArgumentException("unsupported ephemeris version: " + table.getInt(4));
+
+        this.startEpochSecond = table.getLong(8);
+        this.segmentSeconds = table.getInt(16);
+        this.segmentCount = table.getInt(20);
+        this.coefficientCount = table.getInt(24) + 1;
+        int quantities = table.getInt(28);
+        if (quantities != SolarEphemerisWriter.QUANTITIES)
+            throw new IllegalArgumentException("unsupported ephemeris quantities: " + quantities);
+
+        this.segmentBytes = 8 * (1 + quantities * coefficientCount);
+        long expected = SolarEphemerisWriter.HEADER_BYTES + (long)segmentBytes * segmentCount;
+        if (table.capacity() != expected)
+            throw new IllegalArgumentException("truncated ephemeris file: " + file);
+    }
+
+    public long getStartEpochSecond() {
+        return startEpochSecond;
+    }
+
+    public long getEndEpochSecond() {
+        return startEpochSecond + (long)segmentSeconds * segmentCount;
+    }
+
+    /**
+     * Estimates solar postion
+     * @param dt target date-time
+     * @param location location of target place
+     * @param pressure  air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param vars extra variable for model calculation (Double atmosRefract, Double deltaT)
+     * @return variable instance for solar position
+     */
+    @Override
+    public SolarPosition.Variable estimate(ZonedDateTime dt, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        Double atmosRefract = 0.5667;
+        Double deltaT = null;
+
+        if (vars.length > 0 && vars[0] != null)
+            atmosRefract = (Double)vars[0];
+
+        if (vars.length > 1 && vars[1] != null)
+            deltaT = (Double)vars[1];
+
+        SpaTimeTerms terms = timeTerms(dt.toEpochSecond(), deltaT, new SpaTimeTerms());
+        return spa.estimate(dt, terms, location, pressure, tempAir, atmosRefract);
+    }
+
+    @Override
+    public SolarPosition.Variable estimate(long epochSecond, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        Double atmosRefract = 0.5667;
+        Double deltaT = null;
+
+        if (vars.length > 0 && vars[0] != null)
+            atmosRefract = (Double)vars[0];
+
+        if (vars.length > 1 && vars[1] != null)
+            deltaT = (Double)vars[1];
+
+        SpaTimeTerms terms = timeTerms(epochSecond, deltaT, new SpaTimeTerms());
+        return spa.estimate(null, terms, location, pressure, tempAir, atmosRefract);
+    }
+
+    /**
+     * Fills the time terms used by the topocentric steps of SPA. Nutation and ecliptic
+     * obliquity are not stored in the ephemeris and are left NaN.
+     * @param epochSecond target time in unix epoch seconds
+     * @param deltaT difference between terrestrial time and UT1 in second, or null for the
+     *               deltaT of the table
+     * @param terms instance to be filled
+     * @return given instance
+     */
+    public SpaTimeTerms timeTerms(long epochSecond, Double deltaT, SpaTimeTerms terms) {
+        long segment = Math.floorDiv(epochSecond - startEpochSecond, (long)segmentSeconds);
+        if (segment < 0 || segment >= segmentCount) {
+            if (deltaT == null)
+                deltaT = DayContext.ofEpochSecond(epochSecond).getDeltaT();
+            return spa.timeTerms(epochSecond, deltaT, terms);
+        }
+
+        int base = segmentOffset((int)segment);
+        double tableDeltaT = table.getDouble(base);
+        if (deltaT == null)
+            deltaT = tableDeltaT;
+
+        // sidereal time runs on UT, the other quantities on the ephemeris time
+        double x = normalizedTime((int)segment, epochSecond);
+        double v = evaluate(base, SolarEphemerisWriter.SIDEREAL_TIME, x);
+
+        double shift = deltaT - tableDeltaT;
+        double te = epochSecond + shift;
+        long ephemerisSegment = Math.floorDiv((long)Math.floor(te) - startEpochSecond,
+                                              (long)segmentSeconds);
+        if (ephemerisSegment != segment && ephemerisSegment >= 0
+                && ephemerisSegment < segmentCount) {
+            base = segmentOffset((int)ephemerisSegment);
+            // keep the same ephemeris time in the neighbour day
+            te += tableDeltaT - table.getDouble(base);
+            segment = ephemerisSegment;
+        }
+        double xe = normalizedTime((int)segment, te);
+        double alpha = evaluate(base, SolarEphemerisWriter.RIGHT_ASCENSION, xe);
+        double delta = evaluate(base, SolarEphemerisWriter.DECLINATION, xe);
+        double eot = evaluate(base, SolarEphemerisWriter.EQUATION_OF_TIME, xe);
+        double r = evaluate(base, SolarEphemerisWriter.RADIUS_VECTOR, xe);
+
+        double jd = epochSecond / 86400.0 + 2440587.5;
+        terms.epochSecond = epochSecond;
+        terms.deltaT = deltaT;
+        terms.julianDay = jd;
+        terms.julianEphemerisMillennium = (jd + deltaT / 86400 - 2451545) / 365250.0;
+        terms.earthRadiusVector = r;
+        terms.longitudeNutation = Double.NaN;
+        terms.trueEclipticObliquity = Double.NaN;
+        terms.apparentSiderealTime = normalize(v);
+        terms.rightAscension = normalize(alpha);
+        terms.declination = delta;
+        terms.equationOfTime = eot;
+        terms.equatorialHorizontalParallax = 8.794 / (3600 * r);
+        return terms;
+    }
+
+    private int segmentOffset(int segment) {
+        return SolarEphemerisWriter.HEADER_BYTES + segment * segmentBytes;
+    }
+
+    /**
+     * Time in the segment scaled into [-1, 1]; slightly outside at the edges is harmless.
+     */
+    private double normalizedTime(int segment, double epochSecond) {
+        double t = epochSecond - (startEpochSecond + (long)segment * segmentSeconds);
+        return 2.0 * t / segmentSeconds - 1.0;
+    }
+
+    /**
+     * Clenshaw evaluation of a Chebyshev series.
+     */
+    private double evaluate(int base, int quantity, double x) {
+        int offset = base + 8 * (1 + quantity * coefficientCount);
+        double b1 = 0;
+        double b2 = 0;
+        double x2 = 2 * x;
+        for (int j = coefficientCount - 1; j >= 1; j--) {
+            double b0 = table.getDouble(offset + 8 * j) + x2 * b1 - b2;
+            b2 = b1;
+            b1 = b0;
+        }
+        return table.getDouble(offset) + x * b1 - b2;
+    }
+
+    private static double normalize(double degrees) {
+        double d = degrees % 360.0;
+        return (d < 0) ? d + 360.0 : d;
+    }
+}
@@ -0,0 +1,86 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+
+/**
+ * Algorithms 1 and 3 of Grena (2012), valid from 2010 to 2110.
+ * <ul>
+ * <li>algorithm 1: harmonic series of right ascension and declination, within 0.19 degree of
+ *     SPA in zenith and azimuth and 0.7 minute in the equation of time; the time terms cost
+ *     about 1/60 of the SPA ones.</li>
+ * <li>algorithm 3: ecliptic longitude with the equation of center, within 0.01 degree of SPA
+ *     in zenith and azimuth and 0.07 minute in the equation of time; the time terms cost about
+ *     1/30 of the SPA ones.</li>
+ * </ul>
+ *
+ * <p>Roberto Grena, "Five new algorithms for the computation of sun position from 2010 to
+ * 2110", Solar Energy 86 (5), 2012.</p>
+ */
+public class SolarPositionGrenaModel extends SolarPositionApproximateModel {
+
+    /* unix epoch day of 2060-01-01, the origin of the algorithms */
+    private static final double EPOCH_DAY_2060 = 32872;
+
+    private final int algorithm;
+
+    public SolarPositionGrenaModel(ModelCollection factory) {
+        this(factory, 3);
+    }
+
+    /**
+     * @param factory model collection
+     * @param algorithm number of the algorithm, 1 or 3
+     */
+    public SolarPositionGrenaModel(ModelCollection factory, int algorithm) {
+        super(factory);
+        if (algorithm != 1 && algorithm != 3)
+            throw new IllegalArgumentException("\"algorithm\" must be 1 or 3");
+        this.algorithm = algorithm;
+    }
+
+    public int getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public SpaTimeTerms timeTerms(long epochSecond, double deltaT, SpaTimeTerms terms) {
+        // days from 2060-01-01 in UT and in terrestrial time
+        double t = epochSecond / 86400.0 - EPOCH_DAY_2060;
+        double te = t + 1.1574e-5 * deltaT;
+
+        double alpha;
+        double delta;
+        double meanLongitude;
+        double obliquity;
+        double siderealTime;
+        if (algorithm == 1) {
+            double wte = 0.017202786 * te;
+            double s1 = Math.sin(wte);
+            double c1 = Math.cos(wte);
+            double s2 = 2 * s1 * c1;
+            double c2 = c1 * c1 - s1 * s1;
+
+            meanLongitude = -1.38880 + 1.72027920e-2 * te;
+            alpha = meanLongitude + 3.199e-2 * s1 - 2.65e-3 * c1 + 4.050e-2 * s2 + 1.525e-2 * c2;
+            delta = 6.57e-3 + 7.347e-2 * s1 - 3.9919e-1 * c1 + 7.3e-4 * s2 - 6.60e-3 * c2;
+            obliquity = 4.089567e-1 - 6.19e-9 * te;
+            siderealTime = 1.75283 + 6.3003881 * t;
+        } else {
+            // the equation of center runs on the anomalistic year
+            double wte = 0.01720197 * te;
+            meanLongitude = -1.388803 + 1.720279216e-2 * te;
+            double eclipticLongitude = meanLongitude + 3.3366e-2 * Math.sin(wte - 0.06172)
+                    + 3.53e-4 * Math.sin(2 * wte - 0.1163);
+            obliquity = 4.089567e-1 - 6.19e-9 * te;
+
+            double sinLongitude = Math.sin(eclipticLongitude);
+            alpha = Math.atan2(sinLongitude * Math.cos(obliquity), Math.cos(eclipticLongitude));
+            delta = Math.asin(Math.sin(obliquity) * sinLongitude);
+            siderealTime = 1.7528311 + 6.300388099 * t;
+        }
+
+        return fill(terms, epochSecond, deltaT, alpha, delta, siderealTime, meanLongitude,
+                    obliquity, 1.0);
+    }
+}
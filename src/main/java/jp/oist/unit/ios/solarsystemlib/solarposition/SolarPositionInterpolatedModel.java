@@ -0,0 +1,418 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.PreparedLocation;
+import jp.oist.unit.ios.solarsystemlib.atomsphere.Atmosphere;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.Consts;
+
+/**
+ * Solar position for high resolution series.
+ * SPA is evaluated exactly on nodes every {@code maxStep} seconds (halved down to
+ * {@code minStep} when needed) and zenith, azimuth and equation of time are interpolated
+ * between them by cubic Hermite (Catmull-Rom) splines.
+ * The interpolation error of each interval is estimated from the third finite difference of
+ * its nodes, so no SPA evaluation is needed besides the nodes.
+ * Intervals whose error exceeds {@code maxError}, which cross the azimuth wrap or which are
+ * close to the horizon where the refraction correction is discontinuous are evaluated exactly.
+ */
+public class SolarPositionInterpolatedModel extends SolarPositionModel {
+
+    public static final double DEFAULT_MAX_ERROR = 0.001;
+    public static final long DEFAULT_MIN_STEP = 600;
+    public static final long DEFAULT_MAX_STEP = 1800;
+    public static final double DEFAULT_HORIZON_GUARD = 1.0;
+
+    /* interpolated quantities */
+    private static final int APPARENT_ZENITH = 0;
+    private static final int ZENITH = 1;
+    private static final int AZIMUTH = 2;
+    private static final int EQUATION_OF_TIME = 3;
+    private static final int QUANTITIES = 4;
+
+    /* equation of time in minutes to degree */
+    private static final double EOT_TO_DEGREE = 0.25;
+    /* safety factor of the error estimate, covers the fourth order term of the splines */
+    private static final double ERROR_MARGIN = 2.0;
+
+    /**
+     * Interpolation interval of one site. Nodes are kept so that the next interval on the
+     * same step only needs one new node.
+     */
+    private static final class Segment {
+        /* key */
+        double lat = Double.NaN, lng, x, y, refractionScale, atmosRefract, deltaT;
+
+        long start, step, preferredStep;
+        boolean exact;
+        boolean valid = false;
+        double error;
+        double[][] coefficients = new double[QUANTITIES][4];
+
+        /* stencil nodes at start - step, start, start + step, start + 2 * step */
+        long nodeStart = Long.MIN_VALUE, nodeStep;
+        double[][] nodes = new double[QUANTITIES][4];
+        double[] nodeElevation = new double[4];
+
+        /* scratch buffers */
+        SpaTimeTerms terms = new SpaTimeTerms();
+        double[] ret = new double[QUANTITIES];
+        double[] topo = new double[SolarPositionSpaModel.TOPOCENTRIC_LENGTH];
+
+        boolean sameSite(double lat, double lng, double x, double y, double refractionScale,
+                         double atmosRefract, double deltaT) {
+            return this.lat == lat && this.lng == lng && this.x == x && this.y == y
+                && this.refractionScale == refractionScale && this.atmosRefract == atmosRefract
+                && this.deltaT == deltaT;
+        }
+    }
+
+    private final SolarPositionSpaModel spa;
+    private final double maxError;
+    private final long minStep;
+    private final long maxStep;
+    private final double horizonGuard;
+
+    private final ThreadLocal<Segment> segments = new ThreadLocal<Segment>() {
+        @Override
+        protected Segment initialValue() {
+            return new Segment();
+        }
+    };
+
+    private double observedError = 0.0;
+    private long interpolatedIntervals = 0;
+    private long exactIntervals = 0;
+
+    public SolarPositionInterpolatedModel(ModelCollection factory) {
+        this(factory, new SolarPositionSpaModel(factory), DEFAULT_MAX_ERROR,
+             DEFAULT_MIN_STEP, DEFAULT_MAX_STEP, DEFAULT_HORIZON_GUARD);
+    }
+
+    public SolarPositionInterpolatedModel(ModelCollection factory, double maxError) {
+        this(factory, new SolarPositionSpaModel(factory), maxError,
+             DEFAULT_MIN_STEP, DEFAULT_MAX_STEP, DEFAULT_HORIZON_GUARD);
+    }
+
+    /**
+     * @param factory model collection
+     * @param spa exact model evaluated on the nodes
+     * @param maxError maximum angular error of interpolated intervals in degree
+     * @param minStep smallest node spacing in seconds
+     * @param maxStep largest node spacing in seconds, tried first
+     * @param horizonGuard nodes closer than this to the refraction band around the horizon
+     *                     disable interpolation, in degree
+     */
+    public SolarPositionInterpolatedModel(ModelCollection factory, SolarPositionSpaModel spa,
+                                          double maxError, long minStep, long maxStep,
+                                          double horizonGuard) {
+        super(factory);
+        if (minStep <= 0 || maxStep < minStep)
+            throw new IllegalArgumentException("node steps must satisfy 0 < minStep <= maxStep");
+        this.spa = spa;
+        this.maxError = maxError;
+        this.minStep = minStep;
+        this.maxStep = maxStep;
+        this.horizonGuard = horizonGuard;
+    }
+
+    /** @return configured maximum angular error in degree */
+    public double getMaxError() { return maxError; }
+
+    /** @return largest estimated error of the intervals interpolated so far, in degree */
+    public synchronized double getObservedError() { return observedError; }
+
+    /** @return number of intervals which were interpolated */
+    public synchronized long getInterpolatedIntervals() { return interpolatedIntervals; }
+
+    /** @return number of intervals which fell back to exact SPA */
+    public synchronized long getExactIntervals() { return exactIntervals; }
+
+    /**
+     * Estimates solar postion
+     * @param dt target date-time
+     * @param location location of target place
+     * @param pressure  air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param vars extra variable for model calculation (Double atmosRefract, Double deltaT)
+     * @return variable instance for solar position
+     */
+    @Override
+    public SolarPosition.Variable estimate(ZonedDateTime dt, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        double atmosRefract = Consts.DEFAULT_ATMOS_REFRACT;
+        double deltaT = DayContext.of(dt).getDeltaT();
+        if (vars.length > 0 && vars[0] != null)
+            atmosRefract = (Double)vars[0];
+        if (vars.length > 1 && vars[1] != null)
+            deltaT = (Double)vars[1];
+
+        double lat = location.latitude;
+        double lng = location.longitude;
+        double x, y, refractionScale;
+        if (location.altitude == null && pressure != null) {
+            double elev = Atmosphere.pres2alt(pressure);
+            double u = spa.uterm(lat);
+            x = spa.xterm(u, lat, elev);
+            y = spa.yterm(u, lat, elev);
+        } else {
+            PreparedLocation site = location.prepare();
+            x = site.xterm;
+            y = site.yterm;
+            if (pressure == null)
+                pressure = site.pressure;
+        }
+        refractionScale = Atmosphere.refractionScale(
+                pressure == null ? Consts.DEFAULT_PRESSURE : pressure,
+                tempAir == null ? Consts.DEFAULT_TEMPERATURE : tempAir);
+
+        Segment seg = segments.get();
+        double[] ret = new double[QUANTITIES];
+        interpolate(seg, dt.toEpochSecond(), lat, lng, x, y, refractionScale, atmosRefract,
+                    deltaT, ret);
+        double apparentZenith = ret[APPARENT_ZENITH];
+        double zenith = ret[ZENITH];
+        return new SolarPosition.Variable(dt, 90 - apparentZenith, apparentZenith, ret[AZIMUTH],
+                                          90 - zenith, ret[EQUATION_OF_TIME], zenith);
+    }
+
+    /**
+     * Estimates solar position for a series of timestamps at one place.
+     * Timestamps are best given in ascending order so that nodes are shared between samples.
+     * A column may be null when the caller does not need it.
+     * @param epochSeconds target times in unix epoch seconds
+     * @param lat latitude of target place
+     * @param lng longitude of target place
+     * @param elev altitude of target place in meter
+     * @param pressure air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @param deltaT difference between terrestrial time and UT1 in second
+     * @param apparentZenith output column for apparent zenith
+     * @param azimuth output column for azimuth
+     * @param apparentElevation output column for apparent elevation
+     * @param equationOfTime output column for equation of time in minutes
+     * @return largest estimated error of the intervals used by this call, in degree
+     */
+    public double estimate(long[] epochSeconds, double lat, double lng, double elev,
+                           double pressure, double tempAir, double atmosRefract, double deltaT,
+                           double[] apparentZenith, double[] azimuth,
+                           double[] apparentElevation, double[] equationOfTime) {
+        int n = epochSeconds.length;
+        checkColumn(apparentZenith, n, "apparentZenith");
+        checkColumn(azimuth, n, "azimuth");
+        checkColumn(apparentElevation, n, "apparentElevation");
+        checkColumn(equationOfTime, n, "equationOfTime");
+
+        double u = spa.uterm(lat);
+        double x = spa.xterm(u, lat, elev);
+        double y = spa.yterm(u, lat, elev);
+        double refractionScale = Atmosphere.refractionScale(pressure, tempAir);
+
+        Segment seg = segments.get();
+        double[] ret = new double[QUANTITIES];
+        double error = 0.0;
+        for (int i = 0; i < n; i++) {
+            double e = interpolate(seg, epochSeconds[i], lat, lng, x, y, refractionScale,
+                                   atmosRefract, deltaT, ret);
+            error = Math.max(error, e);
+
+            if (apparentZenith != null)
+                apparentZenith[i] = ret[APPARENT_ZENITH];
+            if (azimuth != null)
+                azimuth[i] = ret[AZIMUTH];
+            if (apparentElevation != null)
+                apparentElevation[i] = 90 - ret[APPARENT_ZENITH];
+            if (equationOfTime != null)
+                equationOfTime[i] = ret[EQUATION_OF_TIME];
+        }
+        return error;
+    }
+
+    /**
+     * @return estimated error of the interval containing the timestamp, 0 for exact intervals
+     */
+    private double interpolate(Segment seg, long epochSecond, double lat, double lng,
+                               double x, double y, double refractionScale, double atmosRefract,
+                               double deltaT, double[] ret) {
+        if (!seg.sameSite(lat, lng, x, y, refractionScale, atmosRefract, deltaT)) {
+            seg.lat = lat;
+            seg.lng = lng;
+            seg.x = x;
+            seg.y = y;
+            seg.refractionScale = refractionScale;
+            seg.atmosRefract = atmosRefract;
+            seg.deltaT = deltaT;
+            seg.valid = false;
+            seg.preferredStep = 0;
+            seg.nodeStart = Long.MIN_VALUE;
+        }
+
+        if (!seg.valid || epochSecond < seg.start || epochSecond >= seg.start + seg.step)
+            prepareSegment(seg, epochSecond);
+
+        if (seg.exact) {
+            evaluate(seg, epochSecond, ret);
+            return 0.0;
+        }
+
+        double s = (double)(epochSecond - seg.start) / seg.step;
+        interpolate(seg, s, ret);
+        return seg.error;
+    }
+
+    private void prepareSegment(Segment seg, long epochSecond) {
+        long step = (seg.preferredStep == 0) ? maxStep : seg.preferredStep;
+        while (true) {
+            long start = Math.floorDiv(epochSecond, step) * step;
+            loadNodes(seg, start, step);
+            double error = checkInterval(seg);
+            if (error <= maxError) {
+                seg.start = start;
+                seg.step = step;
+                seg.exact = false;
+                seg.valid = true;
+                seg.error = error;
+                // error grows with the cube of the step, try a wider step next time
+                seg.preferredStep = (error * 8 <= maxError) ? Math.min(maxStep, step * 2) : step;
+                report(error, false);
+                return;
+            }
+            if (step == minStep)
+                break;
+            step = Math.max(minStep, step / 2);
+        }
+        seg.start = Math.floorDiv(epochSecond, minStep) * minStep;
+        seg.step = minStep;
+        seg.exact = true;
+        seg.valid = true;
+        seg.error = 0.0;
+        seg.preferredStep = minStep;
+        report(0.0, true);
+    }
+
+    /**
+     * Loads the four stencil nodes of the interval [start, start + step).
+     * Nodes of the previous interval on the same step are reused.
+     */
+    private void loadNodes(Segment seg, long start, long step) {
+        if (seg.nodeStep == step && seg.nodeStart == start)
+            return;
+
+        if (seg.nodeStep == step && seg.nodeStart + step == start) {
+            for (int k = 0; k < 3; k++) {
+                for (int q = 0; q < QUANTITIES; q++)
+                    seg.nodes[q][k] = seg.nodes[q][k + 1];
+                seg.nodeElevation[k] = seg.nodeElevation[k + 1];
+            }
+            loadNode(seg, start + 2 * step, 3);
+        } else {
+            for (int k = 0; k < 4; k++)
+                loadNode(seg, start + (k - 1) * step, k);
+        }
+        seg.nodeStart = start;
+        seg.nodeStep = step;
+    }
+
+    private void loadNode(Segment seg, long epochSecond, int slot) {
+        double[] ret = seg.ret;
+        evaluate(seg, epochSecond, ret);
+        for (int q = 0; q < QUANTITIES; q++)
+            seg.nodes[q][slot] = ret[q];
+        seg.nodeElevation[slot] = 90 - ret[ZENITH];
+    }
+
+    /**
+     * Builds the interpolation of the current stencil and estimates its error.
+     * @return estimated error in degree, or positive infinity when interpolation must not be used
+     */
+    private double checkInterval(Segment seg) {
+        // refraction correction is switched off below this elevation
+        double low = -(0.26667 + seg.atmosRefract) - horizonGuard;
+        double high = horizonGuard;
+        int above = 0;
+        for (int k = 0; k < 4; k++) {
+            double e0 = seg.nodeElevation[k];
+            if (e0 > low && e0 < high)
+                return Double.POSITIVE_INFINITY;
+            if (e0 >= high)
+                above++;
+        }
+        // sunrise or sunset inside the stencil
+        if (above != 0 && above != 4)
+            return Double.POSITIVE_INFINITY;
+
+        double[] az = seg.nodes[AZIMUTH];
+        for (int k = 0; k < 3; k++) {
+            if (Math.abs(az[k + 1] - az[k]) > 180.0)
+                return Double.POSITIVE_INFINITY;
+        }
+
+        // Catmull-Rom coefficients on s in [0, 1]
+        double error = 0.0;
+        for (int q = 0; q < QUANTITIES; q++) {
+            double[] f = seg.nodes[q];
+            double m0 = 0.5 * (f[2] - f[0]);
+            double m1 = 0.5 * (f[3] - f[1]);
+            double[] c = seg.coefficients[q];
+            c[0] = f[1];
+            c[1] = m0;
+            c[2] = 3 * (f[2] - f[1]) - 2 * m0 - m1;
+            c[3] = 2 * (f[1] - f[2]) + m0 + m1;
+
+            // The central differences used as tangents are off by f'''/6, which gives an
+            // error of f'''/6 * s(1 - s)(1 - 2s), at most 0.0962 * f'''/6 on the interval.
+            // f''' is estimated by the third finite difference of the nodes.
+            double d3 = Math.abs(f[3] - 3 * f[2] + 3 * f[1] - f[0]) * (0.0962 / 6) * ERROR_MARGIN;
+            if (q == AZIMUTH)
+                d3 *= Math.sin(Math.toRadians(Math.max(seg.nodes[APPARENT_ZENITH][1],
+                                                       seg.nodes[APPARENT_ZENITH][2])));
+            else if (q == EQUATION_OF_TIME)
+                d3 *= EOT_TO_DEGREE;
+            error = Math.max(error, d3);
+        }
+        return error;
+    }
+
+    private void interpolate(Segment seg, double s, double[] ret) {
+        for (int q = 0; q < QUANTITIES; q++) {
+            double[] c = seg.coefficients[q];
+            ret[q] = c[0] + s * (c[1] + s * (c[2] + s * c[3]));
+        }
+        ret[AZIMUTH] = wrap(ret[AZIMUTH]);
+    }
+
+    private void evaluate(Segment seg, long epochSecond, double[] ret) {
+        spa.timeTerms(epochSecond, seg.deltaT, seg.terms);
+        double[] topo = seg.topo;
+        spa.topocentric(seg.terms, seg.lat, seg.lng, seg.x, seg.y, seg.refractionScale,
+                        seg.atmosRefract, topo);
+        ret[APPARENT_ZENITH] = topo[SolarPositionSpaModel.APPARENT_ZENITH];
+        ret[ZENITH] = topo[SolarPositionSpaModel.ZENITH];
+        ret[AZIMUTH] = topo[SolarPositionSpaModel.AZIMUTH];
+        ret[EQUATION_OF_TIME] = seg.terms.equationOfTime;
+    }
+
+    private synchronized void report(double error, boolean exact) {
+        if (exact) {
+            exactIntervals++;
+        } else {
+            interpolatedIntervals++;
+            observedError = Math.max(observedError, error);
+        }
+    }
+
+    private static double wrap(double azimuth) {
+        azimuth = azimuth % 360.0;
+        return (azimuth < 0) ? azimuth + 360.0 : azimuth;
+    }
+
+    private static void checkColumn(double[] column, int length, String name) {
+        if (column != null && column.length < length)
+            throw new IllegalArgumentException("\"" + name + "\" must have at least "
+                                               + length + " elements");
+    }
+}
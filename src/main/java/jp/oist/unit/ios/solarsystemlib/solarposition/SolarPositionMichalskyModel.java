@@ -0,0 +1,42 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+
+/**
+ * Michalsky (1988) algorithm, based on the low precision formulas of the Astronomical Almanac.
+ * Defined from 1950 to 2050, where it stays within 0.011 degree of SPA in zenith and azimuth
+ * and within 0.07 minute in the equation of time; the time terms cost about 1/25 of the SPA
+ * ones.
+ *
+ * <p>Joseph J. Michalsky, "The Astronomical Almanac's algorithm for approximate solar
+ * position (1950-2050)", Solar Energy 40 (3), 1988.</p>
+ */
+public class SolarPositionMichalskyModel extends SolarPositionApproximateModel {
+
+    public SolarPositionMichalskyModel(ModelCollection factory) {
+        super(factory);
+    }
+
+    @Override
+    public SpaTimeTerms timeTerms(long epochSecond, double deltaT, SpaTimeTerms terms) {
+        // days from J2000.0 in UT, the algorithm ignores deltaT
+        double n = epochSecond / 86400.0 - 10957.5;
+        double hour = Math.floorMod(epochSecond, 86400L) / 3600.0;
+
+        double meanLongitude = Math.toRadians(280.460 + 0.9856474 * n);
+        double meanAnomaly = Math.toRadians(357.528 + 0.9856003 * n);
+        double eclipticLongitude = meanLongitude
+                + Math.toRadians(1.915 * Math.sin(meanAnomaly)
+                                 + 0.020 * Math.sin(2 * meanAnomaly));
+        double obliquity = Math.toRadians(23.439 - 0.0000004 * n);
+
+        double sinLongitude = Math.sin(eclipticLongitude);
+        double alpha = Math.atan2(Math.cos(obliquity) * sinLongitude, Math.cos(eclipticLongitude));
+        double delta = Math.asin(Math.sin(obliquity) * sinLongitude);
+        double gmst = Math.toRadians(15 * (6.697375 + 0.0657098242 * n + hour));
+        double r = 1.00014 - 0.01671 * Math.cos(meanAnomaly) - 0.00014 * Math.cos(2 * meanAnomaly);
+
+        return fill(terms, epochSecond, deltaT, alpha, delta, gmst, meanLongitude, obliquity, r);
+    }
+}
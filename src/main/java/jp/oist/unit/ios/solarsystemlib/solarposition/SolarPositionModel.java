@@ -4,6 +4,8 @@ package jp.oist.unit.ios.solarsystemlib.solarposition;
 import jp.oist.unit.ios.solarsystemlib.Location;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 
 public abstract class SolarPositionModel {
@@ -16,4 +18,21 @@ public abstract class SolarPositionModel {
 
     public abstract SolarPosition.Variable estimate(ZonedDateTime dt, Location location,
                                                     Double pressure, Double tempAir, Object... vars);
+
+    /**
+     * Estimates solar position at unix epoch seconds. This goes through the date-time method
+     * in UTC; models override it to skip the date-time objects.
+     * @param epochSecond target time in unix epoch seconds
+     * @param location location of target place
+     * @param pressure  air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param vars extra variable for model calculation
+     * @return variable instance for solar position
+     */
+    public SolarPosition.Variable estimate(long epochSecond, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        ZonedDateTime dt = ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond),
+                                                   ZoneOffset.UTC);
+        return estimate(dt, location, pressure, tempAir, vars);
+    }
 }
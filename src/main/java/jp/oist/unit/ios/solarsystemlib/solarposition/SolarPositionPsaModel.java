@@ -0,0 +1,73 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+
+/**
+ * PSA algorithm of the Plataforma Solar de Almeria.
+ * The default coefficients are the PSA+ update (2020); the original ones (2001) are available
+ * as {@link #COEFFICIENTS_2001}. From 2010 to 2110 PSA+ stays within 0.011 degree of SPA in
+ * zenith and azimuth and 0.04 minute in the equation of time, the original within 0.014 degree
+ * and 0.06 minute; the time terms cost about 1/25 of the SPA ones.
+ *
+ * <p>Manuel Blanco-Muriel et al., "Computing the solar vector", Solar Energy 70 (5), 2001.<br>
+ * Manuel Blanco et al., "Updating the PSA sun position algorithm", Solar Energy 212, 2020.</p>
+ */
+public class SolarPositionPsaModel extends SolarPositionApproximateModel {
+
+    /* coefficients of Blanco-Muriel et al. (2001) */
+    public static final double[] COEFFICIENTS_2001 = {
+        2.1429, -0.0010394594,
+        4.8950630, 0.017202791698,
+        6.2400600, 0.0172019699,
+        0.03341607, 0.00034894, -0.0001134, -0.0000203,
+        0.4090928, -6.2140e-9, 0.0000396,
+        6.6974243242, 0.0657098283,
+    };
+
+    /* coefficients of Blanco et al. (2020), PSA+ */
+    public static final double[] COEFFICIENTS_2020 = {
+        2.267127827, -9.300339267e-4,
+        4.895036035, 1.720279602e-2,
+        6.239468336, 1.720200135e-2,
+        3.338320972e-2, 3.497596876e-4, -1.544353226e-4, -8.689729360e-6,
+        4.090904909e-1, -6.213605399e-9, 4.418094944e-5,
+        6.697096103, 6.570984737e-2,
+    };
+
+    private final double[] c;
+
+    public SolarPositionPsaModel(ModelCollection factory) {
+        this(factory, COEFFICIENTS_2020);
+    }
+
+    public SolarPositionPsaModel(ModelCollection factory, double[] coefficients) {
+        super(factory);
+        if (coefficients.length != COEFFICIENTS_2020.length)
+            throw new IllegalArgumentException("\"coefficients\" must have "
+                                               + COEFFICIENTS_2020.length + " elements");
+        this.c = coefficients.clone();
+    }
+
+    @Override
+    public SpaTimeTerms timeTerms(long epochSecond, double deltaT, SpaTimeTerms terms) {
+        // days from J2000.0 in UT, the algorithm ignores deltaT
+        double n = epochSecond / 86400.0 - 10957.5;
+        double hour = Math.floorMod(epochSecond, 86400L) / 3600.0;
+
+        double omega = c[0] + c[1] * n;
+        double meanLongitude = c[2] + c[3] * n;
+        double meanAnomaly = c[4] + c[5] * n;
+        double eclipticLongitude = meanLongitude + c[6] * Math.sin(meanAnomaly)
+                + c[7] * Math.sin(2 * meanAnomaly) + c[8] + c[9] * Math.sin(omega);
+        double obliquity = c[10] + c[11] * n + c[12] * Math.cos(omega);
+
+        double sinLongitude = Math.sin(eclipticLongitude);
+        double alpha = Math.atan2(Math.cos(obliquity) * sinLongitude, Math.cos(eclipticLongitude));
+        double delta = Math.asin(Math.sin(obliquity) * sinLongitude);
+        double gmst = Math.toRadians(15 * (c[13] + c[14] * n + hour));
+        double r = 1.00014 - 0.01671 * Math.cos(meanAnomaly) - 0.00014 * Math.cos(2 * meanAnomaly);
+
+        return fill(terms, epochSecond, deltaT, alpha, delta, gmst, meanLongitude, obliquity, r);
+    }
+}
@@ -0,0 +1,175 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.Consts;
+import jp.oist.unit.ios.solarsystemlib.common.TimeUtils;
+
+/**
+ * Solar position of any year replayed from the SPA time terms of one reference year, for
+ * simulations over decades.
+ *
+ * <p>The declination, parallax and equation of time of the sun repeat with the tropical year,
+ * not with the calendar one, so a timestamp is moved by whole tropical years into the
+ * reference year, which takes care of the leap days. The shift is corrected for the change of
+ * deltaT between the two years, so that both instants have the same terrestrial time. The
+ * hour angle is the interpolated difference between the sidereal time and the right ascension,
+ * advanced by the sidereal time gained over the shift. Only the topocentric steps of SPA run
+ * per timestamp.</p>
+ *
+ * <p>Nutation and the slow drift of the orbit do not repeat; the error stays below 0.02 degree
+ * within 15 years of the reference year, so it is best taken in the middle of a run.</p>
+ */
+public class SolarPositionReferenceYearModel extends SolarPositionModel {
+
+    /* mean tropical year in seconds */
+    public static final double TROPICAL_YEAR = 365.24219 * TimeUtils.SECONDS_PER_DAY;
+    /* node spacing of the reference year in seconds */
+    public static final long DEFAULT_STEP = 3600;
+
+    /* sidereal time gained on the mean sun in degree per day */
+    private static final double SIDEREAL_EXCESS = 0.98564736629;
+    /* days of nodes before and after the reference year */
+    private static final int MARGIN_DAYS = 2;
+
+    private final SolarPositionSpaModel spa;
+    private final int referenceYear;
+    private final long yearStart;
+    private final long first;
+    private final long step;
+
+    /* terms of the nodes, the hour angle is the sidereal time less the right ascension and
+     * the rotation of the earth since 0h UT, kept continuous */
+    private final double[] declination;
+    private final double[] parallax;
+    private final double[] hourAngle;
+    private final double[] equationOfTime;
+    private final double[] deltaT;
+
+    public SolarPositionReferenceYearModel(ModelCollection factory, int referenceYear) {
+        this(factory, new SolarPositionSpaModel(factory), referenceYear, DEFAULT_STEP);
+    }
+
+    /**
+     * @param factory model collection
+     * @param spa model computing the terms of the reference year
+     * @param referenceYear year whose terms are replayed
+     * @param step node spacing in seconds, from 60 to 21600
+     */
+    public SolarPositionReferenceYearModel(ModelCollection factory, SolarPositionSpaModel spa,
+                                           int referenceYear, long step) {
+        super(factory);
+        if (step < 60 || step > 21600)
+            throw new IllegalArgumentException("\"step\" must be from 60 to 21600 seconds");
+        this.spa = spa;
+        this.referenceYear = referenceYear;
+        this.step = step;
+        this.yearStart = TimeUtils.daysFromCivil(referenceYear, 1, 1) * TimeUtils.SECONDS_PER_DAY;
+        this.first = yearStart - MARGIN_DAYS * TimeUtils.SECONDS_PER_DAY;
+
+        long span = (long)Math.ceil(TROPICAL_YEAR) + 2L * MARGIN_DAYS * TimeUtils.SECONDS_PER_DAY;
+        int n = (int)(span / step) + 2;
+        this.declination = new double[n];
+        this.parallax = new double[n];
+        this.hourAngle = new double[n];
+        this.equationOfTime = new double[n];
+        this.deltaT = new double[n];
+
+        SpaTimeTerms terms = new SpaTimeTerms();
+        for (int i = 0; i < n; i++) {
+            long t = first + i * step;
+            deltaT[i] = spa.deltaT(t);
+            spa.timeTerms(t, deltaT[i], terms);
+            declination[i] = terms.declination;
+            parallax[i] = terms.equatorialHorizontalParallax;
+            equationOfTime[i] = terms.equationOfTime;
+            double h = terms.apparentSiderealTime - terms.rightAscension
+                     - 360.0 * Math.floorMod(t, (long)TimeUtils.SECONDS_PER_DAY)
+                             / TimeUtils.SECONDS_PER_DAY;
+            if (i > 0)
+                h = hourAngle[i - 1] + wrap(h - hourAngle[i - 1]);
+            hourAngle[i] = h;
+        }
+    }
+
+    public int getReferenceYear() {
+        return referenceYear;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    /**
+     * Estimates solar postion
+     * @param dt target date-time
+     * @param location location of target place
+     * @param pressure  air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param vars extra variable for model calculation (Double atmosRefract, Double deltaT)
+     * @return variable instance for solar position
+     */
+    @Override
+    public SolarPosition.Variable estimate(ZonedDateTime dt, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        SpaTimeTerms terms = terms(dt.toEpochSecond(), vars);
+        return spa.estimate(dt, terms, location, pressure, tempAir, atmosRefract(vars));
+    }
+
+    @Override
+    public SolarPosition.Variable estimate(long epochSecond, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        SpaTimeTerms terms = terms(epochSecond, vars);
+        return spa.estimate(null, terms, location, pressure, tempAir, atmosRefract(vars));
+    }
+
+    private static double atmosRefract(Object[] vars) {
+        return (vars.length > 0 && vars[0] != null) ? (Double)vars[0]
+                                                    : Consts.DEFAULT_ATMOS_REFRACT;
+    }
+
+    /**
+     * Time terms replayed from the reference year, with the right ascension folded into the
+     * sidereal time.
+     */
+    private SpaTimeTerms terms(long epochSecond, Object[] vars) {
+        double dT = (vars.length > 1 && vars[1] != null) ? (Double)vars[1]
+                                                          : spa.deltaT(epochSecond);
+
+        // the same terrestrial time in the reference year
+        double shift = Math.floor((epochSecond - yearStart) / TROPICAL_YEAR) * TROPICAL_YEAR;
+        double t = epochSecond - shift;
+        t += dT - deltaT[index(t)];
+
+        double position = (t - first) / step;
+        int i = Math.min((int)Math.floor(position), declination.length - 2);
+        double f = position - i;
+
+        SpaTimeTerms terms = new SpaTimeTerms();
+        terms.epochSecond = epochSecond;
+        terms.deltaT = dT;
+        terms.declination = declination[i] + f * (declination[i + 1] - declination[i]);
+        terms.equatorialHorizontalParallax = parallax[i] + f * (parallax[i + 1] - parallax[i]);
+        terms.equationOfTime = equationOfTime[i]
+                             + f * (equationOfTime[i + 1] - equationOfTime[i]);
+        // sidereal time gained over the shift, and the rotation since 0h UT
+        double h = hourAngle[i] + f * (hourAngle[i + 1] - hourAngle[i])
+                 + (SIDEREAL_EXCESS * (epochSecond - t) / TimeUtils.SECONDS_PER_DAY) % 360.0;
+        terms.apparentSiderealTime = (h + 360.0 * Math.floorMod(epochSecond,
+                (long)TimeUtils.SECONDS_PER_DAY) / TimeUtils.SECONDS_PER_DAY) % 360.0;
+        terms.rightAscension = 0.0;
+        return terms;
+    }
+
+    private int index(double t) {
+        return Math.max(0, Math.min((int)((t - first) / step), declination.length - 1));
+    }
+
+    private static double wrap(double degrees) {
+        double d = degrees % 360.0;
+        return (d > 180) ? d - 360 : (d < -180) ? d + 360 : d;
+    }
+}
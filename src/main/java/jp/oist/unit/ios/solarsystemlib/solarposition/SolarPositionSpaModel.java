@@ -4,14 +4,53 @@ package jp.oist.unit.ios.solarsystemlib.solarposition;
 import java.time.ZonedDateTime;
 
 import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.PreparedLocation;
 import jp.oist.unit.ios.solarsystemlib.atomsphere.Atmosphere;
 import jp.oist.unit.ios.solarsystemlib.common.Consts;
+import jp.oist.unit.ios.solarsystemlib.common.Kernels;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 
 public class SolarPositionSpaModel extends SolarPositionModel {
 
+    private final SpaSeries series;
+
     public SolarPositionSpaModel(ModelCollection factory) {
         super(factory);
+        this.series = SpaSeries.FULL;
+    }
+
+    /**
+     * SPA with the periodic series truncated to a target precision. Terms whose contributions
+     * sum to at most the precision are dropped; see {@link #getPrecisionBound()}.
+     * @param factory model collection
+     * @param precision target precision of the sun position from 1900 to 2100 in degree,
+     *                  0 keeps every term
+     */
+    public SolarPositionSpaModel(ModelCollection factory, double precision) {
+        super(factory);
+        this.series = (precision == 0) ? SpaSeries.FULL : new SpaSeries(precision);
+    }
+
+    /**
+     * @return requested precision in degree
+     */
+    public double getPrecision() {
+        return series.precision;
+    }
+
+    /**
+     * @return upper bound of the truncation error of the sun position from 1900 to 2100
+     *         in degree, never more than the requested precision
+     */
+    public double getPrecisionBound() {
+        return series.bound;
+    }
+
+    /**
+     * @return number of periodic terms kept in the series
+     */
+    public int getSeriesTerms() {
+        return series.terms;
     }
 
     /**
@@ -26,20 +65,8 @@ public class SolarPositionSpaModel extends SolarPositionModel {
     @Override
     public SolarPosition.Variable estimate(ZonedDateTime dt, Location location,
                                            Double pressure, Double tempAir, Object... vars) {
-        Double elev = location.altitude;
-        if (tempAir == null)
-            tempAir = Consts.DEFAULT_TEMPERATURE;
-        if (location.altitude == null && pressure == null) {
-            elev = 0.0;
-            pressure = Consts.DEFAULT_PRESSURE;
-        } else if (elev == null) {
-            elev = Atmosphere.pres2alt(pressure);
-        } else if (pressure == null) {
-            pressure = Atmosphere.alt2pres(elev);
-        }
-
         Double atmosRefract = 0.5667;
-        Double deltaT = calculateDeltaT(dt.getYear(), dt.getMonthValue());
+        Double deltaT = DayContext.of(dt).getDeltaT();
 
         if (vars.length > 0 && vars[0] != null)
             atmosRefract = (Double)vars[0];
@@ -47,15 +74,295 @@ public class SolarPositionSpaModel extends SolarPositionModel {
         if (vars.length > 1 && vars[1] != null)
             deltaT = (Double)vars[1];
 
-        return estimate(dt, location.latitude, location.longitude, elev, pressure, tempAir, atmosRefract, deltaT);
+        SpaTimeTerms terms = timeTerms(dt.toEpochSecond(), deltaT);
+        return estimate(dt, terms, location, pressure, tempAir, atmosRefract);
+    }
+
+    /**
+     * Estimates solar postion at unix epoch seconds without creating date-time objects.
+     * @param epochSecond target time in unix epoch seconds
+     * @param location location of target place
+     * @param pressure  air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param vars extra variable for model calculation (Double atmosRefract, Double deltaT)
+     * @return variable instance for solar position
+     */
+    @Override
+    public SolarPosition.Variable estimate(long epochSecond, Location location,
+                                           Double pressure, Double tempAir, Object... vars) {
+        double atmosRefract = 0.5667;
+        double deltaT;
+
+        if (vars.length > 0 && vars[0] != null)
+            atmosRefract = (Double)vars[0];
+
+        if (vars.length > 1 && vars[1] != null) {
+            deltaT = (Double)vars[1];
+        } else {
+            deltaT = DayContext.ofEpochSecond(epochSecond).getDeltaT();
+        }
+
+        SpaTimeTerms terms = timeTerms(epochSecond, deltaT);
+        return estimate(null, terms, location, pressure, tempAir, atmosRefract);
+    }
+
+    /**
+     * Estimates solar position at a location from precomputed time terms.
+     * Site constants of the location are used unless its altitude has to be derived from
+     * the given pressure.
+     * @param dt target date-time, must be the same instant as the time terms, or null
+     * @param terms location independent terms
+     * @param location location of target place
+     * @param pressure air-pressure on Pascal, or null
+     * @param tempAir air-temperature on degC, or null
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @return variable instance for solar position
+     */
+    public SolarPosition.Variable estimate(ZonedDateTime dt, SpaTimeTerms terms, Location location,
+                                           Double pressure, Double tempAir, double atmosRefract) {
+        if (location.altitude == null && pressure != null) {
+            // altitude is derived from the given pressure, site constants can not be used
+            double elev = Atmosphere.pres2alt(pressure);
+            if (tempAir == null)
+                tempAir = Consts.DEFAULT_TEMPERATURE;
+            return estimate(dt, terms, location.latitude, location.longitude, elev, pressure,
+                            tempAir, atmosRefract);
+        }
+
+        PreparedLocation site = location.prepare();
+        if (pressure == null && tempAir == null)
+            return estimate(dt, terms, site, site.refractionScale, atmosRefract);
+
+        double refractionScale = Atmosphere.refractionScale(
+                (pressure == null) ? site.pressure : pressure,
+                (tempAir == null) ? Consts.DEFAULT_TEMPERATURE : tempAir);
+        return estimate(dt, terms, site, refractionScale, atmosRefract);
     }
 
     public SolarPosition.Variable estimate(ZonedDateTime dt, double lat, double lng, double elev,
                                            double pressure, double tempAir, double atmosRefract, double deltaT) {
-        pressure = pressure * 0.01;
+        SpaTimeTerms terms = timeTerms(dt.toEpochSecond(), deltaT);
+        return estimate(dt, terms, lat, lng, elev, pressure, tempAir, atmosRefract);
+    }
+
+    /**
+     * Estimates solar position at one place from precomputed time terms.
+     * @param dt target date-time, must be the same instant as the time terms, or null
+     * @param terms location independent terms given by {@link #timeTerms(long, double)}
+     * @param lat latitude of target place
+     * @param lng longitude of target place
+     * @param elev altitude of target place in meter
+     * @param pressure air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @return variable instance for solar position
+     */
+    public SolarPosition.Variable estimate(ZonedDateTime dt, SpaTimeTerms terms,
+                                           double lat, double lng, double elev,
+                                           double pressure, double tempAir, double atmosRefract) {
+        double u = uterm(lat);
+        double x = xterm(u, lat, elev);
+        double y = yterm(u, lat, elev);
+
+        double[] ret = new double[TOPOCENTRIC_LENGTH];
+        topocentric(terms, lat, lng, x, y, Atmosphere.refractionScale(pressure, tempAir),
+                    atmosRefract, ret);
+
+        return variable(dt, terms, ret);
+    }
+
+    /**
+     * Estimates solar position at a prepared site from precomputed time terms.
+     * @param dt target date-time, must be the same instant as the time terms, or null
+     * @param terms location independent terms given by {@link #timeTerms(long, double)}
+     * @param site site constants given by {@link Location#prepare()}
+     * @param refractionScale refraction scaling factor, see {@link Atmosphere#refractionScale}
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @return variable instance for solar position
+     */
+    public SolarPosition.Variable estimate(ZonedDateTime dt, SpaTimeTerms terms, PreparedLocation site,
+                                           double refractionScale, double atmosRefract) {
+        double[] ret = new double[TOPOCENTRIC_LENGTH];
+        SpaKernel.topocentric(terms, site.sinLatitude, site.cosLatitude, site.longitude,
+                              site.xterm, site.yterm, refractionScale, atmosRefract, ret);
 
-        double unixtime = (double)dt.toEpochSecond();
-        double jd = julian_day(unixtime);
+        return variable(dt, terms, ret);
+    }
+
+    /**
+     * Result of the topocentric steps; without a date-time the instant of the time terms is
+     * kept as epoch seconds.
+     */
+    private static SolarPosition.Variable variable(ZonedDateTime dt, SpaTimeTerms terms,
+                                                   double[] ret) {
+        if (dt == null)
+            return new SolarPosition.Variable(terms.epochSecond, ret[APPARENT_ELEVATION],
+                                              ret[APPARENT_ZENITH], ret[AZIMUTH], ret[ELEVATION],
+                                              terms.equationOfTime, ret[ZENITH]);
+        return new SolarPosition.Variable(dt, ret[APPARENT_ELEVATION], ret[APPARENT_ZENITH],
+                                          ret[AZIMUTH], ret[ELEVATION], terms.equationOfTime,
+                                          ret[ZENITH]);
+    }
+
+    /**
+     * Estimates solar position for a series of timestamps at one place.
+     * Results are written into the caller-supplied columns, nothing is allocated per sample.
+     * A column may be null when the caller does not need it.
+     * @param epochSeconds target times in unix epoch seconds
+     * @param lat latitude of target place
+     * @param lng longitude of target place
+     * @param elev altitude of target place in meter
+     * @param pressure air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @param deltaT difference between terrestrial time and UT1 in second
+     * @param apparentZenith output column for apparent zenith
+     * @param azimuth output column for azimuth
+     * @param apparentElevation output column for apparent elevation
+     * @param equationOfTime output column for equation of time in minutes
+     */
+    public void estimate(long[] epochSeconds, double lat, double lng, double elev,
+                         double pressure, double tempAir, double atmosRefract, double deltaT,
+                         double[] apparentZenith, double[] azimuth,
+                         double[] apparentElevation, double[] equationOfTime) {
+        int n = epochSeconds.length;
+        checkColumn(apparentZenith, n, "apparentZenith");
+        checkColumn(azimuth, n, "azimuth");
+        checkColumn(apparentElevation, n, "apparentElevation");
+        checkColumn(equationOfTime, n, "equationOfTime");
+
+        // site constants
+        double refractionScale = Atmosphere.refractionScale(pressure, tempAir);
+        double u = uterm(lat);
+        double x = xterm(u, lat, elev);
+        double y = yterm(u, lat, elev);
+        double sinLatitude = Math.sin(Math.toRadians(lat));
+        double cosLatitude = Math.cos(Math.toRadians(lat));
+
+        SpaTimeTerms terms = new SpaTimeTerms();
+        double[] ret = new double[TOPOCENTRIC_LENGTH];
+        for (int i = 0; i < n; i++) {
+            SpaKernel.timeTerms(series, epochSeconds[i], deltaT, terms);
+            SpaKernel.topocentric(terms, sinLatitude, cosLatitude, lng, x, y, refractionScale,
+                                  atmosRefract, ret);
+
+            if (apparentZenith != null)
+                apparentZenith[i] = ret[APPARENT_ZENITH];
+            if (azimuth != null)
+                azimuth[i] = ret[AZIMUTH];
+            if (apparentElevation != null)
+                apparentElevation[i] = ret[APPARENT_ELEVATION];
+            if (equationOfTime != null)
+                equationOfTime[i] = terms.equationOfTime;
+        }
+    }
+
+    /**
+     * Estimates solar position at a prepared site for a series of precomputed time terms, so
+     * that the terms of each timestamp are computed once for any number of sites.
+     * A column may be null when the caller does not need it.
+     * @param terms time terms of the timestamps given by {@link #timeTerms(long, double)}
+     * @param length number of timestamps, from the first time terms
+     * @param site site constants given by {@link Location#prepare()}
+     * @param refractionScale refraction scaling factor, see {@link Atmosphere#refractionScale}
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @param apparentZenith output column for apparent zenith
+     * @param azimuth output column for azimuth
+     * @param apparentElevation output column for apparent elevation
+     */
+    public void estimate(SpaTimeTerms[] terms, int length, PreparedLocation site,
+                         double refractionScale, double atmosRefract,
+                         double[] apparentZenith, double[] azimuth, double[] apparentElevation) {
+        if (length < 0 || length > terms.length)
+            throw new IllegalArgumentException("\"length\" must be from 0 to " + terms.length);
+        checkColumn(apparentZenith, length, "apparentZenith");
+        checkColumn(azimuth, length, "azimuth");
+        checkColumn(apparentElevation, length, "apparentElevation");
+
+        double[] ret = new double[TOPOCENTRIC_LENGTH];
+        for (int i = 0; i < length; i++) {
+            SpaKernel.topocentric(terms[i], site.sinLatitude, site.cosLatitude, site.longitude,
+                                  site.xterm, site.yterm, refractionScale, atmosRefract, ret);
+
+            if (apparentZenith != null)
+                apparentZenith[i] = ret[APPARENT_ZENITH];
+            if (azimuth != null)
+                azimuth[i] = ret[AZIMUTH];
+            if (apparentElevation != null)
+                apparentElevation[i] = ret[APPARENT_ELEVATION];
+        }
+    }
+
+    /**
+     * Estimates solar position at many places for one timestamp.
+     * The time terms are computed once by the caller, so only the topocentric steps run per place.
+     * A column may be null when the caller does not need it.
+     * @param terms location independent terms given by {@link #timeTerms(long, double)}
+     * @param lat latitudes of target places
+     * @param lng longitudes of target places
+     * @param elev altitudes of target places in meter
+     * @param pressure air-pressure on Pascal
+     * @param tempAir air-temperature on degC
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @param apparentZenith output column for apparent zenith
+     * @param azimuth output column for azimuth
+     * @param apparentElevation output column for apparent elevation
+     */
+    public void estimate(SpaTimeTerms terms, double[] lat, double[] lng, double[] elev,
+                         double pressure, double tempAir, double atmosRefract,
+                         double[] apparentZenith, double[] azimuth, double[] apparentElevation) {
+        int n = lat.length;
+        checkColumn(lng, n, "lng");
+        checkColumn(elev, n, "elev");
+        checkColumn(apparentZenith, n, "apparentZenith");
+        checkColumn(azimuth, n, "azimuth");
+        checkColumn(apparentElevation, n, "apparentElevation");
+
+        // the places are the lanes of the kernel, which fills every column
+        Kernels.get().topocentric(terms.apparentSiderealTime, terms.rightAscension,
+                                  terms.declination, terms.equatorialHorizontalParallax,
+                                  lat, lng, elev, Atmosphere.refractionScale(pressure, tempAir),
+                                  atmosRefract, n,
+                                  (apparentZenith != null) ? apparentZenith : new double[n],
+                                  (azimuth != null) ? azimuth : new double[n],
+                                  (apparentElevation != null) ? apparentElevation : new double[n]);
+    }
+
+    /**
+     * Computes the location independent terms (julian day, heliocentric position, nutation,
+     * sidereal time and geocentric sun position) for one timestamp.
+     * @param epochSecond target time in unix epoch seconds
+     * @param deltaT difference between terrestrial time and UT1 in second
+     * @return time terms
+     */
+    public SpaTimeTerms timeTerms(long epochSecond, double deltaT) {
+        return timeTerms(epochSecond, deltaT, new SpaTimeTerms());
+    }
+
+    /**
+     * Computes the location independent terms into the given instance.
+     * @param epochSecond target time in unix epoch seconds
+     * @param deltaT difference between terrestrial time and UT1 in second
+     * @param terms instance to be filled
+     * @return given instance
+     */
+    public SpaTimeTerms timeTerms(long epochSecond, double deltaT, SpaTimeTerms terms) {
+        return timeTerms((double)epochSecond, deltaT, terms);
+    }
+
+    /**
+     * Computes the location independent terms at a fractional second.
+     */
+    SpaTimeTerms timeTerms(double epochSecond, double deltaT, SpaTimeTerms terms) {
+        return SpaKernel.timeTerms(series, epochSecond, deltaT, terms);
+    }
+
+    /**
+     * Location independent terms by the degree helpers, one per step of SPA. The reference for
+     * {@link SpaKernel}.
+     */
+    SpaTimeTerms referenceTimeTerms(double epochSecond, double deltaT, SpaTimeTerms terms) {
+        double jd = julian_day(epochSecond);
         double jde = julian_ephemeris_day(jd, deltaT);
         double jc = julian_century(jd);
         double jce = julian_ephemeris_century(jde);
@@ -85,41 +392,93 @@ public class SolarPositionSpaModel extends SolarPositionModel {
         double delta = geocentric_sun_declination(lamd, epsilon, beta);
 
         double m = sun_mean_longitude(jme);
-        // equation of time
-        double eot = equation_of_time(m, alpha, deltaPsi, epsilon);
-        double h = local_hour_angle(v, lng, alpha);
-        double xi = equatorial_horizontal_parallax(r);
 
-        double u = uterm(lat);
-        double x = xterm(u, lat, elev);
-        double y = yterm(u, lat, elev);
+        terms.epochSecond = (long)Math.floor(epochSecond);
+        terms.deltaT = deltaT;
+        terms.julianDay = jd;
+        terms.julianEphemerisMillennium = jme;
+        terms.earthRadiusVector = r;
+        terms.longitudeNutation = deltaPsi;
+        terms.trueEclipticObliquity = epsilon;
+        terms.apparentSiderealTime = v;
+        terms.rightAscension = alpha;
+        terms.declination = delta;
+        terms.equationOfTime = equation_of_time(m, alpha, deltaPsi, epsilon);
+        terms.equatorialHorizontalParallax = equatorial_horizontal_parallax(r);
+        return terms;
+    }
+
+    /* indices of the topocentric results */
+    static final int APPARENT_ELEVATION = 0;
+    static final int APPARENT_ZENITH = 1;
+    static final int AZIMUTH = 2;
+    static final int ELEVATION = 3;
+    static final int ZENITH = 4;
+    static final int TOPOCENTRIC_LENGTH = 5;
+
+    /**
+     * Location dependent steps of SPA, from the local hour angle onward.
+     */
+    void topocentric(SpaTimeTerms terms, double lat, double lng, double x, double y,
+                     double refractionScale, double atmosRefract, double[] ret) {
+        double phi = Math.toRadians(lat);
+        SpaKernel.topocentric(terms, Math.sin(phi), Math.cos(phi), lng, x, y, refractionScale,
+                              atmosRefract, ret);
+    }
+
+    /**
+     * Location dependent steps by the degree helpers. The reference for {@link SpaKernel}.
+     */
+    void referenceTopocentric(SpaTimeTerms terms, double lat, double lng, double x, double y,
+                              double refractionScale, double atmosRefract, double[] ret) {
+        double delta = terms.declination;
+        double xi = terms.equatorialHorizontalParallax;
+        double h = local_hour_angle(terms.apparentSiderealTime, lng, terms.rightAscension);
+
         double deltaAlpha = parallax_sun_right_ascension(x, xi, h, delta);
         double deltaPrime = topocentric_sun_declination(delta, x, y, xi, deltaAlpha, h);
 
         double hPrime = topocentric_local_hour_angle(h, deltaAlpha);
         // elevation
         double e0 = topocentric_elevation_angle_without_atmosphere(lat, deltaPrime, hPrime);
-        double delta_e = atmospheric_refraction_correction(pressure, tempAir, e0, atmosRefract);
+        double delta_e = atmospheric_refraction_correction(refractionScale, e0, atmosRefract);
         // apparent elevation
         double e = topocentric_elevation_angle(e0, delta_e);
-        // apparent zenith
-        double theta = topocentric_zenith_angle(e);
-        // zenith
-        double theta0 = topocentric_zenith_angle(e0);
         double gamma = topocentric_astronomers_azimuth(hPrime, deltaPrime, lat);
-        // azimuth
-        double phi = topocentric_azimuth_angle(gamma);
 
-        return new SolarPosition.Variable(dt, e, theta, phi, e0, eot, theta0);
+        ret[APPARENT_ELEVATION] = e;
+        ret[APPARENT_ZENITH] = topocentric_zenith_angle(e);
+        ret[AZIMUTH] = topocentric_azimuth_angle(gamma);
+        ret[ELEVATION] = e0;
+        ret[ZENITH] = topocentric_zenith_angle(e0);
+    }
+
+    private static void checkColumn(double[] column, int length, String name) {
+        if (column != null && column.length < length)
+            throw new IllegalArgumentException("\"" + name + "\" must have at least "
+                                               + length + " elements");
+    }
+
+    /**
+     * deltaT of SPA used when none is given, from the UTC month of a timestamp.
+     * @param epochSecond target time in unix epoch seconds
+     * @return difference between terrestrial time and UT1 in second
+     */
+    public double deltaT(long epochSecond) {
+        return DayContext.ofEpochSecond(epochSecond).getDeltaT();
+    }
+
+    double calculateDeltaT(int year, int month) {
+        return deltaT(year, month);
     }
 
     /**
-     * from spa.calculate_deltat
+     * from spa.calculate_deltat, cached per date by {@link DayContext}
      * @param year
      * @param month  1-12
      * @return
      */
-    private double calculateDeltaT(int year, int month) {
+    static double deltaT(int year, int month) {
         //if(year > 3000 || year < -1999) {
         //    return 0;
         //}
@@ -266,15 +625,21 @@ public class SolarPositionSpaModel extends SolarPositionModel {
 
     private double atmospheric_refraction_correction(double local_pressure, double local_temp,
             double topocentric_elevation_angle_wo_atmosphere, double atmos_refract) {
+        return atmospheric_refraction_correction(
+                Atmosphere.refractionScale(local_pressure * 100, local_temp),
+                topocentric_elevation_angle_wo_atmosphere, atmos_refract);
+    }
+
+    private double atmospheric_refraction_correction(double refraction_scale,
+            double topocentric_elevation_angle_wo_atmosphere, double atmos_refract) {
 
         boolean bSwitch = ( topocentric_elevation_angle_wo_atmosphere >= ( -1.0 * ( 0.26667 + atmos_refract)) );
         double dSwitch = bSwitch ? 1: 0;
 
-        double delta_e = ((local_pressure / 1010.0) * (283.0 / (273 + local_temp))
-                       * 1.02 / (60 * Math.tan(Math.toRadians(
+        double delta_e = (refraction_scale / Math.tan(Math.toRadians(
                            topocentric_elevation_angle_wo_atmosphere
                            + 10.3 / (topocentric_elevation_angle_wo_atmosphere
-                                     + 5.11))))) * dSwitch;
+                                     + 5.11)))) * dSwitch;
 
         return delta_e;
 
@@ -327,21 +692,21 @@ public class SolarPositionSpaModel extends SolarPositionModel {
 
     }
 
-    private double yterm(double u, double observer_latitude, double observer_elevation) {
+    double yterm(double u, double observer_latitude, double observer_elevation) {
         double y = (0.99664719 * Math.sin(u) + observer_elevation / 6378140
                 * Math.sin(Math.toRadians(observer_latitude)));
         return y;
 
     }
 
-    private double xterm(double u, double observer_latitude, double observer_elevation) {
+    double xterm(double u, double observer_latitude, double observer_elevation) {
         double x = (Math.cos(u) + observer_elevation / 6378140
                         * Math.cos(Math.toRadians(observer_latitude)));
         return x;
 
     }
 
-    private double uterm(double observer_latitude) {
+    double uterm(double observer_latitude) {
         double u = Math.atan(0.99664719 * Math.tan(Math.toRadians(observer_latitude)));
         return u;
     }
@@ -491,42 +856,14 @@ public class SolarPositionSpaModel extends SolarPositionModel {
     }
 
     private double longitude_nutation(double julian_ephemeris_century , double x0 ,double x1 ,double x2 ,double x3 ,double x4 ) {
-        double delta_psi_sum = 0;
-        double[][] n_y_arr = Consts.NUTATION_YTERM_ARRAY;
-        double[][] abcd_arr = Consts.NUTATION_ABCD_ARRAY;
-        for(int i=0; i<n_y_arr.length; i++) {
-            double a = abcd_arr[i][0];
-            double b = abcd_arr[i][1];
-
-            double argsin = n_y_arr[i][0] * x0
-                          + n_y_arr[i][1] * x1
-                          + n_y_arr[i][2] * x2
-                          + n_y_arr[i][3] * x3
-                          + n_y_arr[i][4] * x4;
-            double term = (a + b * julian_ephemeris_century) * Math.sin(Math.toRadians(argsin));
-            delta_psi_sum += term;
-        }
-
+        double delta_psi_sum = SpaSeries.nutation(series.longitudeNutation, true,
+                                                  julian_ephemeris_century, x0, x1, x2, x3, x4);
         return delta_psi_sum / 36e6;
     }
 
     private double obliquity_nutation(double julian_ephemeris_century , double x0 ,double x1 ,double x2 ,double x3 ,double x4) {
-        double delta_eps_sum = 0;
-        double[][] n_y_arr = Consts.NUTATION_YTERM_ARRAY;
-        double[][] abcd_arr = Consts.NUTATION_ABCD_ARRAY;
-        for (int i=0; i<n_y_arr.length; i++) {
-            double c = abcd_arr[i][2];
-            double d = abcd_arr[i][3];
-
-            double argcos = n_y_arr[i][0] * x0
-                    + n_y_arr[i][1] * x1
-                    + n_y_arr[i][2] * x2
-                    + n_y_arr[i][3] * x3
-                    + n_y_arr[i][4] * x4;
-            double term = (c + d * julian_ephemeris_century) * Math.cos(Math.toRadians(argcos));
-            delta_eps_sum += term;
-        }
-
+        double delta_eps_sum = SpaSeries.nutation(series.obliquityNutation, false,
+                                                  julian_ephemeris_century, x0, x1, x2, x3, x4);
         return  delta_eps_sum / 36e6;
     }
 
@@ -560,66 +897,17 @@ public class SolarPositionSpaModel extends SolarPositionModel {
     }
 
     private double heliocentric_radius_vector(double jme) {
-        double r0 = 0, r1 = 0, r2 = 0, r3 = 0, r4 = 0;
-        double[][][] hrt = Consts.HELIO_RADIUS_TABLE;
-
-        for (int i=0; i<hrt[0].length; i++)
-            r0 += hrt[0][i][0] * Math.cos(hrt[0][i][1] + hrt[0][i][2] * jme);
-
-        for (int i=0; i<hrt[1].length; i++)
-            r1 += hrt[1][i][0] * Math.cos(hrt[1][i][1] + hrt[1][i][2] * jme);
-
-        for (int i=0; i<hrt[2].length; i++)
-            r2 += hrt[2][i][0] * Math.cos(hrt[2][i][1] + hrt[2][i][2] * jme);
-
-        for (int i=0; i<hrt[3].length; i++)
-            r3 += hrt[3][i][0] * Math.cos(hrt[3][i][1] + hrt[3][i][2] * jme);
-
-        for (int i=0; i<hrt[4].length; i++)
-            r4 += hrt[4][i][0] * Math.cos(hrt[4][i][1]+hrt[4][i][2]*jme);
-
-        return (r0 + r1 * jme + r2 * Math.pow(jme, 2) + r3 * Math.pow(jme, 3) + r4 * Math.pow(jme, 4)) / 1e8;
+        return SpaSeries.periodic(series.radius, jme) / 1e8;
     }
 
     private double heliocentric_longitude(double jme) {
-        double l0 = 0, l1 = 0, l2 = 0, l3 = 0, l4 = 0, l5 = 0;
-        double[][][] hlt = Consts.HELIO_LONG_TABLE;
-
-        for (int i=0; i<hlt[0].length; i++)
-            l0 += hlt[0][i][0] * Math.cos(hlt[0][i][1] + hlt[0][i][2] * jme);
-
-        for (int i=0; i<hlt[1].length; i++)
-            l1 += hlt[1][i][0] * Math.cos(hlt[1][i][1] + hlt[1][i][2] * jme);
-
-        for (int i=0; i<hlt[2].length; i++)
-            l2 += hlt[2][i][0] * Math.cos(hlt[2][i][1] + hlt[2][i][2] * jme);
-
-        for (int i=0; i<hlt[3].length; i++)
-            l3 += hlt[3][i][0] * Math.cos(hlt[3][i][1] + hlt[3][i][2] * jme);
-
-        for (int i=0; i<hlt[4].length; i++)
-            l4 += hlt[4][i][0] * Math.cos(hlt[4][i][1]+hlt[4][i][2]*jme);
-
-        for (int i=0; i<hlt[5].length; i++)
-            l5 += hlt[5][i][0] * Math.cos(hlt[5][i][1]+hlt[5][i][2]*jme);
-
-        double l_rad = (l0 + l1 * jme + l2 * Math.pow(jme, 2) + l3 * Math.pow(jme, 3) + l4 * Math.pow(jme, 4)
-                + l5 * Math.pow(jme, 5)) / 1e8;
+        double l_rad = SpaSeries.periodic(series.longitude, jme) / 1e8;
         double l = Math.toDegrees(l_rad);
 
         return l % 360;
     }
 
     private double heliocentric_latitude(double jme) {
-        double b0 = 0, b1 = 0;
-        double[][][] hlt = Consts.HELIO_LAT_TABLE;
-
-        for (int i=0; i<hlt[0].length; i++)
-            b0 += hlt[0][i][0] * Math.cos(hlt[0][i][1] + hlt[0][i][2] * jme);
-
-        for (int i=0; i<hlt[1].length; i++)
-            b1 += hlt[1][i][0] * Math.cos(hlt[1][i][1] + hlt[1][i][2] * jme);
-
-        return Math.toDegrees((b0 + b1 * jme) / 1e8);
+        return Math.toDegrees(SpaSeries.periodic(series.latitude, jme) / 1e8);
     }
 }
@@ -0,0 +1,168 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+/**
+ * Steps of SPA in radians, used by {@link SolarPositionSpaModel}.
+ *
+ * <p>Angles stay in radians from the heliocentric position to the topocentric one; degrees are
+ * only used where SPA defines a term in degrees (the sidereal time, the arguments of the
+ * nutation and the equation of time) and for the results. Each sine and cosine is computed
+ * once: the sine and cosine of the parallax in right ascension and of the topocentric
+ * declination come from the arguments of their arc tangents, so the topocentric hour angle
+ * needs no trigonometric call of its own. Polynomials of time are evaluated by Horner's
+ * scheme.</p>
+ *
+ * <p>The methods are static, small and free of allocation, so that the JIT compiler can inline
+ * them into the caller. The degree helpers of {@link SolarPositionSpaModel} remain the
+ * reference implementation; both agree within 1e-9 degree.</p>
+ */
+final class SpaKernel {
+
+    /* arc seconds in radian */
+    private static final double ARCSEC = Math.PI / (180.0 * 3600.0);
+    /* 0.0001 arc second in degree, unit of the nutation series */
+    private static final double NUTATION_UNIT = 1.0 / 36e6;
+
+    private SpaKernel() {
+    }
+
+    /**
+     * Location independent terms of SPA.
+     * @param series periodic series of the model
+     * @param epochSecond target time in unix epoch seconds, may be fractional
+     * @param deltaT difference between terrestrial time and UT1 in second
+     * @param terms instance to be filled
+     * @return given instance
+     */
+    static SpaTimeTerms timeTerms(SpaSeries series, double epochSecond, double deltaT,
+                                  SpaTimeTerms terms) {
+        double jd = epochSecond / 86400.0 + 2440587.5;
+        double jc = (jd - 2451545.0) / 36525.0;
+        double jce = (jd + deltaT / 86400 - 2451545) / 36525.0;
+        double jme = jce / 10.0;
+
+        // heliocentric position, the series are in 1e-8 radian
+        double l = SpaSeries.periodic(series.longitude, jme) / 1e8;
+        double b = SpaSeries.periodic(series.latitude, jme) / 1e8;
+        double r = SpaSeries.periodic(series.radius, jme) / 1e8;
+
+        // nutation, SPA gives the arguments in degree
+        double x0 = 297.85036 + jce * (445267.111480 + jce * (-0.0019142 + jce / 189474));
+        double x1 = 357.52772 + jce * (35999.050340 + jce * (-0.0001603 - jce / 3e5));
+        double x2 = 134.96298 + jce * (477198.867398 + jce * (0.0086972 + jce / 56250));
+        double x3 = 93.27191 + jce * (483202.017538 + jce * (-0.0036825 + jce / 327270));
+        double x4 = 125.04452 + jce * (-1934.136261 + jce * (0.0020708 + jce / 450000));
+        double deltaPsi = SpaSeries.nutation(series.longitudeNutation, true,
+                                             jce, x0, x1, x2, x3, x4) * NUTATION_UNIT;
+        double deltaEpsilon = SpaSeries.nutation(series.obliquityNutation, false,
+                                                 jce, x0, x1, x2, x3, x4) * NUTATION_UNIT;
+
+        double epsilon = meanObliquity(jme / 10) * ARCSEC + Math.toRadians(deltaEpsilon);
+        double sinEpsilon = Math.sin(epsilon);
+        double cosEpsilon = Math.cos(epsilon);
+
+        // geocentric position, with the nutation and the aberration
+        double lambda = l + Math.PI + Math.toRadians(deltaPsi - 20.4898 / (3600 * r));
+        double sinLambda = Math.sin(lambda);
+        double cosLambda = Math.cos(lambda);
+        double sinBeta = Math.sin(-b);
+        double cosBeta = Math.cos(b);
+        double alpha = Math.toDegrees(Math.atan2(sinLambda * cosEpsilon
+                                                 - sinBeta / cosBeta * sinEpsilon, cosLambda));
+        double delta = Math.toDegrees(Math.asin(sinBeta * cosEpsilon
+                                                + cosBeta * sinEpsilon * sinLambda));
+
+        // in the order of SPA, the rounding of the large first terms shows in the result
+        double v0 = (280.46061837 + 360.98564736629 * (jd - 2451545)
+                     + 0.000387933 * jc * jc - jc * jc * jc / 38710000) % 360.0;
+        double nutationRa = deltaPsi * cosEpsilon;
+
+        terms.epochSecond = (long)Math.floor(epochSecond);
+        terms.deltaT = deltaT;
+        terms.julianDay = jd;
+        terms.julianEphemerisMillennium = jme;
+        terms.earthRadiusVector = r;
+        terms.longitudeNutation = deltaPsi;
+        terms.trueEclipticObliquity = Math.toDegrees(epsilon);
+        terms.apparentSiderealTime = v0 + nutationRa;
+        terms.rightAscension = alpha;
+        terms.declination = delta;
+        terms.equationOfTime = equationOfTime(sunMeanLongitude(jme) - alpha + nutationRa);
+        terms.equatorialHorizontalParallax = 8.794 / (3600 * r);
+        return terms;
+    }
+
+    /* mean obliquity of the ecliptic in arc second, u in 10000 julian years */
+    private static double meanObliquity(double u) {
+        return 84381.448 + u * (-4680.93 + u * (-1.55 + u * (1999.25 + u * (-51.38
+               + u * (-249.67 + u * (-39.05 + u * (7.12 + u * (27.87 + u * (5.79
+               + u * 2.45)))))))));
+    }
+
+    /* mean longitude of the sun in degree */
+    private static double sunMeanLongitude(double jme) {
+        return 280.4664567 + jme * (360007.6982779 + jme * (0.03032028
+               + jme * (1 / 49931.0 + jme * (-1 / 15300.0 - jme / 2e6))));
+    }
+
+    /* equation of time in minutes from its angle in degree, less the 0.0057183 offset */
+    private static double equationOfTime(double angle) {
+        double e = ((angle - 0.0057183) % 360) * 4;
+        return (e > 20) ? (e - 1440) : ((e < -20) ? (e + 1440) : e);
+    }
+
+    /**
+     * Location dependent steps of SPA, from the local hour angle onward.
+     * @param terms time terms
+     * @param sinLatitude sine of the latitude
+     * @param cosLatitude cosine of the latitude
+     * @param lng longitude in degree
+     * @param x xterm of the place
+     * @param y yterm of the place
+     * @param refractionScale refraction scaling factor
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @param ret results, see the indices of {@link SolarPositionSpaModel}
+     */
+    static void topocentric(SpaTimeTerms terms, double sinLatitude, double cosLatitude,
+                            double lng, double x, double y, double refractionScale,
+                            double atmosRefract, double[] ret) {
+        double h = Math.toRadians((terms.apparentSiderealTime + lng - terms.rightAscension)
+                                  % 360.0);
+        double delta = Math.toRadians(terms.declination);
+        double sinXi = Math.sin(Math.toRadians(terms.equatorialHorizontalParallax));
+        double sinH = Math.sin(h);
+        double cosH = Math.cos(h);
+
+        // parallax in right ascension, atan2(-x sin xi sin h, denom)
+        double denom = Math.cos(delta) - x * sinXi * cosH;
+        double num = -x * sinXi * sinH;
+        double norm = Math.sqrt(num * num + denom * denom);
+        double sinDeltaAlpha = num / norm;
+        double cosDeltaAlpha = denom / norm;
+
+        // topocentric declination, denom is positive as long as the declination is below 90
+        double dnum = (Math.sin(delta) - y * sinXi) * cosDeltaAlpha;
+        double dnorm = Math.sqrt(dnum * dnum + denom * denom);
+        double sinDeltaPrime = dnum / dnorm;
+        double cosDeltaPrime = denom / dnorm;
+
+        // topocentric hour angle h - deltaAlpha
+        double sinHPrime = sinH * cosDeltaAlpha - cosH * sinDeltaAlpha;
+        double cosHPrime = cosH * cosDeltaAlpha + sinH * sinDeltaAlpha;
+
+        double e0 = Math.toDegrees(Math.asin(sinLatitude * sinDeltaPrime
+                                             + cosLatitude * cosDeltaPrime * cosHPrime));
+        double deltaE = (e0 >= -1.0 * (0.26667 + atmosRefract))
+                ? refractionScale / Math.tan(Math.toRadians(e0 + 10.3 / (e0 + 5.11))) : 0;
+        double e = e0 + deltaE;
+        double gamma = Math.toDegrees(Math.atan2(sinHPrime * cosDeltaPrime,
+                                                 cosHPrime * sinLatitude * cosDeltaPrime
+                                                 - sinDeltaPrime * cosLatitude));
+
+        ret[SolarPositionSpaModel.APPARENT_ELEVATION] = e;
+        ret[SolarPositionSpaModel.APPARENT_ZENITH] = 90 - e;
+        ret[SolarPositionSpaModel.AZIMUTH] = (gamma + 180) % 360;
+        ret[SolarPositionSpaModel.ELEVATION] = e0;
+        ret[SolarPositionSpaModel.ZENITH] = 90 - e0;
+    }
+}
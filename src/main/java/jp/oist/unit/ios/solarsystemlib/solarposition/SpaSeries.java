@@ -0,0 +1,225 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import jp.oist.unit.ios.solarsystemlib.common.Consts;
+import jp.oist.unit.ios.solarsystemlib.common.Kernels;
+
+/**
+ * Periodic series of SPA (earth heliocentric longitude, latitude and radius vector, nutation in
+ * longitude and obliquity) truncated to a target precision.
+ *
+ * <p>Every term has a bound of its contribution to the sun position over 1900 to 2100. Terms
+ * are dropped from the smallest bound while the sum of the dropped bounds stays within the
+ * target precision, so the sum is an upper bound of the truncation error in degree. The kept
+ * terms are stored column by column, sorted by amplitude, and summed by {@link Kernels}.</p>
+ */
+final class SpaSeries {
+
+    /* |julian ephemeris millennium| from 1900 to 2100 */
+    static final double JME_LIMIT = 0.1;
+    /* degree of sun position per AU of radius vector, aberration plus parallax */
+    private static final double DEGREE_PER_AU = (20.4898 + 8.794) / 3600;
+    /* nutation in longitude moves both the sidereal time and the apparent longitude */
+    private static final double LONGITUDE_NUTATION_WEIGHT = 2;
+
+    static final SpaSeries FULL = new SpaSeries(0);
+
+    final Periodic longitude;
+    final Periodic latitude;
+    final Periodic radius;
+    final Nutation longitudeNutation;
+    final Nutation obliquityNutation;
+
+    final double precision;
+    final double bound;
+    final int terms;
+
+    private static final int LONGITUDE = 0;
+    private static final int LATITUDE = 1;
+    private static final int RADIUS = 2;
+    private static final int LONGITUDE_NUTATION = 3;
+    private static final int OBLIQUITY_NUTATION = 4;
+
+    /**
+     * Columns of A cos(B + C jme) terms, grouped by power of JME.
+     */
+    static final class Periodic {
+        final double[] amplitude;
+        final double[] phase;
+        final double[] frequency;
+        /* terms of power k are in [offsets[k], offsets[k + 1]) */
+        final int[] offsets;
+
+        Periodic(int length, int powers) {
+            this.amplitude = new double[length];
+            this.phase = new double[length];
+            this.frequency = new double[length];
+            this.offsets = new int[powers + 1];
+        }
+    }
+
+    /**
+     * Columns of (a + b jce) sin(sum y_i x_i) terms, or cos for the obliquity.
+     */
+    static final class Nutation {
+        /* y0 to y4 */
+        final double[][] y;
+        final double[] a;
+        final double[] b;
+
+        Nutation(int length) {
+            this.y = new double[5][length];
+            this.a = new double[length];
+            this.b = new double[length];
+        }
+    }
+
+    private static class Term {
+        final int series;
+        final int power;
+        final int index;
+        final double amplitude;
+        final double bound;
+
+        Term(int series, int power, int index, double amplitude, double bound) {
+            this.series = series;
+            this.power = power;
+            this.index = index;
+            this.amplitude = amplitude;
+            this.bound = bound;
+        }
+    }
+
+    /**
+     * @param precision target precision of the sun position in degree, 0 keeps every term
+     */
+    SpaSeries(double precision) {
+        if (!(precision >= 0))
+            throw new IllegalArgumentException("\"precision\" must be 0 or more");
+        this.precision = precision;
+
+        List<Term> candidates = new ArrayList<>();
+        addPeriodic(candidates, LONGITUDE, Consts.HELIO_LONG_TABLE, Math.toDegrees(1e-8));
+        addPeriodic(candidates, LATITUDE, Consts.HELIO_LAT_TABLE, Math.toDegrees(1e-8));
+        addPeriodic(candidates, RADIUS, Consts.HELIO_RADIUS_TABLE, 1e-8 * DEGREE_PER_AU);
+
+        double jceLimit = JME_LIMIT * 10;
+        double[][] abcd = Consts.NUTATION_ABCD_ARRAY;
+        for (int i = 0; i < abcd.length; i++) {
+            double psi = (Math.abs(abcd[i][0]) + Math.abs(abcd[i][1]) * jceLimit) / 36e6;
+            double eps = (Math.abs(abcd[i][2]) + Math.abs(abcd[i][3]) * jceLimit) / 36e6;
+            candidates.add(new Term(LONGITUDE_NUTATION, 0, i, Math.abs(abcd[i][0]),
+                                    psi * LONGITUDE_NUTATION_WEIGHT));
+            candidates.add(new Term(OBLIQUITY_NUTATION, 0, i, Math.abs(abcd[i][2]), eps));
+        }
+
+        // drop the smallest terms while the error stays within the precision
+        candidates.sort(Comparator.comparingDouble(t -> t.bound));
+        double dropped = 0;
+        int first = 0;
+        while (first < candidates.size()
+                && dropped + candidates.get(first).bound <= precision) {
+            dropped += candidates.get(first).bound;
+            first++;
+        }
+        List<Term> kept = new ArrayList<>(candidates.subList(first, candidates.size()));
+        kept.sort(Comparator.comparingDouble((Term t) -> t.amplitude).reversed());
+        this.bound = dropped;
+        this.terms = kept.size();
+
+        this.longitude = flatten(kept, LONGITUDE, Consts.HELIO_LONG_TABLE);
+        this.latitude = flatten(kept, LATITUDE, Consts.HELIO_LAT_TABLE);
+        this.radius = flatten(kept, RADIUS, Consts.HELIO_RADIUS_TABLE);
+        this.longitudeNutation = flattenNutation(kept, LONGITUDE_NUTATION, 0);
+        this.obliquityNutation = flattenNutation(kept, OBLIQUITY_NUTATION, 2);
+    }
+
+    private static void addPeriodic(List<Term> candidates, int series, double[][][] table,
+                                    double scale) {
+        for (int k = 0; k < table.length; k++) {
+            double jmePower = Math.pow(JME_LIMIT, k);
+            for (int i = 0; i < table[k].length; i++) {
+                double amplitude = Math.abs(table[k][i][0]);
+                double bound = amplitude * jmePower * scale;
+                // the mean radius vector is not a small perturbation, always keep it
+                if (series == RADIUS && k == 0 && table[k][i][2] == 0)
+                    bound = Double.POSITIVE_INFINITY;
+                candidates.add(new Term(series, k, i, amplitude, bound));
+            }
+        }
+    }
+
+    private static Periodic flatten(List<Term> kept, int series, double[][][] table) {
+        List<List<Term>> byPower = new ArrayList<>();
+        for (int k = 0; k < table.length; k++)
+            byPower.add(new ArrayList<Term>());
+        for (Term t : kept)
+            if (t.series == series)
+                byPower.get(t.power).add(t);
+
+        int length = 0;
+        for (List<Term> p : byPower)
+            length += p.size();
+        Periodic flat = new Periodic(length, table.length);
+
+        int n = 0;
+        for (int k = 0; k < table.length; k++) {
+            flat.offsets[k] = n;
+            for (Term t : byPower.get(k)) {
+                flat.amplitude[n] = table[k][t.index][0];
+                flat.phase[n] = table[k][t.index][1];
+                flat.frequency[n] = table[k][t.index][2];
+                n++;
+            }
+        }
+        flat.offsets[table.length] = n;
+        return flat;
+    }
+
+    private static Nutation flattenNutation(List<Term> kept, int series, int column) {
+        List<Term> rows = new ArrayList<>();
+        for (Term t : kept)
+            if (t.series == series)
+                rows.add(t);
+
+        Nutation flat = new Nutation(rows.size());
+        int n = 0;
+        for (Term t : rows) {
+            for (int j = 0; j < 5; j++)
+                flat.y[j][n] = Consts.NUTATION_YTERM_ARRAY[t.index][j];
+            flat.a[n] = Consts.NUTATION_ABCD_ARRAY[t.index][column];
+            flat.b[n] = Consts.NUTATION_ABCD_ARRAY[t.index][column + 1];
+            n++;
+        }
+        return flat;
+    }
+
+    /**
+     * Evaluates sum_k jme^k sum_i A cos(B + C jme).
+     */
+    static double periodic(Periodic series, double jme) {
+        Kernels kernels = Kernels.get();
+        int[] offsets = series.offsets;
+        double total = 0;
+        for (int k = offsets.length - 2; k >= 0; k--) {
+            double sum = kernels.cosineSum(series.amplitude, series.phase, series.frequency,
+                                           offsets[k], offsets[k + 1], jme);
+            total = total * jme + sum;
+        }
+        return total;
+    }
+
+    /**
+     * Evaluates the nutation sum in 0.0001 arc second.
+     * @param sine true for the longitude (sine) series, false for the obliquity (cosine) one
+     */
+    static double nutation(Nutation series, boolean sine, double jce,
+                           double x0, double x1, double x2, double x3, double x4) {
+        return Kernels.get().nutationSum(series.y, series.a, series.b, series.a.length, sine,
+                                         jce, x0, x1, x2, x3, x4);
+    }
+}
@@ -0,0 +1,44 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+/**
+ * Location independent terms of the SPA algorithm for one timestamp.
+ * They are filled by {@link SolarPositionSpaModel#timeTerms(long, double, SpaTimeTerms)} and
+ * can be shared by any number of locations at the same timestamp.
+ */
+public class SpaTimeTerms {
+    long epochSecond;
+    double deltaT;
+
+    double julianDay;
+    double julianEphemerisMillennium;
+    /* earth radius vector in AU */
+    double earthRadiusVector;
+    /* nutation in longitude in degree */
+    double longitudeNutation;
+    /* true ecliptic obliquity in degree */
+    double trueEclipticObliquity;
+    /* apparent sidereal time at Greenwich in degree */
+    double apparentSiderealTime;
+    /* geocentric sun right ascension in degree */
+    double rightAscension;
+    /* geocentric sun declination in degree */
+    double declination;
+    /* equation of time in minutes */
+    double equationOfTime;
+    /* equatorial horizontal parallax in degree */
+    double equatorialHorizontalParallax;
+
+    public long getEpochSecond() { return epochSecond; }
+    public double getDeltaT() { return deltaT; }
+    public double getJulianDay() { return julianDay; }
+    public double getJulianEphemerisMillennium() { return julianEphemerisMillennium; }
+    public double getEarthRadiusVector() { return earthRadiusVector; }
+    public double getLongitudeNutation() { return longitudeNutation; }
+    public double getTrueEclipticObliquity() { return trueEclipticObliquity; }
+    public double getApparentSiderealTime() { return apparentSiderealTime; }
+    public double getRightAscension() { return rightAscension; }
+    public double getDeclination() { return declination; }
+    public double getEquationOfTime() { return equationOfTime; }
+    public double getEquatorialHorizontalParallax() { return equatorialHorizontalParallax; }
+}
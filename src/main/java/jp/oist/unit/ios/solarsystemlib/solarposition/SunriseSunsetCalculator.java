@@ -0,0 +1,263 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.PreparedLocation;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.TimeUtils;
+
+/**
+ * Sunrise, sun transit and sunset times over a range of dates.
+ *
+ * <p>The estimate of each event follows appendix A.2 of SPA: the geocentric right ascension
+ * and declination of the previous, current and next day are interpolated through the day,
+ * and the three days of terms slide along the date range, so every day costs one evaluation
+ * of the SPA time terms. The estimate is then refined on the topocentric elevation without
+ * refraction, bracketed between the transit and the antitransit, to well below one second.</p>
+ *
+ * <p>Sunrise and sunset are when the top of the sun touches the horizon, that is the center at
+ * -(0.26667 + atmosRefract) degree. They are the ones around the transit of the local date,
+ * which is the transit between local midnight and the next one. When the sun stays up or
+ * down the whole day, sunrise and sunset are {@link #SUN_ALWAYS_UP} or
+ * {@link #SUN_ALWAYS_DOWN}; transit is always given.</p>
+ */
+public class SunriseSunsetCalculator {
+
+    /* sunrise and sunset of a polar day */
+    public static final long SUN_ALWAYS_UP = Long.MAX_VALUE;
+    /* sunrise and sunset of a polar night */
+    public static final long SUN_ALWAYS_DOWN = Long.MIN_VALUE;
+
+    /* apparent sidereal time advance in degree per day */
+    private static final double SIDEREAL_RATE = 360.985647;
+    /* convergence of the refinement in day, about 0.01 second */
+    private static final double TOLERANCE = 1e-7;
+    private static final int MAX_ITERATIONS = 30;
+
+    private final SolarPositionSpaModel spa;
+
+    public SunriseSunsetCalculator(ModelCollection factory) {
+        this(new SolarPositionSpaModel(factory));
+    }
+
+    public SunriseSunsetCalculator(SolarPositionSpaModel spa) {
+        this.spa = spa;
+    }
+
+    /**
+     * Fills the events of consecutive local dates at a location.
+     * @param location location of target place
+     * @param first first local date
+     * @param days number of dates
+     * @param offset offset of the local time from UTC
+     * @param sunrise sunrise in unix epoch seconds, or null
+     * @param transit sun transit in unix epoch seconds, or null
+     * @param sunset sunset in unix epoch seconds, or null
+     */
+    public void calculate(Location location, LocalDate first, int days, ZoneOffset offset,
+                          long[] sunrise, long[] transit, long[] sunset) {
+        PreparedLocation site = location.prepare();
+        calculate(site.latitude, site.longitude, site.elevation, first.toEpochDay(), days,
+                  offset.getTotalSeconds(), 0.5667, sunrise, transit, sunset);
+    }
+
+    /**
+     * Fills the events of consecutive local dates at one place.
+     * @param lat latitude of target place
+     * @param lng longitude of target place
+     * @param elev altitude of target place in meter
+     * @param firstEpochDay first local date in days from 1970-01-01
+     * @param days number of dates
+     * @param offsetSeconds offset of the local time from UTC in seconds
+     * @param atmosRefract atmospheric refraction at sunrise and sunset in degree
+     * @param sunrise sunrise in unix epoch seconds, or null
+     * @param transit sun transit in unix epoch seconds, or null
+     * @param sunset sunset in unix epoch seconds, or null
+     */
+    public void calculate(double lat, double lng, double elev, long firstEpochDay, int days,
+                          int offsetSeconds, double atmosRefract,
+                          long[] sunrise, long[] transit, long[] sunset) {
+        checkColumn(sunrise, days, "sunrise");
+        checkColumn(transit, days, "transit");
+        checkColumn(sunset, days, "sunset");
+
+        Day day = new Day(lat, lng, elev, -(0.26667 + atmosRefract));
+        long midnight = firstEpochDay * TimeUtils.SECONDS_PER_DAY - offsetSeconds;
+        SpaTimeTerms previous = terms(midnight - TimeUtils.SECONDS_PER_DAY, new SpaTimeTerms());
+        SpaTimeTerms current = terms(midnight, new SpaTimeTerms());
+        SpaTimeTerms next = terms(midnight + TimeUtils.SECONDS_PER_DAY, new SpaTimeTerms());
+
+        for (int i = 0; i < days; i++) {
+            day.set(previous, current, next);
+
+            double t = day.transit();
+            double r;
+            double s;
+            if (day.elevation(t) < day.horizon) {
+                r = s = Double.NEGATIVE_INFINITY;
+            } else {
+                // each side of the transit is checked, the declination moves through the day
+                double h0 = day.hourAngle(current.declination);
+                r = (day.elevation(t - 0.5) >= day.horizon) ? Double.POSITIVE_INFINITY
+                                                            : day.root(t - 0.5, t, t - h0 / 360);
+                s = (day.elevation(t + 0.5) >= day.horizon) ? Double.POSITIVE_INFINITY
+                                                            : day.root(t + 0.5, t, t + h0 / 360);
+            }
+
+            if (transit != null)
+                transit[i] = midnight + Math.round(t * TimeUtils.SECONDS_PER_DAY);
+            if (sunrise != null)
+                sunrise[i] = epochSecond(midnight, r);
+            if (sunset != null)
+                sunset[i] = epochSecond(midnight, s);
+
+            // slide the three days of terms
+            SpaTimeTerms reused = previous;
+            previous = current;
+            current = next;
+            midnight += TimeUtils.SECONDS_PER_DAY;
+            next = terms(midnight + TimeUtils.SECONDS_PER_DAY, reused);
+        }
+    }
+
+    private SpaTimeTerms terms(long epochSecond, SpaTimeTerms terms) {
+        double deltaT = DayContext.ofEpochSecond(epochSecond).getDeltaT();
+        return spa.timeTerms(epochSecond, deltaT, terms);
+    }
+
+    private static long epochSecond(long midnight, double fraction) {
+        if (fraction == Double.POSITIVE_INFINITY)
+            return SUN_ALWAYS_UP;
+        if (fraction == Double.NEGATIVE_INFINITY)
+            return SUN_ALWAYS_DOWN;
+        return midnight + Math.round(fraction * TimeUtils.SECONDS_PER_DAY);
+    }
+
+    private static void checkColumn(long[] column, int length, String name) {
+        if (column != null && column.length < length)
+            throw new IllegalArgumentException("\"" + name + "\" must have at least "
+                                               + length + " elements");
+    }
+
+    /**
+     * One local date; times are fractions of a day from the local midnight.
+     */
+    private class Day {
+        final double lat;
+        final double lng;
+        final double x;
+        final double y;
+        final double sinLat;
+        final double cosLat;
+        final double horizon;
+
+        final SpaTimeTerms at = new SpaTimeTerms();
+        final double[] ret = new double[SolarPositionSpaModel.TOPOCENTRIC_LENGTH];
+
+        double alpha0, alphaA, alphaB;
+        double delta0, deltaA, deltaB;
+        double nu0;
+
+        Day(double lat, double lng, double elev, double horizon) {
+            this.lat = lat;
+            this.lng = lng;
+            double u = spa.uterm(lat);
+            this.x = spa.xterm(u, lat, elev);
+            this.y = spa.yterm(u, lat, elev);
+            this.sinLat = Math.sin(Math.toRadians(lat));
+            this.cosLat = Math.cos(Math.toRadians(lat));
+            this.horizon = horizon;
+        }
+
+        void set(SpaTimeTerms previous, SpaTimeTerms current, SpaTimeTerms next) {
+            alpha0 = current.rightAscension;
+            alphaA = wrap(current.rightAscension - previous.rightAscension);
+            alphaB = wrap(next.rightAscension - current.rightAscension);
+            delta0 = current.declination;
+            deltaA = current.declination - previous.declination;
+            deltaB = next.declination - current.declination;
+            nu0 = current.apparentSiderealTime;
+            at.equatorialHorizontalParallax = current.equatorialHorizontalParallax;
+        }
+
+        /* interpolation of SPA A.2 */
+        double alpha(double n) {
+            return alpha0 + n * (alphaA + alphaB + (alphaB - alphaA) * n) / 2;
+        }
+
+        double delta(double n) {
+            return delta0 + n * (deltaA + deltaB + (deltaB - deltaA) * n) / 2;
+        }
+
+        /* geocentric local hour angle in -180..180 */
+        double localHourAngle(double n) {
+            return wrap(nu0 + SIDEREAL_RATE * n + lng - alpha(n));
+        }
+
+        /* topocentric elevation without refraction */
+        double elevation(double n) {
+            at.rightAscension = alpha(n);
+            at.declination = delta(n);
+            at.apparentSiderealTime = nu0 + SIDEREAL_RATE * n;
+            spa.topocentric(at, lat, lng, x, y, 0, 0, ret);
+            return ret[SolarPositionSpaModel.ELEVATION];
+        }
+
+        /* hour angle of the horizon crossing from the declination, 0..180 */
+        double hourAngle(double delta) {
+            double cosDelta = Math.cos(Math.toRadians(delta));
+            double arg = (Math.sin(Math.toRadians(horizon)) - sinLat * Math.sin(Math.toRadians(delta)))
+                    / (cosLat * cosDelta);
+            return Math.toDegrees(Math.acos(Math.max(-1, Math.min(1, arg))));
+        }
+
+        double transit() {
+            double n = (alpha0 - lng - nu0) / 360;
+            n -= Math.floor(n);
+            // the sun is on the meridian when the hour angle is 0
+            for (int i = 0; i < MAX_ITERATIONS; i++) {
+                double step = localHourAngle(n) / (SIDEREAL_RATE - (alphaA + alphaB) / 2);
+                n -= step;
+                if (Math.abs(step) < TOLERANCE)
+                    break;
+            }
+            return n;
+        }
+
+        /**
+         * Horizon crossing between the antitransit (below or at the horizon) and the transit
+         * (above it), by Newton steps kept inside the bracket.
+         */
+        double root(double below, double above, double guess) {
+            double n = Math.max(Math.min(below, above), Math.min(Math.max(below, above), guess));
+            for (int i = 0; i < MAX_ITERATIONS; i++) {
+                double f = elevation(n) - horizon;
+                if (f < 0)
+                    below = n;
+                else
+                    above = n;
+
+                // d(elevation)/dn from the geocentric hour angle
+                double h = Math.toRadians(localHourAngle(n));
+                double d = Math.toRadians(delta(n));
+                double e = Math.toRadians(ret[SolarPositionSpaModel.ELEVATION]);
+                double slope = -SIDEREAL_RATE * cosLat * Math.cos(d) * Math.sin(h) / Math.cos(e);
+
+                double next = n - f / slope;
+                if (!(next > Math.min(below, above) && next < Math.max(below, above)))
+                    next = (below + above) / 2;
+                if (Math.abs(next - n) < TOLERANCE)
+                    return next;
+                n = next;
+            }
+            return n;
+        }
+    }
+
+    private static double wrap(double degrees) {
+        return degrees - 360.0 * Math.round(degrees / 360.0);
+    }
+}
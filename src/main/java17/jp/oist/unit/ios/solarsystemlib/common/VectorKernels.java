@@ -0,0 +1,213 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.common;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels on the Vector API, at the preferred SIMD width of the machine. The lanes are the
+ * places or the samples of a batch, or the terms of a series of SPA; the remainder of the loop
+ * runs on the scalar kernels. Loaded by {@link Kernels} from the Java 17 layer of the
+ * multi-release jar.
+ */
+final class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double RADIANS = Math.PI / 180;
+    private static final double DEGREES = 180 / Math.PI;
+
+    private final ScalarKernels tail = ScalarKernels.INSTANCE;
+
+    VectorKernels() {
+        // fail here rather than in the first loop when the module is missing
+        DoubleVector.zero(SPECIES);
+    }
+
+    @Override
+    public String getName() {
+        return "vector-" + SPECIES.length();
+    }
+
+    /* terms of a series, evaluated on the lanes and summed in the scalar order: the lanes do
+       not reorder the sums, only the trigonometric functions differ from Math to rounding */
+    private static final ThreadLocal<double[]> TERMS =
+            ThreadLocal.withInitial(() -> new double[64]);
+
+    private static double[] terms(int n) {
+        double[] ret = TERMS.get();
+        if (ret.length < n) {
+            ret = new double[Math.max(n, ret.length * 2)];
+            TERMS.set(ret);
+        }
+        return ret;
+    }
+
+    private static double sum(double[] terms, int n) {
+        double sum = 0;
+        for (int i = 0; i < n; i++)
+            sum += terms[i];
+        return sum;
+    }
+
+    @Override
+    public double cosineSum(double[] amplitude, double[] phase, double[] frequency,
+                            int from, int to, double x) {
+        int n = to - from;
+        if (n < SPECIES.length())
+            return tail.cosineSum(amplitude, phase, frequency, from, to, x);
+        double[] terms = terms(n);
+        int i = 0;
+        int bound = SPECIES.loopBound(n);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector arg = DoubleVector.fromArray(SPECIES, frequency, from + i).mul(x)
+                    .add(DoubleVector.fromArray(SPECIES, phase, from + i));
+            DoubleVector.fromArray(SPECIES, amplitude, from + i)
+                    .mul(arg.lanewise(VectorOperators.COS)).intoArray(terms, i);
+        }
+        for (; i < n; i++)
+            terms[i] = amplitude[from + i] * Math.cos(phase[from + i] + frequency[from + i] * x);
+        return sum(terms, n);
+    }
+
+    @Override
+    public double nutationSum(double[][] y, double[] a, double[] b, int n, boolean sine,
+                              double jce, double x0, double x1, double x2, double x3,
+                              double x4) {
+        if (n < SPECIES.length())
+            return tail.nutationSum(y, a, b, n, sine, jce, x0, x1, x2, x3, x4);
+        VectorOperators.Unary trig = sine ? VectorOperators.SIN : VectorOperators.COS;
+        double[] terms = terms(n);
+        int i = 0;
+        int bound = SPECIES.loopBound(n);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector arg = DoubleVector.fromArray(SPECIES, y[0], i).mul(x0)
+                    .add(DoubleVector.fromArray(SPECIES, y[1], i).mul(x1))
+                    .add(DoubleVector.fromArray(SPECIES, y[2], i).mul(x2))
+                    .add(DoubleVector.fromArray(SPECIES, y[3], i).mul(x3))
+                    .add(DoubleVector.fromArray(SPECIES, y[4], i).mul(x4))
+                    .mul(RADIANS);
+            DoubleVector coefficient = DoubleVector.fromArray(SPECIES, b, i)
+                    .mul(jce).add(DoubleVector.fromArray(SPECIES, a, i));
+            coefficient.mul(arg.lanewise(trig)).intoArray(terms, i);
+        }
+        for (; i < n; i++) {
+            double arg = Math.toRadians(y[0][i] * x0 + y[1][i] * x1 + y[2][i] * x2
+                                        + y[3][i] * x3 + y[4][i] * x4);
+            terms[i] = (a[i] + b[i] * jce) * (sine ? Math.sin(arg) : Math.cos(arg));
+        }
+        return sum(terms, n);
+    }
+
+    @Override
+    public void topocentric(double siderealTime, double rightAscension,
+                            double declination, double parallax,
+                            double[] lat, double[] lng, double[] elev,
+                            double refractionScale, double atmosRefract, int n,
+                            double[] apparentZenith, double[] azimuth,
+                            double[] apparentElevation) {
+        double sinXi = Math.sin(Math.toRadians(parallax));
+        double sinDelta = Math.sin(Math.toRadians(declination));
+        double cosDelta = Math.cos(Math.toRadians(declination));
+        double horizon = -1.0 * (0.26667 + atmosRefract);
+
+        int i = 0;
+        int bound = SPECIES.loopBound(n);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector phi = DoubleVector.fromArray(SPECIES, lat, i).mul(RADIANS);
+            DoubleVector sinPhi = phi.lanewise(VectorOperators.SIN);
+            DoubleVector cosPhi = phi.lanewise(VectorOperators.COS);
+            DoubleVector u = phi.lanewise(VectorOperators.TAN).mul(0.99664719)
+                    .lanewise(VectorOperators.ATAN);
+            DoubleVector height = DoubleVector.fromArray(SPECIES, elev, i).div(6378140);
+            DoubleVector x = height.fma(cosPhi, u.lanewise(VectorOperators.COS));
+            DoubleVector y = height.fma(sinPhi, u.lanewise(VectorOperators.SIN).mul(0.99664719));
+
+            // the hour angle is only used through its sine and cosine, no need to reduce it
+            DoubleVector h = DoubleVector.fromArray(SPECIES, lng, i)
+                    .add(siderealTime - rightAscension).mul(RADIANS);
+            DoubleVector xSinXi = x.mul(sinXi);
+            DoubleVector denom = xSinXi.mul(h.lanewise(VectorOperators.COS)).neg().add(cosDelta);
+            DoubleVector deltaAlpha = xSinXi.mul(h.lanewise(VectorOperators.SIN)).neg()
+                    .lanewise(VectorOperators.ATAN2, denom);
+            DoubleVector deltaPrime = y.mul(-sinXi).add(sinDelta)
+                    .mul(deltaAlpha.lanewise(VectorOperators.COS))
+                    .lanewise(VectorOperators.ATAN2, denom);
+            DoubleVector hPrime = h.sub(deltaAlpha);
+            DoubleVector cosHPrime = hPrime.lanewise(VectorOperators.COS);
+
+            DoubleVector e0 = sinPhi.mul(deltaPrime.lanewise(VectorOperators.SIN))
+                    .add(cosPhi.mul(deltaPrime.lanewise(VectorOperators.COS)).mul(cosHPrime))
+                    .lanewise(VectorOperators.ASIN).mul(DEGREES);
+            VectorMask<Double> up = e0.compare(VectorOperators.GE, horizon);
+            DoubleVector deltaE = DoubleVector.broadcast(SPECIES, refractionScale)
+                    .div(DoubleVector.broadcast(SPECIES, 10.3).div(e0.add(5.11)).add(e0)
+                         .mul(RADIANS).lanewise(VectorOperators.TAN));
+            DoubleVector e = e0.add(deltaE, up);
+            DoubleVector gamma = hPrime.lanewise(VectorOperators.SIN)
+                    .lanewise(VectorOperators.ATAN2,
+                              cosHPrime.mul(sinPhi)
+                              .sub(deltaPrime.lanewise(VectorOperators.TAN).mul(cosPhi)))
+                    .mul(DEGREES);
+            DoubleVector az = gamma.add(180);
+            az = az.sub(360, az.compare(VectorOperators.GE, 360));
+
+            e.intoArray(apparentElevation, i);
+            e.neg().add(90).intoArray(apparentZenith, i);
+            az.intoArray(azimuth, i);
+        }
+        tail.topocentric(siderealTime, rightAscension, declination, parallax, lat, lng, elev,
+                         refractionScale, atmosRefract, i, n,
+                         apparentZenith, azimuth, apparentElevation);
+    }
+
+    @Override
+    public void projection(double surfaceTilt, double surfaceAzimuth,
+                           double[] zenith, double[] azimuth, int n, double[] projection) {
+        double cosTilt = Math.cos(Math.toRadians(surfaceTilt));
+        double sinTilt = Math.sin(Math.toRadians(surfaceTilt));
+        int i = 0;
+        int bound = SPECIES.loopBound(n);
+        for (; i < bound; i += SPECIES.length())
+            projection(cosTilt, sinTilt, surfaceAzimuth, zenith, azimuth, i)
+                    .intoArray(projection, i);
+        tail.projection(surfaceTilt, surfaceAzimuth, zenith, azimuth, i, n, projection);
+    }
+
+    @Override
+    public void haydavies(double surfaceTilt, double surfaceAzimuth,
+                          double[] zenith, double[] azimuth,
+                          double[] dni, double[] dniExtra, double[] dhi, int n,
+                          double[] skyDiffuse) {
+        double cosTilt = Math.cos(Math.toRadians(surfaceTilt));
+        double sinTilt = Math.sin(Math.toRadians(surfaceTilt));
+        double term2 = 0.5 * (1 + cosTilt);
+        int i = 0;
+        int bound = SPECIES.loopBound(n);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector cosZenith = DoubleVector.fromArray(SPECIES, zenith, i).mul(RADIANS)
+                    .lanewise(VectorOperators.COS);
+            DoubleVector rb = projection(cosTilt, sinTilt, surfaceAzimuth, zenith, azimuth, i)
+                    .div(cosZenith);
+            DoubleVector ai = DoubleVector.fromArray(SPECIES, dni, i)
+                    .div(DoubleVector.fromArray(SPECIES, dniExtra, i));
+            // ai rb + (1 - ai) term2
+            DoubleVector sky = ai.mul(rb).add(ai.neg().add(1).mul(term2))
+                    .mul(DoubleVector.fromArray(SPECIES, dhi, i));
+            sky.max(0.0).intoArray(skyDiffuse, i);
+        }
+        tail.haydavies(surfaceTilt, surfaceAzimuth, zenith, azimuth, dni, dniExtra, dhi, i, n,
+                       skyDiffuse);
+    }
+
+    private static DoubleVector projection(double cosTilt, double sinTilt, double surfaceAzimuth,
+                                           double[] zenith, double[] azimuth, int i) {
+        DoubleVector z = DoubleVector.fromArray(SPECIES, zenith, i).mul(RADIANS);
+        DoubleVector relative = DoubleVector.fromArray(SPECIES, azimuth, i)
+                .sub(surfaceAzimuth).mul(RADIANS);
+        return z.lanewise(VectorOperators.SIN).mul(sinTilt)
+                .mul(relative.lanewise(VectorOperators.COS))
+                .add(z.lanewise(VectorOperators.COS).mul(cosTilt));
+    }
+}
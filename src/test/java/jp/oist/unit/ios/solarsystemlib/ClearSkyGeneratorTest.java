@@ -0,0 +1,96 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib;
+
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.solarposition.DayContext;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionSpaModel;
+import junit.framework.TestCase;
+
+public class ClearSkyGeneratorTest extends TestCase {
+
+    private DefaultModelCollection models = new DefaultModelCollection();
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(models);
+
+    /* 2018-07-25T12:00:00Z, every 30 minutes over two UTC dates */
+    private static final long START = 1532520000L;
+    private static final long STEP = 1800;
+    private static final int STEPS = 60;
+
+    private Location[] sites = {
+        new Location(26.462, 127.831, 42.962),
+        new Location(35.681, 139.767),
+        new Location(-33.868, 151.209, 58.0),
+    };
+
+    public void testGenerate() {
+        ClearSkyGenerator generator = new ClearSkyGenerator(models, sites);
+        // chunks which do not divide the range
+        generator.setChunkSize(7);
+
+        double[][] ghi = new double[sites.length][STEPS];
+        double[][] dni = new double[sites.length][STEPS];
+        double[][] dhi = new double[sites.length][STEPS];
+        int[] next = new int[1];
+        generator.generate(START, STEP, STEPS, (site, start, offset, length, g, n, d) -> {
+            // chunks in time order, then sites in order
+            assertEquals(next[0] % sites.length, site);
+            assertEquals((next[0] / sites.length) * 7, offset);
+            assertEquals(START + offset * STEP, start);
+            assertEquals(Math.min(7, STEPS - offset), length);
+            next[0]++;
+            System.arraycopy(g, 0, ghi[site], offset, length);
+            System.arraycopy(n, 0, dni[site], offset, length);
+            System.arraycopy(d, 0, dhi[site], offset, length);
+        });
+        assertEquals(9 * sites.length, next[0]);
+
+        for (int s = 0; s < sites.length; s++) {
+            double pressure = sites[s].prepare().pressure;
+            for (int k = 0; k < STEPS; k++) {
+                long t = START + k * STEP;
+                SolarPosition.Variable sp = spa.estimate(t, sites[s], null, null);
+                double dniExtra = models.irradiance().extraRadiation(
+                        DayContext.ofEpochSecond(t).getDayOfYear());
+                Irradiance.Variable clear = ClearSky.simplified_solis(
+                        sp.getApparentElevation(), 0.1, 1, pressure, dniExtra);
+                assertEquals(clear.ghi, ghi[s][k], 1e-9);
+                assertEquals(clear.dni, dni[s][k], 1e-9);
+                assertEquals(clear.dhi, dhi[s][k], 1e-9);
+            }
+        }
+
+        // one site into buffers of the whole range, with the default chunks
+        double[] siteGhi = new double[STEPS];
+        double[] siteDhi = new double[STEPS];
+        new ClearSkyGenerator(models, sites).generate(1, START, STEP, STEPS,
+                                                      siteGhi, null, siteDhi);
+        for (int k = 0; k < STEPS; k++) {
+            assertEquals(ghi[1][k], siteGhi[k]);
+            assertEquals(dhi[1][k], siteDhi[k]);
+        }
+    }
+
+    public void testArguments() {
+        ClearSkyGenerator generator = new ClearSkyGenerator(models, sites);
+        try {
+            generator.setChunkSize(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            generator.generate(START, STEP, STEPS, 2, 4, (s, t, o, l, g, n, d) -> { });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            generator.generate(0, START, STEP, STEPS, new double[STEPS - 1], null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib;
+
+import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import junit.framework.TestCase;
+
+public class ClearSkyTest extends TestCase {
+
+    /* apparent elevation, aod700, precipitable water, pressure, dni extra, ghi, dni, dhi */
+    private static final double[][] EXPECTED = {
+        {30, 0.1, 1, 101325, 1361, 475.8293046429868, 777.8511387961237, 93.67382757107625},
+        {60, 0.03, 2.5, 90000, 1400, 935.9300777571337, 992.1678628818918, 73.77872806364928},
+        {5, 0.3, 0.1, 100720, 1320, 26.23980549321055, 76.46923460079648, 26.17841980886718},
+        {-3, 0.1, 1, 101325, 1361, 0.0, 0.0, 0.0},
+    };
+
+    public void testSimplifiedSolis() {
+        for (double[] x : EXPECTED) {
+            Irradiance.Variable clear = ClearSky.simplified_solis(x[0], x[1], x[2], x[3], x[4]);
+            assertEquals(x[5], clear.ghi, 1e-9);
+            assertEquals(x[6], clear.dni, 1e-9);
+            assertEquals(x[7], clear.dhi, 1e-9);
+
+            // exact coefficients, without the quantization of the cache
+            clear = new ClearSky.SolisCoefficients(x[1], x[2], x[3]).estimate(x[0], x[4]);
+            assertEquals(x[5], clear.ghi, 1e-9);
+            assertEquals(x[6], clear.dni, 1e-9);
+            assertEquals(x[7], clear.dhi, 1e-9);
+        }
+    }
+
+    public void testCache() {
+        ClearSky.SolisCoefficients coefficients = ClearSky.SolisCoefficients.of(0.1, 1, 100720);
+        assertSame(coefficients, ClearSky.SolisCoefficients.of(0.1, 1, 100720));
+        // same quantized state
+        assertSame(coefficients, ClearSky.SolisCoefficients.of(0.1 + 1e-9, 1, 100720.0001));
+        assertNotSame(coefficients, ClearSky.SolisCoefficients.of(0.1, 1, 100721));
+        // water below 0.2 cm is 0.2 cm
+        assertSame(ClearSky.SolisCoefficients.of(0.1, 0.2, 100720),
+                   ClearSky.SolisCoefficients.of(0.1, 0.05, 100720));
+        assertEquals(0.2, ClearSky.SolisCoefficients.of(0.1, 0.05, 100720).precipitableWater);
+
+        // within the steps of the cache, close to the exact coefficients
+        double aod700 = 0.123456789;
+        double water = 1.23456789;
+        double pressure = 98765.4321;
+        Irradiance.Variable exact = new ClearSky.SolisCoefficients(aod700, water, pressure)
+                .estimate(10.0, 1361);
+        Irradiance.Variable cached = ClearSky.simplified_solis(10.0, aod700, water, pressure,
+                                                               1361);
+        assertEquals(exact.ghi, cached.ghi, exact.ghi * 1e-6);
+        assertEquals(exact.dni, cached.dni, exact.dni * 1e-6);
+        assertEquals(exact.dhi, cached.dhi, exact.dhi * 1e-6);
+    }
+
+    public void testBatch() {
+        int n = 91;
+        double[] elevation = new double[n];
+        for (int i = 0; i < n; i++)
+            elevation[i] = i - 1;
+        double[] ghi = new double[n];
+        double[] dni = new double[n];
+        double[] dhi = new double[n];
+        ClearSky.SolisCoefficients coefficients = ClearSky.SolisCoefficients.of(0.1, 1, 100720);
+        coefficients.estimate(elevation, 1361, 0, n, ghi, dni, null);
+        for (int i = 0; i < n; i++) {
+            Irradiance.Variable clear = coefficients.estimate(elevation[i], 1361);
+            assertEquals(clear.ghi, ghi[i]);
+            assertEquals(clear.dni, dni[i]);
+            assertEquals(0.0, dhi[i]);
+        }
+
+        ClearSky.simplified_solis(elevation, 0.1, 1, 100720, 1361, 10, 20, ghi, dni, dhi);
+        for (int i = 10; i < 20; i++) {
+            Irradiance.Variable clear = ClearSky.simplified_solis(elevation[i], 0.1, 1, 100720,
+                                                                  1361);
+            assertEquals(clear.dhi, dhi[i]);
+        }
+    }
+
+    public void testIneichen() {
+        // pvlib test_ineichen_scalar_input
+        Irradiance.Variable clear = ClearSky.ineichen(10, 1, 3, 0, 1364);
+        assertEquals(0, TestUtils.compareTo(1038.159219, clear.ghi, 6));
+        assertEquals(0, TestUtils.compareTo(942.2081860378344, clear.dni, 6));
+        assertEquals(0, TestUtils.compareTo(110.26529293612793, clear.dhi, 6));
+
+        clear = ClearSky.ineichen(95, Double.NaN, 3, 0, 1364);
+        assertEquals(0.0, clear.ghi);
+        assertEquals(0.0, clear.dni);
+        assertEquals(0.0, clear.dhi);
+
+        ClearSky.IneichenCoefficients coefficients
+                = new ClearSky.IneichenCoefficients(3.5, 1200, false);
+        double[] zenith = {0, 30, 60, 85, 89.5, 95};
+        double[] airmass = {0.87, 1.0, 1.74, 9.4, 23.0, Double.NaN};
+        double[] ghi = new double[zenith.length];
+        double[] dni = new double[zenith.length];
+        double[] dhi = new double[zenith.length];
+        coefficients.estimate(zenith, airmass, 1361, 0, zenith.length, ghi, dni, dhi);
+        for (int i = 0; i < zenith.length; i++) {
+            clear = coefficients.estimate(zenith[i], airmass[i], 1361);
+            assertEquals(clear.ghi, ghi[i]);
+            assertEquals(clear.dni, dni[i]);
+            assertEquals(clear.dhi, dhi[i]);
+        }
+
+        // the enhancement of Perez raises ghi at high airmass only
+        ClearSky.IneichenCoefficients perez = new ClearSky.IneichenCoefficients(3.5, 1200, true);
+        assertTrue(perez.estimate(85, 9.4, 1361).ghi > 1.01 * ghi[3]);
+        assertEquals(ghi[0], perez.estimate(0, 0.87, 1361).ghi, 0.01 * ghi[0]);
+    }
+}
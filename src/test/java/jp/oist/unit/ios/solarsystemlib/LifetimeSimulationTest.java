@@ -0,0 +1,90 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib;
+
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PvSystem;
+import junit.framework.TestCase;
+
+public class LifetimeSimulationTest extends TestCase {
+
+    private Location loc = new Location(26.462, 127.831, 42.962);
+    private PvSystem system = new PvSystem(27.5, 180.0, 6, Irradiance.SurfaceType.GRASS);
+    private ModelChain chain;
+
+    public void setUp() {
+        Map<String, Object> opts = new HashMap<>();
+        opts.put("pvWattsDc", new Object[] {233.0 * 6.0, -0.003});
+        chain = new ModelChain(system, loc, opts);
+        chain.setModelCollection(new DefaultModelCollection());
+    }
+
+    public void testRun() {
+        long commissioning = ZonedDateTime.parse("2030-01-01T00:00:00+09:00").toEpochSecond();
+        LifetimeSimulation simulation = new LifetimeSimulation(chain, 2040, commissioning);
+        simulation.setDegradationRate(0.005);
+        assertEquals(1.0, simulation.degradation(commissioning + 86400));
+        assertEquals(0.95, simulation.degradation(commissioning + 3653L * 86400), 1e-12);
+
+        // the same summer day 2, 10 and 25 years after the commissioning, hourly
+        int[] years = { 2032, 2040, 2055 };
+        for (int year : years) {
+            long start = ZonedDateTime.parse(year + "-07-10T00:30:00+09:00").toEpochSecond();
+            long[] epochSeconds = new long[24];
+            Irradiance.Variable[] irrad = new Irradiance.Variable[24];
+            for (int i = 0; i < 24; i++) {
+                epochSeconds[i] = start + 3600L * i;
+                irrad[i] = new Irradiance.Variable(600.0, 500.0, 1320.0, 150.0, null);
+            }
+            ModelChain.Result[] results = simulation.run(epochSeconds, irrad, null, null, null);
+
+            double factor = 1.0 - 0.005 * (year - 2030);
+            double expected = 0;
+            double energy = 0;
+            for (int i = 0; i < 24; i++) {
+                expected += chain.pvWatts(epochSeconds[i], irrad[i], null, null, null).dcPower;
+                energy += results[i].dcPower;
+            }
+            assertEquals(expected * factor, energy, expected * 0.001);
+        }
+    }
+
+    public void testDegradation() {
+        LifetimeSimulation simulation = new LifetimeSimulation(chain, 2040, 0L);
+        simulation.setDegradation(new double[] { 1.0, 0.98, 0.97 });
+        assertEquals(1.0, simulation.degradation(-86400));
+        assertEquals(0.98, simulation.degradation(400L * 86400));
+        assertEquals(0.97, simulation.degradation(40000L * 86400));
+
+        long t = ZonedDateTime.parse("2045-07-10T12:00:00+09:00").toEpochSecond();
+        Irradiance.Variable irrad = new Irradiance.Variable(600.0, 500.0, 1320.0, 150.0, null);
+        ModelChain.Result full = simulation.getModelChain().pvWatts(t, irrad, null, null, null);
+        ModelChain.Result aged = simulation.run(new long[] { t },
+                                                new Irradiance.Variable[] { irrad },
+                                                null, null, null)[0];
+        assertEquals(full.dcPower * 0.97, aged.dcPower, 1e-9);
+
+        try {
+            simulation.setDegradationRate(1.5);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // interval mode does not run on the replayed geometry
+        Map<String, Object> hourly = new HashMap<>(chain.options);
+        hourly.put("interval", 3600);
+        try {
+            new LifetimeSimulation(new ModelChain(system, loc, hourly), 2040, 0L);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // an interval of 0 is the instant of the timestamp, the default
+        hourly.put("interval", 0);
+        new LifetimeSimulation(new ModelChain(system, loc, hourly), 2040, 0L);
+    }
+}
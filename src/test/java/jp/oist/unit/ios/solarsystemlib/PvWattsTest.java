@@ -8,7 +8,10 @@ import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
 import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
 import jp.oist.unit.ios.solarsystemlib.pvsystem.PvSystem;
+import jp.oist.unit.ios.solarsystemlib.solarposition.IntervalSolarPosition;
 import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionCachedModel;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionModel;
 import junit.framework.TestCase;
 
 import java.time.ZonedDateTime;
@@ -58,5 +61,142 @@ public class PvWattsTest extends TestCase {
 
         assertEquals(0, TestUtils.compareTo(result.dcPower, 347.20117099969667, 4));
         assertEquals(0, TestUtils.compareTo(result.acPower, 331.34872543576114, 4));
+
+        ModelChain.Result epochResult = modelChain.pvWatts(ts.toEpochSecond(), irrad,
+                                                           pressure, tempAir, windSpeed);
+        assertEquals(result.dcPower, epochResult.dcPower, 1e-9);
+        assertEquals(result.acPower, epochResult.acPower, 1e-9);
+    }
+
+    public void testNight() {
+        Map<String, Object> opts = new HashMap<>();
+        opts.put("pvWattsDc", new Object[] {233.0 * 6.0, -0.003});
+
+        ModelChain modelChain = new ModelChain(system, loc, opts);
+        modelChain.setModelCollection(models);
+
+        // every 10 minutes of 3 days
+        long start = ZonedDateTime.parse("2017-07-10T00:00:00+09:00").toEpochSecond();
+        int n = 3 * 144;
+        long[] epochSeconds = new long[n];
+        Irradiance.Variable[] irrad = new Irradiance.Variable[n];
+        int night = 0;
+        for (int i = 0; i < n; i++) {
+            epochSeconds[i] = start + 600L * i;
+            SolarPosition.Variable pos = models.solarposition().estimate(epochSeconds[i], loc);
+            double ghi = Math.max(0.0, 900.0 * Math.cos(Math.toRadians(pos.getZenith())));
+            irrad[i] = irradiance.getIrradiance(pos, ghi);
+            if (pos.getApparentElevation() <= 0.0)
+                night++;
+        }
+
+        ModelChain.Result[] results = modelChain.pvWatts(epochSeconds, irrad, null, null, null);
+        int zero = 0;
+        for (int i = 0; i < n; i++) {
+            ModelChain.Result single = modelChain.pvWatts(epochSeconds[i], irrad[i],
+                                                          null, null, null);
+            assertEquals(single.dcPower, results[i].dcPower, 1e-9);
+            assertEquals(single.acPower, results[i].acPower, 1e-9);
+            if (results[i] == ModelChain.Result.ZERO)
+                zero++;
+        }
+        assertEquals(night, zero);
+
+        // a higher threshold cuts the low sun too
+        opts.put("minSolarElevation", 10.0);
+        results = modelChain.pvWatts(epochSeconds, irrad, null, null, null);
+        for (int i = 0; i < n; i++) {
+            SolarPosition.Variable pos = models.solarposition().estimate(epochSeconds[i], loc);
+            assertEquals(pos.getApparentElevation() <= 10.0,
+                         results[i] == ModelChain.Result.ZERO);
+        }
+
+        // the sun below the horizon never runs the chain
+        opts.put("minSolarElevation", -5.0);
+        try {
+            modelChain.pvWatts(epochSeconds, irrad, null, null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testInterval() {
+        Map<String, Object> opts = new HashMap<>();
+        opts.put("pvWattsDc", new Object[] {233.0 * 6.0, -0.003});
+        ModelChain instant = new ModelChain(system, loc, opts);
+        instant.setModelCollection(models);
+
+        Map<String, Object> hourly = new HashMap<>(opts);
+        hourly.put("interval", 3600);
+        ModelChain modelChain = new ModelChain(system, loc, hourly);
+        modelChain.setModelCollection(models);
+
+        // hour ending timestamps of a day, irradiance constant during the hour
+        long start = ZonedDateTime.parse("2017-07-10T01:00:00+09:00").toEpochSecond();
+        int n = 24;
+        long[] epochSeconds = new long[n];
+        Irradiance.Variable[] irrad = new Irradiance.Variable[n];
+        double[] tempAir = new double[n];
+        double[] windSpeed = new double[n];
+        for (int i = 0; i < n; i++) {
+            epochSeconds[i] = start + 3600L * i;
+            irrad[i] = new Irradiance.Variable(600.0, 500.0, 1320.0, 150.0, null);
+            tempAir[i] = 25.0;
+            windSpeed[i] = 1.0;
+        }
+        ModelChain.Result[] results = modelChain.pvWatts(epochSeconds, irrad, null, tempAir,
+                                                         windSpeed);
+
+        for (int i = 0; i < n; i++) {
+            // average of the chain on every minute of the hour, away from the low sun where
+            // the chain is far from linear; the dark hours are skipped as a whole
+            long from = epochSeconds[i] - 3600;
+            if (i >= 8 && i < 18) {
+                double dc = 0;
+                for (int m = 0; m < 60; m++) {
+                    long t = from + 60 * m + 30;
+                    dc += instant.pvWatts(t, irrad[i], null, 25.0, 1.0).dcPower / 60;
+                }
+                assertEquals(dc, results[i].dcPower, dc * 0.005);
+            }
+            ModelChain.Result first = instant.pvWatts(from, irrad[i], null, 25.0, 1.0);
+            ModelChain.Result last = instant.pvWatts(from + 3600, irrad[i], null, 25.0, 1.0);
+            boolean dark = first == ModelChain.Result.ZERO && last == ModelChain.Result.ZERO;
+            assertEquals(dark, results[i] == ModelChain.Result.ZERO);
+
+            ModelChain.Result single = modelChain.pvWatts(epochSeconds[i], irrad[i],
+                                                          null, 25.0, 1.0);
+            assertEquals(single.dcPower, results[i].dcPower, 1e-9);
+        }
+
+        // a negative, fractional or too long interval is rejected, not truncated
+        for (Object interval : new Object[] { -3600, 1800.5,
+                                              IntervalSolarPosition.MAX_INTERVAL + 1 }) {
+            hourly.put("interval", interval);
+            try {
+                modelChain.pvWatts(epochSeconds[12], irrad[12], null, 25.0, 1.0);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        hourly.put("interval", 3600);
+
+        // interval mode runs on SPA, it does not bypass another solar position model
+        SolarPositionCachedModel cached = new SolarPositionCachedModel(
+                models, models.getSolarPositionModel(), 100);
+        modelChain.setModelCollection(new DefaultModelCollection() {
+            @Override
+            public SolarPositionModel getSolarPositionModel() {
+                return cached;
+            }
+        });
+        try {
+            modelChain.pvWatts(epochSeconds[12], irrad[12], null, 25.0, 1.0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib;
+
+import jp.oist.unit.ios.solarsystemlib.atomsphere.Atmosphere;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.Consts;
+import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPositionSpaModel;
+import junit.framework.TestCase;
+
+public class SolarRasterTest extends TestCase {
+
+    private DefaultModelCollection models = new DefaultModelCollection();
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(models);
+
+    /* 2018-07-26T00:00:00Z, every 3 hours */
+    private static final long START = 1532563200L;
+    private static final int STEPS = 8;
+
+    private void check(SolarRaster raster, double[] altitude) {
+        int pixels = raster.getPixels();
+        double[] apparentZenith = new double[STEPS * pixels];
+        double[] azimuth = new double[STEPS * pixels];
+        double[] ghi = new double[STEPS * pixels];
+        double[] dhi = new double[STEPS * pixels];
+        raster.compute(START, 10800, STEPS, 25.0, apparentZenith, azimuth, ghi, null, dhi);
+
+        for (int k = 0; k < STEPS; k++) {
+            long t = START + 10800L * k;
+            double dniExtra = raster.extraRadiation(t);
+            for (int r = 0; r < raster.getRows(); r++) {
+                for (int c = 0; c < raster.getColumns(); c++) {
+                    int pixel = r * raster.getColumns() + c;
+                    Double elevation = (altitude == null) ? null : altitude[pixel];
+                    double pressure = (altitude == null) ? Consts.DEFAULT_PRESSURE
+                                                         : Atmosphere.alt2pres(elevation);
+                    Location location = new Location(raster.getLatitude(r),
+                                                     raster.getLongitude(c), elevation);
+                    // sea level sites take the pressure of the location
+                    SolarPosition.Variable sp = spa.estimate(t, location,
+                            (altitude == null) ? null : pressure, 25.0);
+
+                    int i = k * pixels + pixel;
+                    assertEquals(sp.getApparentZenith(), apparentZenith[i], 1e-9);
+                    assertEquals(sp.getAzimuth(), azimuth[i], 1e-9);
+
+                    Irradiance.Variable clear = ClearSky.simplified_solis(
+                            sp.getApparentElevation(), 0.1, 1, pressure, dniExtra);
+                    assertEquals(clear.ghi, ghi[i], 1e-6);
+                    assertEquals(clear.dhi, dhi[i], 1e-6);
+                }
+            }
+        }
+    }
+
+    public void testCompute() {
+        // north up, 5 x 7 pixels over Okinawa to Kyushu
+        SolarRaster raster = new SolarRaster(models, 33.0, -1.5, 5, 124.0, 1.5, 7, null);
+        check(raster, null);
+    }
+
+    public void testAltitude() {
+        double[] altitude = new double[4 * 3];
+        for (int i = 0; i < altitude.length; i++)
+            altitude[i] = 250.0 * i;
+        SolarRaster raster = new SolarRaster(models, 35.0, 0.5, 4, 138.0, 0.5, 3, altitude);
+        check(raster, altitude);
+
+        try {
+            new SolarRaster(models, 35.0, 0.5, 4, 138.0, 0.5, 4, altitude);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
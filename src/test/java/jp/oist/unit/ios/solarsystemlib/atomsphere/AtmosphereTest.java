@@ -33,4 +33,17 @@ public class AtmosphereTest extends TestCase {
         assertEquals(0, TestUtils.compareTo(am.getRelativeAirmass(), 1.007802, scale));
         assertEquals(0, TestUtils. compareTo(am.getAbsoluteAirmass(),1.002679, scale));
     }
+
+    public void testGetAirmassPreparedLocation() {
+        ZonedDateTime ts = ZonedDateTime.of(2017,7, 10, 13, 0, 1, 0, TZ);
+        SolarPosition.Variable sp = loc.getSolarPosition(ts, pressure, tempAir);
+
+        Atmosphere atmosphere = new Atmosphere(new DefaultModelCollection());
+        Airmass am = atmosphere.getAirmass(sp, loc.altitude);
+        Airmass prepared = atmosphere.getAirmass(sp, loc.prepare());
+
+        assertSame(loc.prepare(), loc.prepare());
+        assertEquals(am.getRelativeAirmass(), prepared.getRelativeAirmass(), 1e-12);
+        assertEquals(am.getAbsoluteAirmass(), prepared.getAbsoluteAirmass(), 1e-12);
+    }
 }
\ No newline at end of file
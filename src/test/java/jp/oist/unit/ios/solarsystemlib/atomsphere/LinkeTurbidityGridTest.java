@@ -0,0 +1,118 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.atomsphere;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import jp.oist.unit.ios.solarsystemlib.ClearSky;
+import jp.oist.unit.ios.solarsystemlib.Location;
+import junit.framework.TestCase;
+
+public class LinkeTurbidityGridTest extends TestCase {
+
+    /* 4 x 8 pixels of 45 degree over the globe, north up from 180W */
+    private static final int ROWS = 4;
+    private static final int COLUMNS = 8;
+
+    private Path file;
+    private LinkeTurbidityGrid grid;
+
+    /* turbidity of a pixel, linear in the row, the column and the month */
+    private static double value(double row, double column, int month) {
+        return 0.05 * (40 + 4 * row + column + month);
+    }
+
+    @Override
+    protected void setUp() throws IOException {
+        byte[] values = new byte[ROWS * COLUMNS * 12];
+        for (int r = 0; r < ROWS; r++)
+            for (int c = 0; c < COLUMNS; c++)
+                for (int m = 0; m < 12; m++)
+                    values[(r * COLUMNS + c) * 12 + m] = (byte)(40 + 4 * r + c + m);
+        file = Files.createTempFile("turbidity", ".bin");
+        LinkeTurbidityGrid.write(file, 67.5, -45, ROWS, -157.5, 45, COLUMNS, 0.05, values);
+        grid = new LinkeTurbidityGrid(file);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        grid = null;
+        Files.deleteIfExists(file);
+    }
+
+    public void testMonthly() {
+        assertEquals(ROWS, grid.getRows());
+        assertEquals(COLUMNS, grid.getColumns());
+
+        // center of a pixel
+        double[] monthly = grid.monthly(22.5, -22.5);
+        for (int m = 0; m < 12; m++)
+            assertEquals(value(1, 3, m), monthly[m], 1e-12);
+
+        // between four centers
+        monthly = grid.monthly(0.0, 0.0);
+        for (int m = 0; m < 12; m++)
+            assertEquals(value(1.5, 3.5, m), monthly[m], 1e-12);
+
+        // across the date line, between the last and the first column
+        monthly = grid.monthly(-22.5, 180.0);
+        assertEquals(value(2, 3.5, 0), monthly[0], 1e-12);
+        assertEquals(monthly[0], grid.monthly(-22.5, -180.0)[0], 1e-12);
+
+        // clamped to the centers of the first and the last row
+        assertEquals(value(0, 0, 5), grid.monthly(90.0, -157.5)[5], 1e-12);
+        assertEquals(value(3, 0, 5), grid.monthly(-90.0, -157.5)[5], 1e-12);
+    }
+
+    private static long epochDay(int year, int month, int day) {
+        return LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    public void testInterpolate() {
+        double[] monthly = new double[12];
+        for (int m = 0; m < 12; m++)
+            monthly[m] = 2.0 + 0.1 * m;
+
+        // middle of February, day 45 of a common year
+        assertEquals(monthly[1], LinkeTurbidityGrid.interpolate(monthly, epochDay(2019, 2, 14)),
+                     1e-12);
+        // day 45 of a leap year is half a day before the middle
+        assertEquals(monthly[1] - 0.5 / 30 * 0.1,
+                     LinkeTurbidityGrid.interpolate(monthly, epochDay(2020, 2, 14)), 1e-12);
+        // continuous over the new year, between December and January
+        double dec31 = LinkeTurbidityGrid.interpolate(monthly, epochDay(2019, 12, 31));
+        double jan1 = LinkeTurbidityGrid.interpolate(monthly, epochDay(2020, 1, 1));
+        assertEquals(monthly[11] + 15.5 / 31 * (monthly[0] - monthly[11]), dec31, 1e-12);
+        assertEquals(monthly[11] + 16.5 / 31 * (monthly[0] - monthly[11]), jan1, 1e-12);
+    }
+
+    public void testSite() {
+        Location location = new Location(22.5, -22.5, 1500.0);
+        LinkeTurbidityGrid.Site site = grid.site(location);
+        assertEquals(1500.0, site.getAltitude());
+        assertEquals(value(1, 3, 6), site.getMonthly(7), 1e-12);
+
+        long day = epochDay(2019, 7, 20);
+        assertEquals(grid.turbidity(22.5, -22.5, day), site.turbidity(day), 1e-12);
+        ClearSky.IneichenCoefficients coefficients = site.ineichen(day);
+        assertSame(coefficients, site.ineichen(day));
+        assertEquals(site.turbidity(day), coefficients.linkeTurbidity);
+        assertEquals(1500.0, coefficients.altitude);
+        assertNotSame(coefficients, site.ineichen(day + 1));
+    }
+
+    public void testFile() throws IOException {
+        Path other = Files.createTempFile("turbidity", ".bin");
+        try {
+            Files.write(other, new byte[] {0, 1, 2, 3});
+            new LinkeTurbidityGrid(other);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        } finally {
+            Files.deleteIfExists(other);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.common;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the kernels of this runtime, vector ones when available, with the scalar ones.
+ */
+public class KernelsTest extends TestCase {
+
+    private Kernels kernels = Kernels.get();
+    private Kernels scalar = Kernels.scalar();
+    private Random random = new Random(20180726L);
+
+    /* not a multiple of any SIMD width, so the remainder loops run too */
+    private static final int N = 67;
+
+    private double[] uniform(double min, double max) {
+        double[] ret = new double[N];
+        for (int i = 0; i < N; i++)
+            ret[i] = min + (max - min) * random.nextDouble();
+        return ret;
+    }
+
+    /* the terms of the series are summed in the same order, each one to rounding */
+    public void testSeries() {
+        double[] a = uniform(0, 1e8);
+        double[] b = uniform(0, 6.3);
+        double[] c = uniform(0, 1e6);
+        for (int from : new int[] { 0, 3 }) {
+            assertEquals(scalar.cosineSum(a, b, c, from, N, 0.0187),
+                         kernels.cosineSum(a, b, c, from, N, 0.0187), 1e-5);
+        }
+
+        double[][] y = new double[5][];
+        for (int j = 0; j < 5; j++)
+            y[j] = uniform(-2, 2);
+        double[] coefficient = uniform(-1e5, 1e5);
+        double[] rate = uniform(-100, 100);
+        for (boolean sine : new boolean[] { true, false }) {
+            assertEquals(scalar.nutationSum(y, coefficient, rate, N, sine, 0.187,
+                                            297.9, 357.5, 134.9, 93.3, 125.0),
+                         kernels.nutationSum(y, coefficient, rate, N, sine, 0.187,
+                                             297.9, 357.5, 134.9, 93.3, 125.0), 1e-8);
+        }
+    }
+
+    public void testTopocentric() {
+        double[] lat = uniform(-89, 89);
+        double[] lng = uniform(-180, 180);
+        double[] elev = uniform(0, 4000);
+        double[][] expected = new double[3][N];
+        double[][] actual = new double[3][N];
+        scalar.topocentric(137.2, 125.6, 19.4, 0.00244, lat, lng, elev, 0.0169, 0.5667, N,
+                           expected[0], expected[1], expected[2]);
+        kernels.topocentric(137.2, 125.6, 19.4, 0.00244, lat, lng, elev, 0.0169, 0.5667, N,
+                            actual[0], actual[1], actual[2]);
+        for (int i = 0; i < N; i++) {
+            assertEquals(expected[0][i], actual[0][i], 1e-9);
+            assertEquals(expected[1][i], actual[1][i], 1e-9);
+            assertEquals(expected[2][i], actual[2][i], 1e-9);
+        }
+    }
+
+    public void testTransposition() {
+        double[] zenith = uniform(0, 89);
+        double[] azimuth = uniform(0, 360);
+        double[] dni = uniform(0, 900);
+        double[] dniExtra = uniform(1320, 1410);
+        double[] dhi = uniform(0, 300);
+        double[] expected = new double[N];
+        double[] actual = new double[N];
+
+        scalar.projection(27.5, 225.0, zenith, azimuth, N, expected);
+        kernels.projection(27.5, 225.0, zenith, azimuth, N, actual);
+        for (int i = 0; i < N; i++)
+            assertEquals(expected[i], actual[i], 1e-12);
+
+        scalar.haydavies(27.5, 225.0, zenith, azimuth, dni, dniExtra, dhi, N, expected);
+        kernels.haydavies(27.5, 225.0, zenith, azimuth, dni, dniExtra, dhi, N, actual);
+        for (int i = 0; i < N; i++)
+            assertEquals(expected[i], actual[i], 1e-9);
+    }
+}
@@ -0,0 +1,33 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.common;
+
+import java.time.LocalDate;
+
+import junit.framework.TestCase;
+
+public class TimeUtilsTest extends TestCase {
+
+    public void testCalendarFields() {
+        // 1600-01-01 to 2400-12-31, across the 100 and 400 year rules
+        long first = LocalDate.of(1600, 1, 1).toEpochDay();
+        long last = LocalDate.of(2400, 12, 31).toEpochDay();
+        for (long day = first; day <= last; day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            assertEquals(date.getYear(), TimeUtils.year(day));
+            assertEquals(date.getMonthValue(), TimeUtils.month(day));
+            assertEquals(date.getDayOfYear(), TimeUtils.dayOfYear(day));
+            assertEquals(day, TimeUtils.daysFromCivil(date.getYear(), date.getMonthValue(),
+                                                      date.getDayOfMonth()));
+        }
+    }
+
+    public void testEpochDay() {
+        assertEquals(0, TimeUtils.epochDay(0, 0));
+        assertEquals(-1, TimeUtils.epochDay(-1, 0));
+        // 2018-07-26T23:30:00Z is already 27th in +09:00
+        long epochSecond = 1532647800L;
+        assertEquals(LocalDate.of(2018, 7, 26).toEpochDay(), TimeUtils.epochDay(epochSecond, 0));
+        assertEquals(LocalDate.of(2018, 7, 27).toEpochDay(),
+                     TimeUtils.epochDay(epochSecond, 9 * 3600));
+    }
+}
@@ -0,0 +1,68 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TinyLfuCacheTest extends TestCase {
+
+    public void testBounded() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(1000);
+        for (int i = 0; i < 10000; i++) {
+            if (cache.get(i) == null)
+                cache.put(i, i);
+        }
+        assertTrue(cache.size() <= 1000);
+        assertEquals(10000, cache.getMissCount());
+        assertEquals(10000 - cache.size(), cache.getEvictionCount());
+    }
+
+    public void testFrequentKeysSurviveScan() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(512);
+        // a working set used again and again, then a scan of one-time keys
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 200; i++) {
+                if (cache.get(i) == null)
+                    cache.put(i, i);
+            }
+        }
+        for (int i = 1000; i < 100000; i++) {
+            if (cache.get(i) == null)
+                cache.put(i, i);
+        }
+        int kept = 0;
+        for (int i = 0; i < 200; i++) {
+            if (cache.get(i) != null)
+                kept++;
+        }
+        assertTrue("kept " + kept, kept > 180);
+    }
+
+    public void testConcurrent() throws InterruptedException {
+        final TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(256);
+        List<Thread> threads = new ArrayList<>();
+        final int[] wrong = new int[1];
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50000; i++) {
+                    int key = (i * 31 + seed) % 1000;
+                    Integer value = cache.get(key);
+                    if (value == null)
+                        cache.put(key, key * 2);
+                    else if (value != key * 2)
+                        synchronized (wrong) { wrong[0]++; }
+                }
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(0, wrong[0]);
+        assertEquals(200000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.size() <= 256);
+    }
+}
@@ -0,0 +1,134 @@
+/* vim: set sw=4 ts=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.irradiance;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse.SkyDiffuseHaydaviesModel;
+import jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse.SkyDiffuseModel;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PvSystem;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+import junit.framework.TestCase;
+
+import java.time.ZonedDateTime;
+
+public class HorizonProfileTest extends TestCase {
+
+    private ZonedDateTime ts = ZonedDateTime.parse("2017-07-10T07:00:01+09:00");
+    private Location loc = new Location(26.462, 127.831, 42.962);
+
+    private ModelCollection models = new DefaultModelCollection() {
+        @Override
+        public SkyDiffuseModel getSkyDiffuseModel() {
+            return new SkyDiffuseHaydaviesModel(this);
+        }
+    };
+
+    public void testLookup() {
+        // a ridge of 20 degree in the east
+        HorizonProfile horizon = new HorizonProfile(new double[] {90.0, 0.0},
+                                                    new double[] {20.0, 0.0});
+        assertEquals(HorizonProfile.DEFAULT_BINS, horizon.getBins());
+        assertEquals(0.0, horizon.elevation(0.0), 1e-12);
+        assertEquals(10.0, horizon.elevation(45.0), 1e-12);
+        assertEquals(10.0 + 20.0 / 180, horizon.elevation(45.5), 1e-12);
+        assertEquals(20.0, horizon.elevation(90.0), 1e-12);
+        // back down to the north, around 360 degree
+        assertEquals(10.0, horizon.elevation(225.0), 1e-12);
+        assertEquals(10.0, horizon.elevation(-135.0), 1e-12);
+        assertEquals(20.0 / 270, horizon.elevation(359.0), 1e-12);
+
+        // the sun disc sets behind the ridge
+        assertEquals(1.0, horizon.beamFactor(90 - 20.5, 90.0));
+        assertEquals(0.5, horizon.beamFactor(90 - 20.0, 90.0), 1e-12);
+        assertEquals(0.0, horizon.beamFactor(90 - 19.5, 90.0));
+        assertEquals(1.0, horizon.beamFactor(90 - 5.0, 0.0));
+    }
+
+    public void testSkyViewFactor() {
+        HorizonProfile open = new HorizonProfile(new double[] {0.0}, new double[] {-2.0});
+        assertEquals(1.0, open.getSkyViewFactor());
+        assertEquals(-2.0, open.elevation(123.0), 1e-12);
+
+        double sin = Math.sin(Math.toRadians(15.0));
+        HorizonProfile valley = new HorizonProfile(new double[] {0.0, 120.0, 240.0},
+                                                   new double[] {15.0, 15.0, 15.0}, 72);
+        assertEquals(1 - sin * sin, valley.getSkyViewFactor(), 1e-12);
+
+        try {
+            new HorizonProfile(new double[] {0.0, 90.0}, new double[] {10.0});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new HorizonProfile(new double[] {0.0}, new double[] {95.0});
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testPoaIrradiance() {
+        Irradiance irradiance = models.irradiance();
+        SolarPosition.Variable sp = loc.getSolarPosition(ts);
+        Irradiance.Variable irrad = irradiance.getIrradiance(sp, 150.0);
+        Airmass airmass = loc.getAirmass(sp);
+        PreparedSurface surface = new PvSystem(20.0, 90.0, 6,
+                                               Irradiance.SurfaceType.GRASS).prepare();
+        double projection = surface.projection(sp);
+        Irradiance.PoaVariable open = irradiance.getPoaIrradiance(surface, projection, sp, irrad,
+                                                                  airmass);
+        assertTrue(open.direct > 0);
+
+        // the morning sun behind the mountains around
+        double ridge = 90 - sp.getApparentZenith() + 5.0;
+        HorizonProfile horizon = new HorizonProfile(new double[] {0.0, 120.0, 240.0},
+                                                    new double[] {ridge, ridge, ridge});
+        Irradiance.PoaVariable shaded = irradiance.getPoaIrradiance(surface, horizon, projection,
+                                                                    sp, irrad, airmass);
+        assertEquals(0.0, shaded.direct);
+        assertEquals(open.skyDiffuse * horizon.getSkyViewFactor(), shaded.skyDiffuse, 1e-12);
+        assertEquals(open.groundDiffuse, shaded.groundDiffuse);
+
+        // ModelChain takes the horizon of the location
+        Location site = new Location(loc.latitude, loc.longitude, loc.altitude);
+        site.setHorizon(horizon);
+        assertSame(horizon, site.getHorizon());
+
+        // the orientation grid agrees with the prepared surface
+        int n = 12;
+        double[] zenith = new double[n];
+        double[] azimuth = new double[n];
+        double[] ghi = new double[n];
+        double[] dni = new double[n];
+        double[] dniExtra = new double[n];
+        double[] dhi = new double[n];
+        SolarPosition.Variable[] sps = new SolarPosition.Variable[n];
+        Irradiance.Variable[] irrads = new Irradiance.Variable[n];
+        for (int t = 0; t < n; t++) {
+            sps[t] = loc.getSolarPosition(ts.withHour(7 + t));
+            irrads[t] = irradiance.getIrradiance(sps[t], 900 * Math.max(0.05,
+                    Math.cos(Math.toRadians(sps[t].getApparentZenith()))));
+            zenith[t] = sps[t].getApparentZenith();
+            azimuth[t] = sps[t].getAzimuth();
+            ghi[t] = irrads[t].ghi;
+            dni[t] = irrads[t].dni;
+            dniExtra[t] = irrads[t].dniExtra;
+            dhi[t] = irrads[t].dhi;
+        }
+        SkySeries sky = new SkySeries(zenith, azimuth, ghi, dni, dniExtra, dhi, null, null);
+        double[][] global = new double[1][n];
+        double[][] direct = new double[1][n];
+        irradiance.getPoaIrradiance(new double[] {20.0}, new double[] {90.0}, sky,
+                                    surface.albedo, horizon, global, direct, null);
+        for (int t = 0; t < n; t++) {
+            Irradiance.PoaVariable poa = irradiance.getPoaIrradiance(
+                    surface, horizon, surface.projection(sps[t]), sps[t], irrads[t], null);
+            assertEquals(poa.global, global[0][t], 1e-9 * poa.global + 1e-12);
+            assertEquals(poa.direct, direct[0][t], 1e-9 * poa.direct + 1e-12);
+        }
+    }
+}
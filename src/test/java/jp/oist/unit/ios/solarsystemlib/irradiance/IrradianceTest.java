@@ -9,7 +9,11 @@ import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
 import jp.oist.unit.ios.solarsystemlib.irradiance.extraradiation.ExtraRadiationModel;
 import jp.oist.unit.ios.solarsystemlib.irradiance.extraradiation.ExtraRadiationSpencerModel;
 import jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse.SkyDiffuseHaydaviesModel;
+import jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse.SkyDiffuseIsotropicModel;
+import jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse.SkyDiffuseKingModel;
 import jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse.SkyDiffuseModel;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PvSystem;
 import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
 import junit.framework.TestCase;
 
@@ -115,4 +119,103 @@ public class IrradianceTest extends TestCase {
         assertEquals(0, TestUtils.compareTo(251.8392542179933, poa.skyDiffuse, 6));
         assertEquals(0, TestUtils.compareTo(1.8439832025314216, poa.groundDiffuse, 6));
     }
+
+    public void testPreparedSurface() {
+        Irradiance.Variable irrad = irradiance.getIrradiance(pos, ghi);
+        PvSystem system = new PvSystem(surfaceTilt, surfaceAzimuth, 6,
+                                       Irradiance.SurfaceType.GRASS);
+        PreparedSurface surface = system.prepare();
+        assertSame(surface, system.prepare());
+
+        double projection = surface.projection(pos);
+        assertEquals(Irradiance.projection(surfaceTilt, surfaceAzimuth, pos.getApparentZenith(),
+                                           pos.getAzimuth()), projection);
+        assertEquals(Irradiance.aoi(surfaceTilt, surfaceAzimuth, pos.getApparentZenith(),
+                                    pos.getAzimuth()), system.getAoi(pos));
+
+        Irradiance.PoaVariable expected = irradiance.getPoaIrradiance(
+                surfaceTilt, surfaceAzimuth, pos, irrad, airmass, Irradiance.SurfaceType.GRASS);
+        Irradiance.PoaVariable poa = irradiance.getPoaIrradiance(surface, projection, pos, irrad,
+                                                                 airmass);
+        assertEquals(expected.global, poa.global);
+        assertEquals(expected.direct, poa.direct);
+        assertEquals(expected.skyDiffuse, poa.skyDiffuse);
+        assertEquals(expected.groundDiffuse, poa.groundDiffuse);
+    }
+
+    public void testPoaOrientationGrid() {
+        // a clear day, 07:00 to 18:00 local time
+        int n = 12;
+        double[] zenith = new double[n];
+        double[] azimuth = new double[n];
+        double[] ghi = new double[n];
+        double[] dni = new double[n];
+        double[] dniExtra = new double[n];
+        double[] dhi = new double[n];
+        SolarPosition.Variable[] sp = new SolarPosition.Variable[n];
+        Irradiance.Variable[] irrad = new Irradiance.Variable[n];
+        for (int t = 0; t < n; t++) {
+            sp[t] = loc.getSolarPosition(ts.withHour(7 + t), pressure, tempAir);
+            irrad[t] = irradiance.getIrradiance(sp[t], 900 * Math.max(0.05,
+                    Math.cos(Math.toRadians(sp[t].getApparentZenith()))));
+            zenith[t] = sp[t].getApparentZenith();
+            azimuth[t] = sp[t].getAzimuth();
+            ghi[t] = irrad[t].ghi;
+            dni[t] = irrad[t].dni;
+            dniExtra[t] = irrad[t].dniExtra;
+            dhi[t] = irrad[t].dhi;
+        }
+        SkySeries sky = new SkySeries(zenith, azimuth, ghi, dni, dniExtra, dhi, null, null);
+
+        double[] tilt = new double[] {0.0, 10.0, 27.5, 45.0, 90.0, 30.0};
+        double[] surfaceAz = new double[] {180.0, 90.0, 225.0, 180.0, 270.0, 0.0};
+        double[][] global = new double[tilt.length][n];
+        double[][] direct = new double[tilt.length][n];
+        double[][] diffuse = new double[tilt.length][n];
+
+        // Hay-Davies, King and isotropic models and the sample by sample default
+        SkyDiffuseModel[] skyModels = new SkyDiffuseModel[] {
+            new SkyDiffuseHaydaviesModel(models),
+            new SkyDiffuseKingModel(models),
+            new SkyDiffuseIsotropicModel(models),
+            new SkyDiffuseModel(models) {
+                @Override
+                public Double estimate(double surfaceTilt, double surfaceAzimuth,
+                                       SolarPosition.Variable sp, Irradiance.Variable irrad,
+                                       Airmass am, Object... vars) {
+                    return irrad.dhi * (1 + Math.sin(Math.toRadians(sp.getApparentZenith())))
+                            * Math.cos(Math.toRadians(surfaceTilt / 2));
+                }
+            }
+        };
+        for (SkyDiffuseModel skyModel : skyModels) {
+            ModelCollection collection = new DefaultModelCollection() {
+                @Override
+                public SkyDiffuseModel getSkyDiffuseModel() {
+                    return skyModel;
+                }
+            };
+            Irradiance batch = collection.irradiance();
+            batch.getPoaIrradiance(tilt, surfaceAz, sky, 0.2, global, direct, diffuse);
+
+            for (int k = 0; k < tilt.length; k++) {
+                for (int t = 0; t < n; t++) {
+                    Irradiance.PoaVariable poa = batch.getPoaIrradiance(tilt[k], surfaceAz[k],
+                            sp[t], irrad[t], null, 0.2);
+                    assertEquals(poa.global, global[k][t], 1e-9 * poa.global + 1e-12);
+                    assertEquals(poa.direct, direct[k][t], 1e-9 * poa.direct + 1e-12);
+                    assertEquals(poa.diffuse, diffuse[k][t], 1e-9 * poa.diffuse + 1e-12);
+                }
+            }
+        }
+
+        // columns only
+        irradiance.getPoaIrradiance(tilt, surfaceAz, sky, 0.2, global, null, null);
+        try {
+            irradiance.getPoaIrradiance(tilt, surfaceAz, sky, 0.2, new double[2][n], null, null);
+            fail("short matrix must be rejected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
 }
\ No newline at end of file
@@ -41,5 +41,22 @@ public class ErbsTest extends TestCase {
         assertEquals(0, TestUtils.compareTo(617.212613, vars.dni, scale));
         assertEquals(0, TestUtils. compareTo(185.344135, vars.dhi, scale));
         assertEquals(0 ,TestUtils. compareTo(0.666995, vars.kt, scale));
+
+        Irradiance.Variable byDay = dniErbsModel.estimate(curTime.getDayOfYear(), ghi, zenith);
+        assertEquals(vars.dni, byDay.dni);
+        assertEquals(vars.dhi, byDay.dhi);
+    }
+
+    public void testDateTimeModel() {
+        // a model of the date-time only answers by day of year as well
+        DniModel model = new DniModel(new DefaultModelCollection()) {
+            @Override
+            public Irradiance.Variable estimate(ZonedDateTime dt, double ghi, double zenith,
+                                                Object... vars) {
+                return new Irradiance.Variable(ghi, (double)dt.getDayOfYear(), 0.0, 0.0, 0.0);
+            }
+        };
+        assertEquals(207.0, model.estimate(207, ghi, 30.0).dni);
+        assertEquals(366.0, model.estimate(366, ghi, 30.0).dni);
     }
 }
@@ -0,0 +1,128 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.irradiance.skydiffuse;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.TestUtils;
+import jp.oist.unit.ios.solarsystemlib.atomsphere.airmass.Airmass;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import jp.oist.unit.ios.solarsystemlib.irradiance.SkySeries;
+import jp.oist.unit.ios.solarsystemlib.irradiance.dni.DniErbsModel;
+import jp.oist.unit.ios.solarsystemlib.irradiance.dni.DniModel;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PreparedSurface;
+import jp.oist.unit.ios.solarsystemlib.pvsystem.PvSystem;
+import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
+import junit.framework.TestCase;
+
+import java.time.ZonedDateTime;
+
+public class SkyDiffusePerezModelTest extends TestCase {
+
+    private ModelCollection models = new DefaultModelCollection() {
+        @Override
+        public DniErbsModel getDniModel() {
+            return new DniErbsModel(this);
+        }
+        @Override
+        public SkyDiffuseModel getSkyDiffuseModel() {
+            return new SkyDiffusePerezModel(this);
+        }
+    };
+
+    private ZonedDateTime ts = ZonedDateTime.parse("2017-07-10T13:00:01+09:00");
+    private Location loc = new Location(26.462, 127.831, 42.962);
+    private double pressure = 100720.0;
+    private double tempAir = 30.7;
+
+    private double surfaceTilt = 27.5;
+    private double surfaceAzimuth = 225.0;
+
+    public void testEstimate() {
+        double ghi = 272.0;
+
+        DniModel erbs = models.getDniModel();
+        SolarPosition.Variable sp = loc.getSolarPosition(ts, pressure, tempAir);
+        Irradiance.Variable irrad = erbs.estimate(ts, ghi, sp.getApparentZenith());
+        Airmass am = loc.getAirmass(sp);
+
+        SkyDiffuseModel perez = models.getSkyDiffuseModel();
+        double skyDiffuse = perez.estimate(surfaceTilt, surfaceAzimuth, sp, irrad, am);
+        assertEquals(0, TestUtils.compareTo(245.94715341035004, skyDiffuse, 6));
+
+        // the relative airmass of the collection when no airmass is given
+        double noAirmass = perez.estimate(surfaceTilt, surfaceAzimuth, sp, irrad, null);
+        assertEquals(0, TestUtils.compareTo(skyDiffuse, noAirmass, 6));
+
+        PreparedSurface surface = new PvSystem(surfaceTilt, surfaceAzimuth, 6,
+                                               Irradiance.SurfaceType.GRASS).prepare();
+        assertEquals(skyDiffuse, perez.estimate(surface, surface.projection(sp), sp, irrad, am),
+                     1e-9);
+    }
+
+    public void testBin() {
+        assertEquals(0, SkyDiffusePerezModel.bin(1.0));
+        assertEquals(0, SkyDiffusePerezModel.bin(Math.nextDown(1.065)));
+        assertEquals(1, SkyDiffusePerezModel.bin(1.065));
+        assertEquals(2, SkyDiffusePerezModel.bin(1.23));
+        assertEquals(3, SkyDiffusePerezModel.bin(1.5));
+        assertEquals(4, SkyDiffusePerezModel.bin(1.95));
+        assertEquals(5, SkyDiffusePerezModel.bin(2.8));
+        assertEquals(6, SkyDiffusePerezModel.bin(4.5));
+        assertEquals(6, SkyDiffusePerezModel.bin(Math.nextDown(6.2)));
+        assertEquals(7, SkyDiffusePerezModel.bin(6.2));
+        assertEquals(7, SkyDiffusePerezModel.bin(100.0));
+    }
+
+    public void testBatch() {
+        // 06:00 to 19:00 local time, from overcast to clear sky
+        int n = 14;
+        double[] zenith = new double[n];
+        double[] azimuth = new double[n];
+        double[] ghi = new double[n];
+        double[] dni = new double[n];
+        double[] dniExtra = new double[n];
+        double[] dhi = new double[n];
+        double[] airmass = new double[n];
+        double[] expected = new double[n];
+        SkyDiffuseModel perez = models.getSkyDiffuseModel();
+        DniModel erbs = models.getDniModel();
+        for (int t = 0; t < n; t++) {
+            ZonedDateTime dt = ts.withHour(6 + t);
+            SolarPosition.Variable sp = loc.getSolarPosition(dt, pressure, tempAir);
+            double cosZenith = Math.max(0.0, Math.cos(Math.toRadians(sp.getApparentZenith())));
+            Irradiance.Variable irrad = erbs.estimate(dt, (200 + 60 * t) * cosZenith,
+                                                      sp.getApparentZenith());
+            Airmass am = loc.getAirmass(sp);
+            zenith[t] = sp.getApparentZenith();
+            azimuth[t] = sp.getAzimuth();
+            ghi[t] = irrad.ghi;
+            dni[t] = irrad.dni;
+            dniExtra[t] = irrad.dniExtra;
+            dhi[t] = irrad.dhi;
+            airmass[t] = am.getRelativeAirmass();
+            expected[t] = perez.estimate(surfaceTilt, surfaceAzimuth, sp, irrad, am);
+        }
+
+        double[] skyDiffuse = new double[n];
+        ((SkyDiffusePerezModel)perez).estimate(surfaceTilt, surfaceAzimuth, zenith, azimuth,
+                                               dni, dniExtra, dhi, airmass, skyDiffuse);
+        for (int t = 0; t < n; t++)
+            assertEquals(expected[t], skyDiffuse[t], 1e-9);
+
+        SkySeries sky = new SkySeries(zenith, azimuth, ghi, dni, dniExtra, dhi, airmass, null);
+        double[] projection = new double[n];
+        sky.projection(surfaceTilt, surfaceAzimuth, projection);
+        perez.prepare(sky).estimate(surfaceTilt, surfaceAzimuth, projection, skyDiffuse);
+        for (int t = 0; t < n; t++)
+            assertEquals(expected[t], skyDiffuse[t], 1e-9);
+
+        try {
+            ((SkyDiffusePerezModel)perez).estimate(surfaceTilt, surfaceAzimuth, zenith, azimuth,
+                                                   dni, dniExtra, dhi, new double[1], skyDiffuse);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+import junit.framework.TestCase;
+
+public class DayContextTest extends TestCase {
+
+    public void testFields() {
+        // 1896-01-01 to 2104-12-31, more dates than the cache holds
+        long first = LocalDate.of(1896, 1, 1).toEpochDay();
+        long last = LocalDate.of(2104, 12, 31).toEpochDay();
+        for (long day = first; day <= last; day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            DayContext context = DayContext.of(day);
+            assertEquals(day, context.getEpochDay());
+            assertEquals(date.getYear(), context.getYear());
+            assertEquals(date.getMonthValue(), context.getMonth());
+            assertEquals(date.getDayOfYear(), context.getDayOfYear());
+            assertEquals(SolarPositionSpaModel.deltaT(date.getYear(), date.getMonthValue()),
+                         context.getDeltaT());
+        }
+    }
+
+    public void testCache() {
+        long day = LocalDate.of(2018, 7, 26).toEpochDay();
+        DayContext context = DayContext.of(day);
+        assertSame(context, DayContext.of(day));
+        assertSame(context, DayContext.ofEpochSecond(day * 86400 + 86399));
+        // the slot is taken by another date and built again
+        DayContext.of(day + DayContext.CACHE_SIZE);
+        assertEquals(day, DayContext.of(day).getEpochDay());
+
+        // local date of a date-time, 2018-07-27 in +09:00
+        ZonedDateTime dt = ZonedDateTime.parse("2018-07-27T08:30:00+09:00");
+        assertEquals(day + 1, DayContext.of(dt).getEpochDay());
+        assertEquals(day, DayContext.ofEpochSecond(dt.toEpochSecond()).getEpochDay());
+    }
+}
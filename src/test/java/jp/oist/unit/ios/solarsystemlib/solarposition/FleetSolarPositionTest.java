@@ -0,0 +1,56 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.util.Random;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import junit.framework.TestCase;
+
+public class FleetSolarPositionTest extends TestCase {
+
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(new DefaultModelCollection());
+
+    public void testEstimate() {
+        // 2000 houses within about 5 km
+        Random random = new Random(26L);
+        Location[] locations = new Location[2000];
+        for (int i = 0; i < locations.length; i++)
+            locations[i] = new Location(26.44 + 0.05 * random.nextDouble(),
+                                        127.80 + 0.05 * random.nextDouble(),
+                                        100 * random.nextDouble());
+        double tolerance = 0.01;
+        FleetSolarPosition fleet = new FleetSolarPosition(spa, locations, tolerance);
+
+        assertTrue(fleet.getClusterCount() < 50);
+        assertTrue(fleet.getMaxError() > 0);
+        assertTrue(fleet.getMaxError() <= tolerance * Math.sqrt(0.5) + 1e-12);
+
+        double[] apparentZenith = new double[locations.length];
+        double[] azimuth = new double[locations.length];
+        // every 2 hours of a day
+        for (long t = 1532563200L; t < 1532563200L + 86400; t += 7200) {
+            SolarPosition.Variable[] shared = fleet.estimate(t, 101325.0, 25.0);
+            fleet.estimate(t, 101325.0, 25.0, apparentZenith, azimuth, null);
+            for (int i = 0; i < locations.length; i++) {
+                SolarPosition.Variable exact = spa.estimate(t, locations[i], 101325.0, 25.0);
+                double error = Math.abs(exact.getApparentZenith() - shared[i].getApparentZenith());
+                assertTrue(error <= fleet.getMaxError() * 1.2);
+                assertEquals(shared[i].getApparentZenith(), apparentZenith[i]);
+                assertEquals(shared[i].getAzimuth(), azimuth[i]);
+            }
+        }
+    }
+
+    public void testLonelySite() {
+        Location[] locations = new Location[] {
+            new Location(26.462, 127.831), new Location(-33.868, 151.209),
+            new Location(78.22, 179.999), new Location(78.22, -179.999)
+        };
+        FleetSolarPosition fleet = new FleetSolarPosition(spa, locations, 0.01);
+        // each site in its own cell estimates at the site itself
+        assertEquals(4, fleet.getClusterCount());
+        assertEquals(0.0, fleet.getMaxError());
+        assertSame(locations[1], fleet.getClusterLocation(fleet.getCluster(1)));
+    }
+}
@@ -0,0 +1,78 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import jp.oist.unit.ios.solarsystemlib.irradiance.Irradiance;
+import junit.framework.TestCase;
+
+public class IntervalSolarPositionTest extends TestCase {
+
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(new DefaultModelCollection());
+    private IntervalSolarPosition interval = new IntervalSolarPosition(spa, 4, 0.0);
+    private Location location = new Location(26.462, 127.831, 42.962);
+
+    /* mean projection and sunlit seconds by the instantaneous SPA every 10 seconds */
+    private double[] bruteForce(long start, long end, double tilt, double azimuth) {
+        double projection = 0;
+        int sunlit = 0;
+        for (long t = start + 5; t < end; t += 10) {
+            SolarPosition.Variable sp = spa.estimate(t, location, null, null);
+            if (sp.getApparentElevation() > 0) {
+                projection += Math.max(Irradiance.projection(tilt, azimuth,
+                                                             sp.getApparentZenith(),
+                                                             sp.getAzimuth()), 0.0);
+                sunlit++;
+            }
+        }
+        return new double[] { projection / sunlit, sunlit * 10.0 };
+    }
+
+    public void testDaytime() {
+        long start = ZonedDateTime.parse("2017-07-10T12:00:00+09:00").toEpochSecond();
+        IntervalSolarPosition.Variable var = interval.estimate(start, start + 3600, location,
+                                                               null, null);
+        assertFalse(var.isDark());
+        assertEquals(1.0, var.getSunlitFraction(), 1e-12);
+        double[] expected = bruteForce(start, start + 3600, 27.5, 225.0);
+        assertEquals(expected[0], var.projection(27.5, 225.0), 1e-6);
+        assertEquals(bruteForce(start, start + 3600, 0.0, 0.0)[0], var.projection(0.0, 0.0), 1e-6);
+
+        // the mean direction is near the middle of the interval
+        SolarPosition.Variable middle = spa.estimate(start + 1800, location, null, null);
+        SolarPosition.Variable mean = var.getSolarPosition();
+        assertEquals(start + 1800, mean.getEpochSecond());
+        assertEquals(middle.getApparentZenith(), mean.getApparentZenith(), 0.5);
+        assertEquals(middle.getAzimuth(), mean.getAzimuth(), 2.0);
+    }
+
+    public void testSunrise() {
+        long start = ZonedDateTime.parse("2017-07-10T05:30:00+09:00").toEpochSecond();
+        IntervalSolarPosition.Variable var = interval.estimate(start, start + 3600, location,
+                                                               null, null);
+        double[] expected = bruteForce(start, start + 3600, 27.5, 225.0);
+        assertTrue(var.getSunlitFraction() > 0 && var.getSunlitFraction() < 1);
+        assertEquals(expected[1], var.getSunlitSeconds(), 10.0);
+        assertEquals(expected[0], var.projection(27.5, 225.0), 1e-3);
+        assertTrue(var.getSolarPosition().getApparentElevation() > 0);
+    }
+
+    public void testDark() {
+        long start = ZonedDateTime.parse("2017-07-10T00:00:00+09:00").toEpochSecond();
+        IntervalSolarPosition.Variable var = interval.estimate(start, start + 3600, location,
+                                                               null, null);
+        assertTrue(var.isDark());
+        assertEquals(0.0, var.projection(0.0, 0.0));
+        assertEquals(spa.estimate(start + 1800, location, null, null).getApparentZenith(),
+                     var.getSolarPosition().getApparentZenith(), 1e-4);
+
+        try {
+            interval.estimate(start, start + IntervalSolarPosition.MAX_INTERVAL + 1, location,
+                              null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import junit.framework.TestCase;
+
+public class SolarPositionApproximateModelTest extends TestCase {
+
+    private DefaultModelCollection models = new DefaultModelCollection();
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(models);
+    private ZonedDateTime curTime = ZonedDateTime.parse("2018-07-26T15:52:40+09:00");
+    private Location location = new Location(26.462, 127.831);
+
+    /**
+     * Compares a model with SPA on the reference time of SolarPositionSpaModelTest then every 7
+     * hours for 3 years, and every 97 hours over the years of the documented range.
+     * @param tolerance zenith and azimuth in degree
+     * @param eotTolerance equation of time in minute
+     */
+    private void assertClose(SolarPositionModel model, int firstYear, int lastYear,
+                             double tolerance, double eotTolerance) {
+        assertClose(model, curTime, 7, 3 * 365 * 24 / 7, tolerance, eotTolerance);
+        ZonedDateTime first = ZonedDateTime.parse(firstYear + "-01-01T00:00:00+09:00");
+        long hours = Duration.between(first, first.withYear(lastYear + 1)).toHours();
+        assertClose(model, first, 97, (int)(hours / 97), tolerance, eotTolerance);
+    }
+
+    private void assertClose(SolarPositionModel model, ZonedDateTime from, int stepHours,
+                             int steps, double tolerance, double eotTolerance) {
+        ZonedDateTime dt = from;
+        for (int i = 0; i < steps; i++, dt = dt.plusHours(stepHours)) {
+            SolarPosition.Variable exact = spa.estimate(dt, location, 101325.0, 12.0, 0.5667, 67.0);
+            SolarPosition.Variable sp = model.estimate(dt, location, 101325.0, 12.0, 0.5667, 67.0);
+
+            assertEquals(exact.getZenith(), sp.getZenith(), tolerance);
+            if (exact.getApparentElevation() > 1) {
+                assertEquals(exact.getApparentZenith(), sp.getApparentZenith(), tolerance);
+                double dAz = Math.abs(exact.getAzimuth() - sp.getAzimuth());
+                dAz = Math.min(dAz, 360 - dAz) * Math.sin(Math.toRadians(exact.getZenith()));
+                assertTrue(model.getClass().getSimpleName() + " " + dAz, dAz <= tolerance);
+            }
+            assertEquals(exact.getEquationOfTime(), sp.getEquationOfTime(), eotTolerance);
+        }
+    }
+
+    public void testGrena() {
+        assertClose(new SolarPositionGrenaModel(models, 1), 2010, 2110, 0.19, 0.7);
+        assertClose(new SolarPositionGrenaModel(models), 2010, 2110, 0.01, 0.07);
+        try {
+            new SolarPositionGrenaModel(models, 2);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // only algorithms 1 and 3
+        }
+    }
+
+    public void testPsa() {
+        assertClose(new SolarPositionPsaModel(models, SolarPositionPsaModel.COEFFICIENTS_2001),
+                    2010, 2110, 0.014, 0.06);
+        assertClose(new SolarPositionPsaModel(models), 2010, 2110, 0.011, 0.04);
+    }
+
+    public void testMichalsky() {
+        assertClose(new SolarPositionMichalskyModel(models), 1950, 2050, 0.011, 0.07);
+    }
+
+    public void testModelCollection() {
+        ModelCollection psa = new DefaultModelCollection() {
+            @Override
+            public SolarPositionModel getSolarPositionModel() {
+                return new SolarPositionPsaModel(this);
+            }
+        };
+        SolarPosition.Variable exact = models.solarposition().estimate(curTime, location);
+        SolarPosition.Variable sp = psa.solarposition().estimate(curTime, location);
+        assertEquals(exact.getApparentZenith(), sp.getApparentZenith(), 0.011);
+        assertEquals(exact.getAzimuth(), sp.getAzimuth(), 0.011);
+    }
+}
@@ -0,0 +1,88 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import jp.oist.unit.ios.solarsystemlib.collection.ModelCollection;
+import junit.framework.TestCase;
+
+public class SolarPositionCachedModelTest extends TestCase {
+
+    private DefaultModelCollection models = new DefaultModelCollection();
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(models);
+
+    public void testEstimate() {
+        SolarPositionCachedModel model = new SolarPositionCachedModel(models, spa, 1000);
+        Location location = new Location(26.462, 127.831, 42.962);
+        ZonedDateTime dt = ZonedDateTime.parse("2018-07-26T15:52:40+09:00");
+
+        // the model runs at the center of the buckets
+        SolarPosition.Variable expected = spa.estimate(dt, location, 100700.0, 31.0);
+        SolarPosition.Variable first = model.estimate(dt, location, 100720.0, 30.7);
+        SolarPosition.Variable second = model.estimate(dt.toEpochSecond(), new Location(
+                26.462, 127.831, 42.962), 100680.0, 31.2);
+        assertEquals(1, model.getMissCount());
+        assertEquals(1, model.getHitCount());
+
+        for (SolarPosition.Variable sp : new SolarPosition.Variable[] { first, second }) {
+            assertEquals(expected.getApparentZenith(), sp.getApparentZenith());
+            assertEquals(expected.getAzimuth(), sp.getAzimuth());
+            assertEquals(expected.getEquationOfTime(), sp.getEquationOfTime());
+        }
+        assertEquals(dt, first.getDateTime());
+        assertEquals(dt.toEpochSecond(), second.getEpochSecond());
+
+        // the exact position is within the bucket error
+        SolarPosition.Variable exact = spa.estimate(dt, location, 100720.0, 30.7);
+        assertEquals(exact.getApparentZenith(), first.getApparentZenith(), 1e-3);
+
+        // other extra variables are other entries
+        model.estimate(dt, location, 100720.0, 30.7, 0.5667, 60.0);
+        assertEquals(2, model.getMissCount());
+        assertEquals(2, model.getSize());
+    }
+
+    public void testModelCollection() {
+        SolarPositionCachedModel model = new SolarPositionCachedModel(models, spa, 1000);
+        ModelCollection cached = new DefaultModelCollection() {
+            @Override
+            public SolarPositionModel getSolarPositionModel() {
+                return model;
+            }
+        };
+        Location location = new Location(26.462, 127.831, 42.962);
+        ZonedDateTime dt = ZonedDateTime.parse("2018-07-26T15:52:40+09:00");
+
+        // SolarPosition passes atmosRefract, deltaT and the location
+        SolarPosition.Variable expected = new SolarPosition(models).estimate(dt, location);
+        SolarPosition.Variable first = new SolarPosition(cached).estimate(dt, location);
+        SolarPosition.Variable second = new SolarPosition(cached).estimate(dt.toEpochSecond(),
+                                                                           location);
+        assertEquals(1, model.getMissCount());
+        assertEquals(1, model.getHitCount());
+        for (SolarPosition.Variable sp : new SolarPosition.Variable[] { first, second }) {
+            assertEquals(expected.getApparentZenith(), sp.getApparentZenith());
+            assertEquals(expected.getAzimuth(), sp.getAzimuth());
+        }
+
+        // a location of the collection, with its pressure and deltaT
+        Location site = new Location(26.462, 127.831, 42.962);
+        site.setModelFactory(cached);
+        assertEquals(site.getSolarPosition(dt).getApparentZenith(),
+                     site.getSolarPosition(dt).getApparentZenith());
+        assertEquals(2, model.getMissCount());
+        assertEquals(2, model.getHitCount());
+
+        // the location is not a part of the key, the other extra variables are
+        model.estimate(dt, location, null, null, null, null);
+        assertEquals(3, model.getHitCount());
+        try {
+            model.estimate(dt, location, null, null, null, null, "location");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import junit.framework.TestCase;
+
+public class SolarPositionEphemerisModelTest extends TestCase {
+
+    private DefaultModelCollection models = new DefaultModelCollection();
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(models);
+
+    /* 2018-07-20T00:00:00Z */
+    private static final long START = 1532044800L;
+
+    private Path file;
+    private SolarPositionEphemerisModel model;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = Files.createTempFile("ephemeris", ".bin");
+        new SolarEphemerisWriter(spa).write(file, START, 14, SolarEphemerisWriter.DEFAULT_DEGREE);
+        model = new SolarPositionEphemerisModel(models, file);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        model = null;
+        Files.deleteIfExists(file);
+    }
+
+    public void testTimeTerms() {
+        assertEquals(START, model.getStartEpochSecond());
+        assertEquals(START + 14 * 86400L, model.getEndEpochSecond());
+
+        SpaTimeTerms expected = new SpaTimeTerms();
+        SpaTimeTerms actual = new SpaTimeTerms();
+        for (long t = START; t < model.getEndEpochSecond(); t += 3037) {
+            // both with the deltaT of the table and with a different one
+            for (Double deltaT : new Double[] { null, 60.0 }) {
+                // the table holds the deltaT of the month of each day
+                double dT = (deltaT == null) ? DayContext.ofEpochSecond(t).getDeltaT() : deltaT;
+                spa.timeTerms(t, dT, expected);
+                model.timeTerms(t, deltaT, actual);
+                assertEquals(expected.getRightAscension(), actual.getRightAscension(), 1e-9);
+                assertEquals(expected.getDeclination(), actual.getDeclination(), 1e-9);
+                assertEquals(expected.getApparentSiderealTime(),
+                             actual.getApparentSiderealTime(), 3e-7);
+                assertEquals(expected.getEquationOfTime(), actual.getEquationOfTime(), 1e-9);
+                assertEquals(expected.getEarthRadiusVector(),
+                             actual.getEarthRadiusVector(), 1e-9);
+            }
+        }
+    }
+
+    public void testEstimate() {
+        Location location = new Location(26.462, 127.831);
+        ZonedDateTime dt = ZonedDateTime.parse("2018-07-26T15:52:40+09:00");
+
+        SolarPosition.Variable exact = spa.estimate(dt, location, null, null);
+        SolarPosition.Variable sp = model.estimate(dt, location, null, null);
+
+        assertEquals(exact.getApparentZenith(), sp.getApparentZenith(), 1e-6);
+        assertEquals(exact.getZenith(), sp.getZenith(), 1e-6);
+        assertEquals(exact.getAzimuth(), sp.getAzimuth(), 1e-6);
+        assertEquals(exact.getEquationOfTime(), sp.getEquationOfTime(), 1e-6);
+
+        // outside of the table
+        dt = ZonedDateTime.parse("2019-01-01T12:00:00+09:00");
+        exact = spa.estimate(dt, location, 101325.0, 12.0);
+        sp = model.estimate(dt, location, 101325.0, 12.0);
+        assertEquals(exact.getApparentZenith(), sp.getApparentZenith(), 1e-12);
+        assertEquals(exact.getAzimuth(), sp.getAzimuth(), 1e-12);
+    }
+}
@@ -0,0 +1,62 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import junit.framework.TestCase;
+
+public class SolarPositionInterpolatedModelTest extends TestCase {
+
+    private DefaultModelCollection models = new DefaultModelCollection();
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(models);
+
+    public void testEstimateSeries() {
+        double latitude = 26.462;
+        double longitude = 127.831;
+        int n = 2 * 24 * 60;
+        long[] epochSeconds = new long[n];
+        for (int i = 0; i < n; i++)
+            epochSeconds[i] = 1532563200L + 60L * i;
+
+        double[] zenith = new double[n];
+        double[] azimuth = new double[n];
+        double[] eot = new double[n];
+        spa.estimate(epochSeconds, latitude, longitude, 0.0, 101325.0, 12.0, 0.5667, 67.0,
+                     zenith, azimuth, null, eot);
+
+        SolarPositionInterpolatedModel model = new SolarPositionInterpolatedModel(models, 0.001);
+        double[] iZenith = new double[n];
+        double[] iAzimuth = new double[n];
+        double[] iEot = new double[n];
+        double reported = model.estimate(epochSeconds, latitude, longitude, 0.0, 101325.0, 12.0,
+                                         0.5667, 67.0, iZenith, iAzimuth, null, iEot);
+
+        for (int i = 0; i < n; i++) {
+            double dAz = Math.abs(azimuth[i] - iAzimuth[i]);
+            dAz = Math.min(dAz, 360 - dAz) * Math.sin(Math.toRadians(zenith[i]));
+            assertEquals(zenith[i], iZenith[i], model.getMaxError());
+            assertTrue(dAz <= model.getMaxError());
+            assertEquals(eot[i], iEot[i], model.getMaxError() * 4);
+        }
+        assertTrue(reported <= model.getMaxError());
+        assertEquals(reported, model.getObservedError());
+        assertTrue(model.getInterpolatedIntervals() > 0);
+        assertTrue(model.getExactIntervals() > 0);
+    }
+
+    public void testEstimateVariable() {
+        Location location = new Location(26.462, 127.831);
+        ZonedDateTime dt = ZonedDateTime.parse("2018-07-26T15:52:40+09:00");
+        SolarPositionInterpolatedModel model = new SolarPositionInterpolatedModel(models);
+
+        SolarPosition.Variable exact = spa.estimate(dt, location, null, null);
+        SolarPosition.Variable sp = model.estimate(dt, location, null, null);
+
+        assertEquals(exact.getApparentZenith(), sp.getApparentZenith(), model.getMaxError());
+        assertEquals(exact.getApparentElevation(), sp.getApparentElevation(), model.getMaxError());
+        assertEquals(exact.getZenith(), sp.getZenith(), model.getMaxError());
+        assertEquals(exact.getAzimuth(), sp.getAzimuth(), model.getMaxError());
+    }
+}
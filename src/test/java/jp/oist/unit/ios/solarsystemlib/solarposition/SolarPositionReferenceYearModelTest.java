@@ -0,0 +1,57 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import junit.framework.TestCase;
+
+public class SolarPositionReferenceYearModelTest extends TestCase {
+
+    private DefaultModelCollection models = new DefaultModelCollection();
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(models);
+    private SolarPositionReferenceYearModel model = new SolarPositionReferenceYearModel(models,
+                                                                                        2035);
+    private Location location = new Location(26.462, 127.831, 42.962);
+
+    private void assertYear(int year, double tolerance) {
+        long start = LocalDate.of(year, 1, 1).toEpochDay() * 86400;
+        // every 73 minutes through the year, which covers the leap day
+        for (long t = start; t < start + 366L * 86400; t += 4380) {
+            SolarPosition.Variable exact = spa.estimate(t, location, null, null);
+            SolarPosition.Variable sp = model.estimate(t, location, null, null);
+            assertEquals(t, sp.getEpochSecond());
+            assertEquals(exact.getZenith(), sp.getZenith(), tolerance);
+            assertEquals(exact.getEquationOfTime(), sp.getEquationOfTime(), tolerance * 4);
+            // away from the step of the refraction below the horizon
+            if (exact.getZenith() < 89) {
+                assertEquals(exact.getApparentZenith(), sp.getApparentZenith(), tolerance);
+                double azimuth = Math.abs(exact.getAzimuth() - sp.getAzimuth());
+                azimuth = Math.min(azimuth, 360 - azimuth);
+                assertEquals(0, azimuth * Math.sin(Math.toRadians(exact.getZenith())),
+                             tolerance);
+            }
+        }
+    }
+
+    public void testReferenceYear() {
+        assertYear(2035, 0.002);
+    }
+
+    public void testOtherYears() {
+        assertYear(2020, 0.02);
+        assertYear(2036, 0.01);
+        assertYear(2050, 0.02);
+    }
+
+    public void testDateTime() {
+        ZonedDateTime dt = ZonedDateTime.parse("2044-02-29T12:00:00+09:00");
+        SolarPosition.Variable sp = model.estimate(dt, location, 100000.0, 20.0, 0.5667, 70.0);
+        SolarPosition.Variable exact = spa.estimate(dt, location, 100000.0, 20.0, 0.5667, 70.0);
+        assertEquals(dt, sp.getDateTime());
+        assertEquals(exact.getApparentZenith(), sp.getApparentZenith(), 0.02);
+        assertEquals(exact.getAzimuth(), sp.getAzimuth(), 0.02);
+    }
+}
@@ -305,4 +305,130 @@ public class SolarPositionSpaModelTest extends TestCase {
             fail(ex.getMessage());
         }
     }
+
+    public void testBatchEstimate() {
+        double latitude = 26.462;
+        double longitude = 127.831;
+        long[] epochSeconds = new long[] {1532587960L, 1532587960L + 3600, 1532587960L + 7200};
+        double[] apparentZenith = new double[epochSeconds.length];
+        double[] azimuth = new double[epochSeconds.length];
+        double[] apparentElevation = new double[epochSeconds.length];
+        double[] equationOfTime = new double[epochSeconds.length];
+
+        solarPositionSpaModel.estimate(epochSeconds, latitude, longitude, 0.0, 101325.0, 12.0,
+                                       0.5667, 67.0, apparentZenith, azimuth,
+                                       apparentElevation, equationOfTime);
+
+        for (int i = 0; i < epochSeconds.length; i++) {
+            ZonedDateTime dt = curTime.plusSeconds(epochSeconds[i] - epochSeconds[0]);
+            SolarPosition.Variable sp = solarPositionSpaModel.estimate(dt, latitude, longitude, 0.0,
+                                                                       101325.0, 12.0, 0.5667, 67.0);
+            assertEquals(sp.getApparentZenith(), apparentZenith[i], 1e-9);
+            assertEquals(sp.getAzimuth(), azimuth[i], 1e-9);
+            assertEquals(sp.getApparentElevation(), apparentElevation[i], 1e-9);
+            assertEquals(sp.getEquationOfTime(), equationOfTime[i], 1e-9);
+        }
+        assertEquals(0, TestUtils.compareTo(45.714896, apparentZenith[0], 6));
+        assertEquals(0, TestUtils.compareTo(271.924492, azimuth[0], 6));
+
+        try {
+            solarPositionSpaModel.estimate(epochSeconds, latitude, longitude, 0.0, 101325.0, 12.0,
+                                           0.5667, 67.0, new double[1], null, null, null);
+            fail("short column must be rejected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    public void testSharedTimeTerms() {
+        double[] lat = new double[] {26.462, 35.681, -33.868};
+        double[] lng = new double[] {127.831, 139.767, 151.209};
+        double[] elev = new double[] {0.0, 40.0, 58.0};
+        double[] apparentZenith = new double[lat.length];
+        double[] azimuth = new double[lat.length];
+
+        SpaTimeTerms terms = solarPositionSpaModel.timeTerms(curTime.toEpochSecond(), 67.0);
+        solarPositionSpaModel.estimate(terms, lat, lng, elev, 101325.0, 12.0, 0.5667,
+                                       apparentZenith, azimuth, null);
+
+        for (int i = 0; i < lat.length; i++) {
+            SolarPosition.Variable sp = solarPositionSpaModel.estimate(curTime, lat[i], lng[i], elev[i],
+                                                                       101325.0, 12.0, 0.5667, 67.0);
+            assertEquals(sp.getApparentZenith(), apparentZenith[i], 1e-9);
+            assertEquals(sp.getAzimuth(), azimuth[i], 1e-9);
+            assertEquals(sp.getEquationOfTime(), terms.getEquationOfTime(), 1e-9);
+        }
+        assertEquals(0, TestUtils.compareTo(19.42514244727276917502, terms.getDeclination(), 6));
+        assertEquals(0, TestUtils.compareTo(125.55598971832477, terms.getRightAscension(), 6));
+    }
+
+    public void testKernel() {
+        double[] lat = new double[] {-89.9, -33.868, 0.0, 26.462, 51.5, 89.9};
+        SpaTimeTerms kernel = new SpaTimeTerms();
+        SpaTimeTerms reference = new SpaTimeTerms();
+        double[] ret = new double[SolarPositionSpaModel.TOPOCENTRIC_LENGTH];
+        double[] expected = new double[SolarPositionSpaModel.TOPOCENTRIC_LENGTH];
+
+        // every 13 days and 7 hours from 1900 to 2100
+        for (long t = -2208988800L; t < 4102444800L; t += 13 * 86400L + 7 * 3600L) {
+            solarPositionSpaModel.timeTerms((double)t, 67.0, kernel);
+            solarPositionSpaModel.referenceTimeTerms((double)t, 67.0, reference);
+            assertEquals(reference.getDeclination(), kernel.getDeclination(), 1e-9);
+            assertEquals(reference.getRightAscension(), kernel.getRightAscension(), 1e-9);
+            assertEquals(reference.getApparentSiderealTime(), kernel.getApparentSiderealTime(),
+                         1e-9);
+            assertEquals(reference.getEquationOfTime(), kernel.getEquationOfTime(), 1e-9);
+            assertEquals(reference.getEquatorialHorizontalParallax(),
+                         kernel.getEquatorialHorizontalParallax(), 1e-15);
+
+            for (int i = 0; i < lat.length; i++) {
+                double u = solarPositionSpaModel.uterm(lat[i]);
+                double x = solarPositionSpaModel.xterm(u, lat[i], 1000.0);
+                double y = solarPositionSpaModel.yterm(u, lat[i], 1000.0);
+                solarPositionSpaModel.topocentric(reference, lat[i], 127.831, x, y, 0.0116,
+                                                  0.5667, ret);
+                solarPositionSpaModel.referenceTopocentric(reference, lat[i], 127.831, x, y,
+                                                           0.0116, 0.5667, expected);
+                for (int k = 0; k < ret.length; k++) {
+                    double d = Math.abs(expected[k] - ret[k]);
+                    if (k == SolarPositionSpaModel.AZIMUTH)
+                        d = Math.min(d, 360 - d);
+                    assertTrue(d < 1e-9);
+                }
+            }
+        }
+    }
+
+    public void testPrecision() {
+        assertEquals(0.0, solarPositionSpaModel.getPrecisionBound());
+        int fullTerms = solarPositionSpaModel.getSeriesTerms();
+
+        ModelCollection models = new DefaultModelCollection();
+        SpaTimeTerms exact = new SpaTimeTerms();
+        SpaTimeTerms approx = new SpaTimeTerms();
+        for (double precision : new double[] {1e-5, 1e-3, 1e-2}) {
+            SolarPositionSpaModel model = new SolarPositionSpaModel(models, precision);
+            assertTrue(model.getPrecisionBound() <= precision);
+            assertTrue(model.getSeriesTerms() < fullTerms);
+
+            // every 11 days and 5 hours from 1900 to 2100
+            for (long t = -2208988800L; t < 4102444800L; t += 11 * 86400L + 5 * 3600L) {
+                solarPositionSpaModel.timeTerms(t, 67.0, exact);
+                model.timeTerms(t, 67.0, approx);
+                double hourAngle = (exact.getApparentSiderealTime() - exact.getRightAscension())
+                        - (approx.getApparentSiderealTime() - approx.getRightAscension());
+                hourAngle -= 360 * Math.round(hourAngle / 360);
+                assertTrue(Math.abs(hourAngle) <= model.getPrecisionBound());
+                assertEquals(exact.getDeclination(), approx.getDeclination(),
+                             model.getPrecisionBound());
+            }
+        }
+
+        try {
+            new SolarPositionSpaModel(models, -1);
+            fail("negative precision must be rejected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
 }
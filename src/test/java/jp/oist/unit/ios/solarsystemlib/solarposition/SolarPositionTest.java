@@ -9,6 +9,7 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 
 import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
 import jp.oist.unit.ios.solarsystemlib.solarposition.SolarPosition;
 import junit.framework.TestCase;
 
@@ -46,4 +47,18 @@ public class SolarPositionTest extends TestCase {
         assertEquals(0, compareTo(-6.533482, sp.getEquationOfTime(), mc));
         assertEquals(0, compareTo(45.732143, sp.getZenith(), mc));
     }
+
+    public void testEstimateEpochSecond() {
+        Location location = new Location(latitude, longitude);
+        SolarPosition solarposition = new DefaultModelCollection().solarposition();
+        SolarPosition.Variable expected = solarposition.estimate(curTime, location, null, null);
+        SolarPosition.Variable sp = solarposition.estimate(timestamp, location, null, null);
+
+        assertEquals(expected.getApparentZenith(), sp.getApparentZenith(), 1e-12);
+        assertEquals(expected.getAzimuth(), sp.getAzimuth(), 1e-12);
+        assertEquals(expected.getEquationOfTime(), sp.getEquationOfTime(), 1e-12);
+        assertEquals(timestamp, sp.getEpochSecond());
+        assertEquals(curTime.toInstant(), sp.getDateTime().toInstant());
+        assertEquals(curTime.getDayOfYear(), sp.getDayOfYear());
+    }
 }
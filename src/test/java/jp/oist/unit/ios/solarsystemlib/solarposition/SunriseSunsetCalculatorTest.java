@@ -0,0 +1,97 @@
+/* vim: set ts=4 sw=4 et fenc=utf-8 ff=unix cc=100 : */
+package jp.oist.unit.ios.solarsystemlib.solarposition;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import jp.oist.unit.ios.solarsystemlib.Location;
+import jp.oist.unit.ios.solarsystemlib.collection.DefaultModelCollection;
+import jp.oist.unit.ios.solarsystemlib.common.TimeUtils;
+import junit.framework.TestCase;
+
+public class SunriseSunsetCalculatorTest extends TestCase {
+
+    private SolarPositionSpaModel spa = new SolarPositionSpaModel(new DefaultModelCollection());
+    private SunriseSunsetCalculator calculator = new SunriseSunsetCalculator(spa);
+
+    private static final double HORIZON = -(0.26667 + 0.5667);
+
+    /* topocentric elevation without refraction by the full SPA at sea level */
+    private double elevation(double epochSecond, double lat, double lng) {
+        long epochDay = TimeUtils.epochDay((long)Math.floor(epochSecond), 0);
+        double deltaT = spa.calculateDeltaT(TimeUtils.year(epochDay), TimeUtils.month(epochDay));
+        SpaTimeTerms terms = spa.timeTerms(epochSecond, deltaT, new SpaTimeTerms());
+        double u = spa.uterm(lat);
+        double[] ret = new double[SolarPositionSpaModel.TOPOCENTRIC_LENGTH];
+        spa.topocentric(terms, lat, lng, spa.xterm(u, lat, 0), spa.yterm(u, lat, 0), 0, 0, ret);
+        return ret[SolarPositionSpaModel.ELEVATION];
+    }
+
+    private double crossing(double below, double above, double lat, double lng) {
+        for (int i = 0; i < 40; i++) {
+            double mid = (below + above) / 2;
+            if (elevation(mid, lat, lng) < HORIZON)
+                below = mid;
+            else
+                above = mid;
+        }
+        return (below + above) / 2;
+    }
+
+    public void testEvents() {
+        double lat = 26.462;
+        double lng = 127.831;
+        int days = 366;
+        long[] sunrise = new long[days];
+        long[] transit = new long[days];
+        long[] sunset = new long[days];
+        calculator.calculate(new Location(lat, lng), LocalDate.of(2020, 1, 1), days,
+                             ZoneOffset.ofHours(9), sunrise, transit, sunset);
+
+        long midnight = LocalDate.of(2020, 1, 1).toEpochDay() * 86400L - 9 * 3600;
+        for (int i = 0; i < days; i += 5) {
+            assertTrue(transit[i] > midnight + i * 86400L);
+            assertTrue(transit[i] < midnight + (i + 1) * 86400L);
+            // the sun is highest at the transit
+            double top = elevation(transit[i], lat, lng);
+            assertTrue(top >= elevation(transit[i] - 60, lat, lng));
+            assertTrue(top >= elevation(transit[i] + 60, lat, lng));
+
+            assertEquals(crossing(transit[i] - 43200, transit[i], lat, lng), sunrise[i], 1.0);
+            assertEquals(crossing(transit[i] + 43200, transit[i], lat, lng), sunset[i], 1.0);
+        }
+
+        // same events without the other columns
+        long[] only = new long[days];
+        calculator.calculate(new Location(lat, lng), LocalDate.of(2020, 1, 1), days,
+                             ZoneOffset.ofHours(9), null, null, only);
+        assertEquals(sunset[200], only[200]);
+    }
+
+    public void testPolar() {
+        long[] sunrise = new long[1];
+        long[] sunset = new long[1];
+        long[] transit = new long[1];
+        Location location = new Location(78.22, 15.65);
+
+        calculator.calculate(location, LocalDate.of(2020, 6, 21), 1, ZoneOffset.ofHours(1),
+                             sunrise, transit, sunset);
+        assertEquals(SunriseSunsetCalculator.SUN_ALWAYS_UP, sunrise[0]);
+        assertEquals(SunriseSunsetCalculator.SUN_ALWAYS_UP, sunset[0]);
+
+        calculator.calculate(location, LocalDate.of(2020, 12, 21), 1, ZoneOffset.ofHours(1),
+                             sunrise, transit, sunset);
+        assertEquals(SunriseSunsetCalculator.SUN_ALWAYS_DOWN, sunrise[0]);
+        assertEquals(SunriseSunsetCalculator.SUN_ALWAYS_DOWN, sunset[0]);
+        assertTrue(elevation(transit[0], 78.22, 15.65) < HORIZON);
+    }
+
+    public void testShortColumn() {
+        try {
+            calculator.calculate(new Location(26.462, 127.831), LocalDate.of(2020, 1, 1), 3,
+                                 ZoneOffset.UTC, new long[2], null, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}